@@ -2,8 +2,10 @@ package com.medlink.tracker;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MedlinkApplication {
     public static void main(String[] args) {
         SpringApplication.run(MedlinkApplication.class, args);
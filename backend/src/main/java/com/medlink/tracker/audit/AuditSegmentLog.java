@@ -0,0 +1,146 @@
+package com.medlink.tracker.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medlink.tracker.model.AuditEvent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Rolling segment files of newline-delimited JSON audit events. Appends go to the
+ * newest segment until it passes the size limit; older segments are immutable and
+ * can be read back or deleted whole. Used both as a sink and as the spill area for
+ * events the ring buffer or Mongo could not take.
+ */
+final class AuditSegmentLog {
+
+    private static final String SUFFIX = ".ndjson";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final ObjectMapper objectMapper;
+
+    private long segmentIndex = -1;
+    private long segmentSize;
+    private OutputStream out;
+
+    AuditSegmentLog(Path dir, long segmentBytes, ObjectMapper objectMapper) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.objectMapper = objectMapper;
+    }
+
+    synchronized void append(List<AuditEvent> events) throws IOException {
+        if (out == null || segmentSize >= segmentBytes) {
+            roll();
+        }
+        for (AuditEvent event : events) {
+            byte[] line = objectMapper.writeValueAsBytes(event);
+            out.write(line);
+            out.write('\n');
+            segmentSize += line.length + 1;
+        }
+        out.flush();
+    }
+
+    /** Closes the open segment so every segment on disk is complete, and lists them oldest first. */
+    synchronized List<Path> seal() throws IOException {
+        close();
+        return segments();
+    }
+
+    synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    List<AuditEvent> read(Path segment) throws IOException {
+        List<AuditEvent> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    events.add(objectMapper.readValue(line, AuditEvent.class));
+                }
+            }
+        }
+        return events;
+    }
+
+    void delete(Path segment) throws IOException {
+        Files.deleteIfExists(segment);
+    }
+
+    /** Scans segments newest first; fine for an occasional lookup, not for hot paths. */
+    synchronized List<AuditEvent> find(Predicate<AuditEvent> filter, int limit) throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+        List<Path> newestFirst = new ArrayList<>(segments());
+        Collections.reverse(newestFirst);
+        List<AuditEvent> found = new ArrayList<>();
+        for (Path segment : newestFirst) {
+            List<AuditEvent> events = read(segment);
+            for (int i = events.size() - 1; i >= 0 && found.size() < limit; i--) {
+                if (filter.test(events.get(i))) {
+                    found.add(events.get(i));
+                }
+            }
+            if (found.size() >= limit) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    /** Deletes the oldest closed segments beyond {@code keep}. */
+    synchronized void retain(int keep) throws IOException {
+        List<Path> all = segments();
+        for (int i = 0; i < all.size() - Math.max(1, keep); i++) {
+            if (indexOf(all.get(i)) != segmentIndex) {
+                Files.deleteIfExists(all.get(i));
+            }
+        }
+    }
+
+    synchronized int segmentCount() throws IOException {
+        return segments().size();
+    }
+
+    private void roll() throws IOException {
+        close();
+        Files.createDirectories(dir);
+        if (segmentIndex < 0) {
+            List<Path> existing = segments();
+            segmentIndex = existing.isEmpty() ? -1 : indexOf(existing.get(existing.size() - 1));
+        }
+        segmentIndex++;
+        out = Files.newOutputStream(dir.resolve(String.format("%020d%s", segmentIndex, SUFFIX)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentSize = 0;
+    }
+
+    private List<Path> segments() throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparingLong(AuditSegmentLog::indexOf))
+                    .toList();
+        }
+    }
+
+    private static long indexOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+}
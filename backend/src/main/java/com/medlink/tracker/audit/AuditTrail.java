@@ -0,0 +1,366 @@
+package com.medlink.tracker.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medlink.tracker.event.IntakeLogChangedEvent;
+import com.medlink.tracker.event.IntakeStatusBulkChangedEvent;
+import com.medlink.tracker.event.PrescriptionChangedEvent;
+import com.medlink.tracker.model.AuditEvent;
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.model.Prescription;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only audit trail of prescription and intake writes. The listeners run on
+ * the writing thread, where the authenticated user is known, and only build an
+ * {@link AuditEvent} and offer it to a lock-free {@link AuditRingBuffer}; a single
+ * consumer thread drains the ring in batches into audit_events, or into rolling
+ * segment files when {@code audit.sink=segments}.
+ * <p>
+ * When the ring is full the writer either waits for room ({@code audit.overflow=block})
+ * or appends the event to a local spill segment ({@code spill}). Batches the sink
+ * rejects are spilled too; the consumer replays the spill whenever it has caught up.
+ */
+@Service
+public class AuditTrail {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditTrail.class);
+    private static final String SYSTEM = "system";
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Value("${audit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${audit.sink:mongo}")
+    private String sink;
+
+    @Value("${audit.overflow:block}")
+    private String overflow;
+
+    @Value("${audit.buffer-capacity:16384}")
+    private int bufferCapacity;
+
+    @Value("${audit.batch-size:500}")
+    private int batchSize;
+
+    @Value("${audit.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
+    @Value("${audit.retry-ms:5000}")
+    private long retryMillis;
+
+    @Value("${audit.dir:data/audit}")
+    private String dir;
+
+    @Value("${audit.segment-bytes:16777216}")
+    private long segmentBytes;
+
+    @Value("${audit.segments.max-files:100}")
+    private int maxSegmentFiles;
+
+    private AuditRingBuffer<AuditEvent> ring;
+    private AuditSegmentLog segments;
+    private AuditSegmentLog spill;
+    private Thread consumer;
+    private volatile boolean running;
+    private volatile long sinkFailedAt;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+    private volatile int largestBatch;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        if (!"mongo".equals(sink) && !"segments".equals(sink)) {
+            throw new IllegalStateException("audit.sink must be mongo or segments, was " + sink);
+        }
+        if (!"block".equals(overflow) && !"spill".equals(overflow)) {
+            throw new IllegalStateException("audit.overflow must be block or spill, was " + overflow);
+        }
+        Path root = Paths.get(dir);
+        ring = new AuditRingBuffer<>(bufferCapacity);
+        segments = new AuditSegmentLog(root.resolve("segments"), segmentBytes, objectMapper);
+        spill = new AuditSegmentLog(root.resolve("spill"), segmentBytes, objectMapper);
+        running = true;
+        consumer = new Thread(this::consume, "audit-writer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (consumer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+        // Whatever the consumer could not take is kept for the next start
+        List<AuditEvent> rest = new ArrayList<>();
+        ring.drainTo(rest, Integer.MAX_VALUE);
+        if (!rest.isEmpty()) {
+            spillOrLose(rest);
+        }
+        try {
+            segments.close();
+            spill.close();
+        } catch (IOException e) {
+            log.warn("Could not close audit segments", e);
+        }
+    }
+
+    @EventListener
+    public void onPrescriptionChanged(PrescriptionChangedEvent event) {
+        Prescription prescription = event.getPrescription();
+        AuditEvent audit = newEvent(AuditEvent.PRESCRIPTION, prescription.getId(), prescription.getPatientId());
+        if (event.isRemoved()) {
+            audit.setAction(AuditEvent.REMOVED);
+            audit.setFromStatus(event.getPreviousStatus());
+        } else if (event.getPreviousStatus() == null) {
+            audit.setAction(AuditEvent.CREATED);
+            audit.setToStatus(prescription.getStatus());
+        } else {
+            audit.setAction(AuditEvent.STATUS_CHANGED);
+            audit.setFromStatus(event.getPreviousStatus());
+            audit.setToStatus(prescription.getStatus());
+        }
+        record(audit);
+    }
+
+    @EventListener
+    public void onIntakeLogChanged(IntakeLogChangedEvent event) {
+        IntakeLog intake = event.getLog();
+        AuditEvent audit = newEvent(AuditEvent.INTAKE, intake.getId(), intake.getPatientId());
+        if (event.isRemoved()) {
+            audit.setAction(AuditEvent.REMOVED);
+            audit.setFromStatus(event.getPreviousStatus());
+        } else if (event.getPreviousStatus() == null) {
+            audit.setAction(AuditEvent.CREATED);
+            audit.setToStatus(intake.getStatus());
+        } else {
+            audit.setAction(AuditEvent.STATUS_CHANGED);
+            audit.setFromStatus(event.getPreviousStatus());
+            audit.setToStatus(intake.getStatus());
+        }
+        record(audit);
+    }
+
+    @EventListener
+    public void onIntakeStatusBulkChanged(IntakeStatusBulkChangedEvent event) {
+        for (Map.Entry<String, Map<LocalDate, Long>> patient : event.getCounts().entrySet()) {
+            AuditEvent audit = newEvent(AuditEvent.PATIENT_INTAKES, patient.getKey(), patient.getKey());
+            audit.setAction(AuditEvent.BULK_STATUS_CHANGED);
+            audit.setFromStatus(event.getFromStatus());
+            audit.setToStatus(event.getToStatus());
+            Map<String, Object> perDay = new TreeMap<>();
+            patient.getValue().forEach((day, count) -> perDay.put(day.toString(), count));
+            audit.setDetails(perDay);
+            record(audit);
+        }
+    }
+
+    /** Newest first. Events still in the ring or the spill are not visible yet. */
+    public List<AuditEvent> findByEntityId(String entityId, int limit) {
+        int max = Math.max(1, Math.min(limit, 1000));
+        if (!enabled || "mongo".equals(sink)) {
+            return mongoTemplate.find(Query.query(Criteria.where("entityId").is(entityId))
+                    .with(Sort.by(Sort.Direction.DESC, "occurredAt"))
+                    .limit(max), AuditEvent.class);
+        }
+        try {
+            return segments.find(event -> entityId.equals(event.getEntityId()), max);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read audit segments: " + e.getMessage(), e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("sink", sink);
+        stats.put("overflow", overflow);
+        stats.put("capacity", ring == null ? 0 : ring.capacity());
+        stats.put("queued", ring == null ? 0 : ring.size());
+        stats.put("recorded", recorded.sum());
+        stats.put("written", written.sum());
+        stats.put("batches", batches.sum());
+        stats.put("largestBatch", largestBatch);
+        long batchCount = batches.sum();
+        stats.put("avgBatchWriteMicros", batchCount == 0 ? 0 : writeNanos.sum() / batchCount / 1000);
+        stats.put("blocked", blocked.sum());
+        stats.put("blockedMillis", TimeUnit.NANOSECONDS.toMillis(blockedNanos.sum()));
+        stats.put("spilled", spilled.sum());
+        stats.put("replayed", replayed.sum());
+        stats.put("lost", lost.sum());
+        stats.put("sinkFailing", sinkFailedAt != 0);
+        return stats;
+    }
+
+    private AuditEvent newEvent(String entityType, String entityId, String patientId) {
+        AuditEvent audit = new AuditEvent();
+        audit.setEntityType(entityType);
+        audit.setEntityId(entityId);
+        audit.setPatientId(patientId);
+        audit.setOccurredAt(LocalDateTime.now());
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || auth instanceof AnonymousAuthenticationToken) {
+            audit.setActor(SYSTEM);
+        } else {
+            audit.setActor(auth.getName());
+            for (GrantedAuthority authority : auth.getAuthorities()) {
+                audit.setActorRole(authority.getAuthority().replaceFirst("^ROLE_", ""));
+                break;
+            }
+        }
+        return audit;
+    }
+
+    private void record(AuditEvent audit) {
+        if (ring == null || audit.getEntityId() == null) {
+            return;
+        }
+        recorded.increment();
+        if (ring.offer(audit)) {
+            return;
+        }
+        if ("spill".equals(overflow) || !running) {
+            spillOrLose(List.of(audit));
+            return;
+        }
+        blocked.increment();
+        long started = System.nanoTime();
+        while (!ring.offer(audit)) {
+            if (!running) {
+                spillOrLose(List.of(audit));
+                break;
+            }
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        blockedNanos.add(System.nanoTime() - started);
+    }
+
+    private void consume() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (running || ring.size() > 0) {
+            batch.clear();
+            ring.drainTo(batch, batchSize);
+            if (!batch.isEmpty()) {
+                if (!write(batch)) {
+                    spillOrLose(batch);
+                }
+                continue;
+            }
+            replaySpill();
+            if (running) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis));
+            }
+        }
+    }
+
+    private boolean write(List<AuditEvent> batch) {
+        // After a failure, go straight to the spill until the retry delay has passed
+        if (sinkFailedAt != 0 && System.currentTimeMillis() - sinkFailedAt < retryMillis) {
+            return false;
+        }
+        long started = System.nanoTime();
+        try {
+            if ("mongo".equals(sink)) {
+                mongoTemplate.insert(new ArrayList<>(batch), AuditEvent.class);
+            } else {
+                segments.append(batch);
+                if (maxSegmentFiles > 0) {
+                    segments.retain(maxSegmentFiles);
+                }
+            }
+        } catch (RuntimeException | IOException e) {
+            if (sinkFailedAt == 0) {
+                log.warn("Audit sink {} failed, spilling to disk until it recovers", sink, e);
+            }
+            sinkFailedAt = System.currentTimeMillis();
+            return false;
+        }
+        if (sinkFailedAt != 0) {
+            log.info("Audit sink {} recovered", sink);
+            sinkFailedAt = 0;
+        }
+        writeNanos.add(System.nanoTime() - started);
+        written.add(batch.size());
+        batches.increment();
+        largestBatch = Math.max(largestBatch, batch.size());
+        return true;
+    }
+
+    private void replaySpill() {
+        if (sinkFailedAt != 0 && System.currentTimeMillis() - sinkFailedAt < retryMillis) {
+            return;
+        }
+        try {
+            for (Path segment : spill.seal()) {
+                List<AuditEvent> events = spill.read(segment);
+                for (int from = 0; from < events.size(); from += batchSize) {
+                    List<AuditEvent> batch = events.subList(from, Math.min(events.size(), from + batchSize));
+                    if (!write(batch)) {
+                        // Rewrite what is left so the batches already written are not repeated
+                        spill.append(events.subList(from, events.size()));
+                        spill.delete(segment);
+                        return;
+                    }
+                    replayed.add(batch.size());
+                }
+                spill.delete(segment);
+                if (ring.size() > 0) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not replay audit spill", e);
+        }
+    }
+
+    private void spillOrLose(List<AuditEvent> events) {
+        try {
+            spill.append(events);
+            spilled.add(events.size());
+        } catch (IOException e) {
+            lost.add(events.size());
+            log.error("Lost {} audit events: spill failed", events.size(), e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.medlink.tracker.controller;
+
+import com.medlink.tracker.audit.AuditTrail;
+import com.medlink.tracker.model.AuditEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/audit")
+@CrossOrigin(origins = "*")
+public class AuditController {
+
+    @Autowired
+    private AuditTrail auditTrail;
+
+    @GetMapping("/entity/{entityId}")
+    public ResponseEntity<List<AuditEvent>> getByEntity(@PathVariable String entityId,
+                                                        @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(auditTrail.findByEntityId(entityId, limit));
+    }
+}
@@ -1,7 +1,10 @@
 package com.medlink.tracker.controller;
 
+import com.medlink.tracker.exception.ServiceBusyException;
 import com.medlink.tracker.service.AuthService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +22,8 @@ public class AuthController {
     public ResponseEntity<?> register(@RequestBody Map<String, String> request) {
         try {
             return ResponseEntity.ok(authService.register(request));
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -28,8 +33,16 @@ public class AuthController {
     public ResponseEntity<?> login(@RequestBody Map<String, String> request) {
         try {
             return ResponseEntity.ok(authService.login(request));
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (RuntimeException e) {
             return ResponseEntity.status(401).body(Map.of("error", e.getMessage()));
         }
     }
+
+    private ResponseEntity<?> busy(ServiceBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", e.getMessage()));
+    }
 }
@@ -1,8 +1,12 @@
 package com.medlink.tracker.controller;
 
 import com.medlink.tracker.model.Doctor;
+import com.medlink.tracker.security.ProfileAccess;
+import com.medlink.tracker.service.DoctorDirectoryService;
 import com.medlink.tracker.service.DoctorService;
+import com.medlink.tracker.service.PatientRosterService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,14 +21,25 @@ public class DoctorController {
     @Autowired
     private DoctorService doctorService;
 
+    @Autowired
+    private DoctorDirectoryService doctorDirectoryService;
+
+    @Autowired
+    private PatientRosterService patientRosterService;
+
+    @Autowired
+    private ProfileAccess profileAccess;
+
     @GetMapping("/{id}")
     public ResponseEntity<Doctor> getById(@PathVariable String id) {
-        return ResponseEntity.ok(doctorService.getById(id));
+        Doctor doctor = doctorService.getById(id);
+        return ETags.ok(doctor, doctor.getVersion());
     }
 
     @GetMapping("/user/{userId}")
     public ResponseEntity<Doctor> getByUserId(@PathVariable String userId) {
-        return ResponseEntity.ok(doctorService.getByUserId(userId));
+        Doctor doctor = doctorService.getByUserId(userId);
+        return ETags.ok(doctor, doctor.getVersion());
     }
 
     @GetMapping
@@ -37,15 +52,58 @@ public class DoctorController {
         return ResponseEntity.ok(doctorService.getBySpecialization(spec));
     }
 
+    @GetMapping("/directory")
+    public ResponseEntity<Map<String, Object>> directory(@RequestParam(required = false) List<String> specialization,
+                                                         @RequestParam(required = false) List<String> hospital,
+                                                         @RequestParam(required = false) List<String> department,
+                                                         @RequestParam(required = false) Boolean available,
+                                                         @RequestParam(required = false) Integer page,
+                                                         @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(doctorDirectoryService.search(specialization, hospital, department, available, page, size));
+    }
+
     @PutMapping("/{id}")
-    public ResponseEntity<Doctor> update(@PathVariable String id, @RequestBody Doctor doctor) {
-        return ResponseEntity.ok(doctorService.update(id, doctor));
+    public ResponseEntity<Doctor> update(@PathVariable String id, @RequestBody Doctor doctor,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Doctor saved = doctorService.update(id, doctor, ETags.requiredVersion(ifMatch));
+        return ETags.ok(saved, saved.getVersion());
+    }
+
+    @GetMapping("/{doctorId}/patients")
+    public ResponseEntity<Map<String, Object>> getRoster(
+            @PathVariable String doctorId,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "name") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        profileAccess.checkDoctor(doctorId);
+        return ResponseEntity.ok(patientRosterService.getRoster(doctorId, q, sort, cursor, limit));
+    }
+
+    @GetMapping("/{doctorId}/patients/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmarkRoster(@PathVariable String doctorId,
+                                                               @RequestParam(defaultValue = "20") int iterations) {
+        return ResponseEntity.ok(patientRosterService.benchmark(doctorId, iterations));
     }
 
     @PostMapping("/{doctorId}/patients")
-    public ResponseEntity<Void> addPatient(@PathVariable String doctorId,
-                                           @RequestBody Map<String, String> body) {
-        doctorService.addPatient(doctorId, body.get("patientId"));
+    public ResponseEntity<Map<String, Object>> addPatient(@PathVariable String doctorId,
+                                                          @RequestBody Map<String, String> body) {
+        profileAccess.checkDoctor(doctorId);
+        return ResponseEntity.ok(doctorService.assignPatient(doctorId, body.get("patientId")));
+    }
+
+    @PostMapping("/{doctorId}/patients/batch")
+    public ResponseEntity<Map<String, Object>> addPatients(@PathVariable String doctorId,
+                                                           @RequestBody Map<String, List<String>> body) {
+        profileAccess.checkDoctor(doctorId);
+        return ResponseEntity.ok(doctorService.assignPatients(doctorId, body.get("patientIds")));
+    }
+
+    @DeleteMapping("/{doctorId}/patients/{patientId}")
+    public ResponseEntity<Void> removePatient(@PathVariable String doctorId, @PathVariable String patientId) {
+        profileAccess.checkDoctor(doctorId);
+        doctorService.unassignPatient(doctorId, patientId);
         return ResponseEntity.ok().build();
     }
 }
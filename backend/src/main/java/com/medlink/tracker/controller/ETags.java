@@ -0,0 +1,41 @@
+package com.medlink.tracker.controller;
+
+import com.medlink.tracker.exception.PreconditionFailedException;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Strong ETags derived from a document's @Version. Spring answers a GET whose
+ * If-None-Match matches the tag on the ResponseEntity with 304 before the body is
+ * serialized.
+ */
+final class ETags {
+
+    private ETags() {}
+
+    static <T> ResponseEntity<T> ok(T body, Long version) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (version != null) {
+            builder.eTag("\"" + version + "\"");
+        }
+        return builder.body(body);
+    }
+
+    /**
+     * The version an If-Match header requires, or null when there is no header or it
+     * is "*". Weak, malformed and multi-valued tags can never match a strong tag.
+     */
+    static Long requiredVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // falls through to the 412 below
+            }
+        }
+        throw new PreconditionFailedException("If-Match " + tag + " does not match the current version", null);
+    }
+}
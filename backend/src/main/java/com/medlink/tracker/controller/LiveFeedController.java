@@ -0,0 +1,32 @@
+package com.medlink.tracker.controller;
+
+import com.medlink.tracker.security.ProfileAccess;
+import com.medlink.tracker.service.LiveFeedService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/live")
+@CrossOrigin(origins = "*")
+public class LiveFeedController {
+
+    @Autowired
+    private LiveFeedService liveFeedService;
+
+    @Autowired
+    private ProfileAccess profileAccess;
+
+    @GetMapping(value = "/patient/{patientId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter patientFeed(@PathVariable String patientId) {
+        profileAccess.checkPatient(patientId);
+        return liveFeedService.subscribePatient(patientId);
+    }
+
+    @GetMapping(value = "/doctor/{doctorId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter doctorFeed(@PathVariable String doctorId) {
+        profileAccess.checkDoctor(doctorId);
+        return liveFeedService.subscribeDoctor(doctorId);
+    }
+}
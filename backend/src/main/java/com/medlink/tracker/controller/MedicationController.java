@@ -2,13 +2,25 @@ package com.medlink.tracker.controller;
 
 import com.medlink.tracker.model.IntakeLog;
 import com.medlink.tracker.model.Medication;
+import com.medlink.tracker.service.DoseWindowService;
+import com.medlink.tracker.service.IntakeBatchService;
+import com.medlink.tracker.service.IntakeHistoryService;
+import com.medlink.tracker.service.IntakeStorageService;
+import com.medlink.tracker.service.MedicationImportService;
+import com.medlink.tracker.service.MedicationSearchIndex;
 import com.medlink.tracker.service.MedicationService;
+import com.medlink.tracker.service.MissedDoseSweeper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -20,24 +32,90 @@ public class MedicationController {
     @Autowired
     private MedicationService medicationService;
 
+    @Autowired
+    private IntakeHistoryService intakeHistoryService;
+
+    @Autowired
+    private IntakeBatchService intakeBatchService;
+
+    @Autowired
+    private MissedDoseSweeper missedDoseSweeper;
+
+    @Autowired
+    private IntakeStorageService intakeStorageService;
+
+    @Autowired
+    private DoseWindowService doseWindowService;
+
+    @Autowired
+    private MedicationSearchIndex medicationSearchIndex;
+
+    @Autowired
+    private MedicationImportService medicationImportService;
+
     @PostMapping
     public ResponseEntity<Medication> create(@RequestBody Medication medication) {
         return ResponseEntity.ok(medicationService.create(medication));
     }
 
+    // Raw CSV or JSON-lines body, e.g. curl --data-binary @formulary.csv -H 'Content-Type: text/csv'
+    @PostMapping("/import")
+    public ResponseEntity<Map<String, Object>> importCatalog(
+            InputStream body,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = "Content-Type", required = false) String contentType) throws IOException {
+        if (format == null) {
+            format = contentType != null && contentType.contains("csv")
+                    ? MedicationImportService.CSV : MedicationImportService.JSON_LINES;
+        }
+        return ResponseEntity.ok(medicationImportService.importCatalog(body, format));
+    }
+
+    @GetMapping("/import/progress")
+    public ResponseEntity<Map<String, Object>> getImportProgress() {
+        return ResponseEntity.ok(medicationImportService.getProgress());
+    }
+
     @GetMapping
     public ResponseEntity<List<Medication>> getAll() {
         return ResponseEntity.ok(medicationService.getAll());
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<Medication>> search(@RequestParam String name) {
-        return ResponseEntity.ok(medicationService.search(name));
+    public ResponseEntity<List<Medication>> search(@RequestParam String name,
+                                                   @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(medicationService.search(name, limit));
+    }
+
+    @GetMapping("/search/fuzzy")
+    public ResponseEntity<List<Map<String, Object>>> fuzzySearch(@RequestParam String name,
+                                                                 @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(medicationService.fuzzySearch(name, limit));
+    }
+
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSearchIndex() {
+        return ResponseEntity.ok(medicationSearchIndex.rebuild());
+    }
+
+    @GetMapping("/search/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmarkSearch(
+            @RequestParam(defaultValue = "20000") int catalogSize,
+            @RequestParam(defaultValue = "1000") int iterations,
+            @RequestParam(defaultValue = "a,amo,cil,ibupro,zole,met for") List<String> queries,
+            @RequestParam(defaultValue = "amoxicilin,ibuprofin,metfromin,atorvastatn") List<String> fuzzyQueries) {
+        return ResponseEntity.ok(medicationSearchIndex.benchmark(catalogSize, iterations, queries, fuzzyQueries));
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<Medication> getById(@PathVariable String id) {
-        return ResponseEntity.ok(medicationService.getById(id));
+        Medication medication = medicationService.getById(id);
+        return ETags.ok(medication, medication.getVersion());
+    }
+
+    @PatchMapping("/{id}/deactivate")
+    public ResponseEntity<Medication> deactivate(@PathVariable String id) {
+        return ResponseEntity.ok(medicationService.deactivate(id));
     }
 
     // Intake log endpoints
@@ -46,6 +124,50 @@ public class MedicationController {
         return ResponseEntity.ok(medicationService.logIntake(log));
     }
 
+    @PostMapping("/intake/batch")
+    public ResponseEntity<Map<String, Object>> logIntakeBatch(@RequestBody List<IntakeLog> logs) {
+        return ResponseEntity.ok(intakeBatchService.logIntakeBatch(logs));
+    }
+
+    @PostMapping("/intake/batch/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmarkIntakeBatch(
+            @RequestParam(defaultValue = "500") int events,
+            @RequestParam(defaultValue = "3") int rounds) {
+        return ResponseEntity.ok(intakeBatchService.benchmark(events, rounds));
+    }
+
+    @PostMapping("/intake/sweep-missed")
+    public ResponseEntity<Map<String, Object>> sweepMissed() {
+        return ResponseEntity.ok(missedDoseSweeper.sweep());
+    }
+
+    @PostMapping("/intake/storage/migrate")
+    public ResponseEntity<Map<String, Object>> migrateIntakeStorage() {
+        return ResponseEntity.ok(intakeStorageService.migrate());
+    }
+
+    @GetMapping("/intake/storage/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmarkIntakeStorage(
+            @RequestParam String patientId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "100") int iterations) {
+        return ResponseEntity.ok(intakeStorageService.benchmark(patientId, date, iterations));
+    }
+
+    @GetMapping("/intake/due")
+    public ResponseEntity<Map<String, Object>> getDueDoses(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "false") boolean includeOverdue,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(doseWindowService.findDue(from, to, includeOverdue, limit));
+    }
+
+    @PostMapping("/intake/backfill-scheduled-at")
+    public ResponseEntity<Map<String, Object>> backfillScheduledAt() {
+        return ResponseEntity.ok(doseWindowService.backfillScheduledAt());
+    }
+
     @GetMapping("/intake/today/{patientId}")
     public ResponseEntity<List<IntakeLog>> getTodayIntakes(@PathVariable String patientId) {
         return ResponseEntity.ok(medicationService.getTodayIntakes(patientId));
@@ -56,6 +178,22 @@ public class MedicationController {
         return ResponseEntity.ok(medicationService.getIntakeHistory(patientId));
     }
 
+    @GetMapping(value = "/intake/history/{patientId}/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamIntakeHistory(@PathVariable String patientId) {
+        StreamingResponseBody body = out -> intakeHistoryService.streamNdjson(patientId, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    @GetMapping("/intake/history/{patientId}/page")
+    public ResponseEntity<Map<String, Object>> getIntakeHistoryPage(
+            @PathVariable String patientId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(intakeHistoryService.getPage(patientId, cursor, limit));
+    }
+
     @GetMapping("/intake/{patientId}/date")
     public ResponseEntity<List<IntakeLog>> getByDate(
             @PathVariable String patientId,
@@ -68,9 +206,19 @@ public class MedicationController {
         return ResponseEntity.ok(medicationService.getAdherenceStats(patientId));
     }
 
+    @PostMapping("/adherence/{patientId}/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildAdherence(@PathVariable String patientId) {
+        return ResponseEntity.ok(medicationService.rebuildAdherence(patientId));
+    }
+
+    @PostMapping("/adherence/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildAllAdherence() {
+        return ResponseEntity.ok(medicationService.rebuildAllAdherence());
+    }
+
     @PatchMapping("/intake/{logId}/status")
     public ResponseEntity<IntakeLog> updateStatus(@PathVariable String logId,
                                                    @RequestBody Map<String, String> body) {
-        return ResponseEntity.ok(medicationService.updateIntakeStatus(logId, body.get("status")));
+        return ResponseEntity.ok(medicationService.updateIntakeStatus(logId, body.get("status"), body.get("expectedStatus")));
     }
 }
@@ -0,0 +1,130 @@
+package com.medlink.tracker.controller;
+
+import com.medlink.tracker.audit.AuditTrail;
+import com.medlink.tracker.reminder.ReminderScheduler;
+import com.medlink.tracker.security.PasswordHasher;
+import com.medlink.tracker.security.VerifiedTokenCache;
+import com.medlink.tracker.service.DoctorDirectoryService;
+import com.medlink.tracker.service.DoseScheduleService;
+import com.medlink.tracker.service.InteractionCheckService;
+import com.medlink.tracker.service.IntakeWriteBehindBuffer;
+import com.medlink.tracker.service.LiveFeedService;
+import com.medlink.tracker.service.MedicationCache;
+import com.medlink.tracker.service.MedicationSearchIndex;
+import com.medlink.tracker.service.MissedDoseSweeper;
+import com.medlink.tracker.service.PrescriptionExpiryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+@CrossOrigin(origins = "*")
+public class MetricsController {
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private DoseScheduleService doseScheduleService;
+
+    @Autowired
+    private MissedDoseSweeper missedDoseSweeper;
+
+    @Autowired
+    private PrescriptionExpiryService prescriptionExpiryService;
+
+    @Autowired
+    private ReminderScheduler reminderScheduler;
+
+    @Autowired
+    private LiveFeedService liveFeedService;
+
+    @Autowired
+    private IntakeWriteBehindBuffer intakeWriteBehindBuffer;
+
+    @Autowired
+    private InteractionCheckService interactionCheckService;
+
+    @Autowired
+    private AuditTrail auditTrail;
+
+    @Autowired
+    private MedicationSearchIndex medicationSearchIndex;
+
+    @Autowired
+    private MedicationCache medicationCache;
+
+    @Autowired
+    private DoctorDirectoryService doctorDirectoryService;
+
+    @GetMapping("/jwt-cache")
+    public ResponseEntity<Map<String, Object>> getJwtCacheStats() {
+        return ResponseEntity.ok(verifiedTokenCache.getStats());
+    }
+
+    @GetMapping("/password-hashing")
+    public ResponseEntity<Map<String, Object>> getPasswordHashingStats() {
+        return ResponseEntity.ok(passwordHasher.getStats());
+    }
+
+    @GetMapping("/dose-schedule")
+    public ResponseEntity<Map<String, Object>> getDoseScheduleStats() {
+        return ResponseEntity.ok(doseScheduleService.getLastRun());
+    }
+
+    @GetMapping("/missed-dose-sweep")
+    public ResponseEntity<Map<String, Object>> getMissedDoseSweepStats() {
+        return ResponseEntity.ok(missedDoseSweeper.getLastSweep());
+    }
+
+    @GetMapping("/prescription-expiry")
+    public ResponseEntity<Map<String, Object>> getPrescriptionExpiryStats() {
+        return ResponseEntity.ok(prescriptionExpiryService.getLastPass());
+    }
+
+    @GetMapping("/reminders")
+    public ResponseEntity<Map<String, Object>> getReminderStats() {
+        return ResponseEntity.ok(reminderScheduler.getStats());
+    }
+
+    @GetMapping("/live-feed")
+    public ResponseEntity<Map<String, Object>> getLiveFeedStats() {
+        return ResponseEntity.ok(liveFeedService.getStats());
+    }
+
+    @GetMapping("/intake-write-behind")
+    public ResponseEntity<Map<String, Object>> getIntakeWriteBehindStats() {
+        return ResponseEntity.ok(intakeWriteBehindBuffer.getStats());
+    }
+
+    @GetMapping("/interactions")
+    public ResponseEntity<Map<String, Object>> getInteractionIndexStats() {
+        return ResponseEntity.ok(interactionCheckService.getStats());
+    }
+
+    @GetMapping("/medication-search")
+    public ResponseEntity<Map<String, Object>> getMedicationSearchStats() {
+        return ResponseEntity.ok(medicationSearchIndex.getStats());
+    }
+
+    @GetMapping("/medication-cache")
+    public ResponseEntity<Map<String, Object>> getMedicationCacheStats() {
+        return ResponseEntity.ok(medicationCache.getStats());
+    }
+
+    @GetMapping("/doctor-directory")
+    public ResponseEntity<Map<String, Object>> getDoctorDirectoryStats() {
+        return ResponseEntity.ok(doctorDirectoryService.getStats());
+    }
+
+    @GetMapping("/audit")
+    public ResponseEntity<Map<String, Object>> getAuditStats() {
+        return ResponseEntity.ok(auditTrail.getStats());
+    }
+}
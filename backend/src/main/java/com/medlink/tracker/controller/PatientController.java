@@ -1,12 +1,15 @@
 package com.medlink.tracker.controller;
 
 import com.medlink.tracker.model.Patient;
+import com.medlink.tracker.service.PatientRosterService;
 import com.medlink.tracker.service.PatientService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/patient")
@@ -16,14 +19,19 @@ public class PatientController {
     @Autowired
     private PatientService patientService;
 
+    @Autowired
+    private PatientRosterService patientRosterService;
+
     @GetMapping("/{id}")
     public ResponseEntity<Patient> getById(@PathVariable String id) {
-        return ResponseEntity.ok(patientService.getById(id));
+        Patient patient = patientService.getById(id);
+        return ETags.ok(patient, patient.getVersion());
     }
 
     @GetMapping("/user/{userId}")
     public ResponseEntity<Patient> getByUserId(@PathVariable String userId) {
-        return ResponseEntity.ok(patientService.getByUserId(userId));
+        Patient patient = patientService.getByUserId(userId);
+        return ETags.ok(patient, patient.getVersion());
     }
 
     @GetMapping("/doctor/{doctorId}")
@@ -31,9 +39,20 @@ public class PatientController {
         return ResponseEntity.ok(patientService.getByDoctorId(doctorId));
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<Map<String, Object>> getPage(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "name") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(patientRosterService.getAll(q, sort, cursor, limit));
+    }
+
     @PutMapping("/{id}")
-    public ResponseEntity<Patient> update(@PathVariable String id, @RequestBody Patient patient) {
-        return ResponseEntity.ok(patientService.update(id, patient));
+    public ResponseEntity<Patient> update(@PathVariable String id, @RequestBody Patient patient,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Patient saved = patientService.update(id, patient, ETags.requiredVersion(ifMatch));
+        return ETags.ok(saved, saved.getVersion());
     }
 
     @GetMapping
@@ -1,8 +1,13 @@
 package com.medlink.tracker.controller;
 
+import com.medlink.tracker.model.InteractionWarning;
 import com.medlink.tracker.model.Prescription;
+import com.medlink.tracker.service.InteractionCheckService;
+import com.medlink.tracker.service.PrescriptionExpiryService;
 import com.medlink.tracker.service.PrescriptionService;
+import com.medlink.tracker.service.PrescriptionSummaryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,11 +22,47 @@ public class PrescriptionController {
     @Autowired
     private PrescriptionService prescriptionService;
 
+    @Autowired
+    private InteractionCheckService interactionCheckService;
+
+    @Autowired
+    private PrescriptionSummaryService prescriptionSummaryService;
+
+    @Autowired
+    private PrescriptionExpiryService prescriptionExpiryService;
+
     @PostMapping
     public ResponseEntity<Prescription> create(@RequestBody Prescription prescription) {
         return ResponseEntity.ok(prescriptionService.create(prescription));
     }
 
+    @PostMapping("/check")
+    public ResponseEntity<List<InteractionWarning>> checkInteractions(@RequestBody Prescription prescription) {
+        return ResponseEntity.ok(prescriptionService.checkInteractions(prescription));
+    }
+
+    @PostMapping("/interactions/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildInteractionIndex() {
+        return ResponseEntity.ok(interactionCheckService.rebuild());
+    }
+
+    @GetMapping("/interactions/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmarkInteractions(
+            @RequestParam(defaultValue = "20") int regimenSize,
+            @RequestParam(defaultValue = "10000") int iterations) {
+        return ResponseEntity.ok(interactionCheckService.benchmark(regimenSize, iterations));
+    }
+
+    @PostMapping("/expire")
+    public ResponseEntity<Map<String, Object>> expirePrescriptions() {
+        return ResponseEntity.ok(prescriptionExpiryService.expire());
+    }
+
+    @PostMapping("/schedule/materialise")
+    public ResponseEntity<Map<String, Object>> materialiseSchedules() {
+        return ResponseEntity.ok(prescriptionService.materialiseSchedules());
+    }
+
     @GetMapping("/patient/{patientId}")
     public ResponseEntity<List<Prescription>> getByPatient(@PathVariable String patientId) {
         return ResponseEntity.ok(prescriptionService.getByPatientId(patientId));
@@ -37,15 +78,34 @@ public class PrescriptionController {
         return ResponseEntity.ok(prescriptionService.getByDoctorId(doctorId));
     }
 
+    @GetMapping("/doctor/{doctorId}/summary")
+    public ResponseEntity<Map<String, Object>> getDoctorSummary(
+            @PathVariable String doctorId,
+            @RequestParam(required = false) Integer recent,
+            @RequestParam(required = false) Integer expiringWithinDays) {
+        return ResponseEntity.ok(prescriptionSummaryService.getDoctorSummary(doctorId, recent, expiringWithinDays));
+    }
+
+    @GetMapping("/doctor/{doctorId}/summary/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmarkDoctorSummary(
+            @PathVariable String doctorId,
+            @RequestParam(defaultValue = "20") int iterations) {
+        return ResponseEntity.ok(prescriptionSummaryService.benchmark(doctorId, iterations));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Prescription> getById(@PathVariable String id) {
-        return ResponseEntity.ok(prescriptionService.getById(id));
+        Prescription prescription = prescriptionService.getById(id);
+        return ETags.ok(prescription, prescription.getVersion());
     }
 
     @PatchMapping("/{id}/status")
     public ResponseEntity<Prescription> updateStatus(@PathVariable String id,
-                                                      @RequestBody Map<String, String> body) {
-        return ResponseEntity.ok(prescriptionService.updateStatus(id, body.get("status")));
+                                                      @RequestBody Map<String, String> body,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Prescription saved = prescriptionService.updateStatus(id, body.get("status"), body.get("expectedStatus"),
+                ETags.requiredVersion(ifMatch));
+        return ETags.ok(saved, saved.getVersion());
     }
 
     @DeleteMapping("/{id}")
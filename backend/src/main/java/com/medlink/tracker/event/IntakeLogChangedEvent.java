@@ -0,0 +1,35 @@
+package com.medlink.tracker.event;
+
+import com.medlink.tracker.model.IntakeLog;
+
+// Published after an intake log is created, changes status, or is removed
+public class IntakeLogChangedEvent {
+
+    private final IntakeLog log;
+    private final String previousStatus;
+    private final boolean removed;
+
+    public IntakeLogChangedEvent(IntakeLog log, String previousStatus, boolean removed) {
+        this.log = log;
+        this.previousStatus = previousStatus;
+        this.removed = removed;
+    }
+
+    public static IntakeLogChangedEvent created(IntakeLog log) {
+        return new IntakeLogChangedEvent(log, null, false);
+    }
+
+    public static IntakeLogChangedEvent statusChanged(IntakeLog log, String previousStatus) {
+        return new IntakeLogChangedEvent(log, previousStatus, false);
+    }
+
+    public static IntakeLogChangedEvent removed(IntakeLog log) {
+        return new IntakeLogChangedEvent(log, log.getStatus(), true);
+    }
+
+    public IntakeLog getLog() { return log; }
+
+    public String getPreviousStatus() { return previousStatus; }
+
+    public boolean isRemoved() { return removed; }
+}
@@ -0,0 +1,24 @@
+package com.medlink.tracker.event;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+// Published after a set-based status update, with the moved dose counts per patient and day
+public class IntakeStatusBulkChangedEvent {
+
+    private final Map<String, Map<LocalDate, Long>> counts;
+    private final String fromStatus;
+    private final String toStatus;
+
+    public IntakeStatusBulkChangedEvent(Map<String, Map<LocalDate, Long>> counts, String fromStatus, String toStatus) {
+        this.counts = counts;
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+    }
+
+    public Map<String, Map<LocalDate, Long>> getCounts() { return counts; }
+
+    public String getFromStatus() { return fromStatus; }
+
+    public String getToStatus() { return toStatus; }
+}
@@ -0,0 +1,35 @@
+package com.medlink.tracker.event;
+
+import com.medlink.tracker.model.Prescription;
+
+// Published after a prescription is created, changes status, or is deleted
+public class PrescriptionChangedEvent {
+
+    private final Prescription prescription;
+    private final String previousStatus;
+    private final boolean removed;
+
+    public PrescriptionChangedEvent(Prescription prescription, String previousStatus, boolean removed) {
+        this.prescription = prescription;
+        this.previousStatus = previousStatus;
+        this.removed = removed;
+    }
+
+    public static PrescriptionChangedEvent created(Prescription prescription) {
+        return new PrescriptionChangedEvent(prescription, null, false);
+    }
+
+    public static PrescriptionChangedEvent statusChanged(Prescription prescription, String previousStatus) {
+        return new PrescriptionChangedEvent(prescription, previousStatus, false);
+    }
+
+    public static PrescriptionChangedEvent removed(Prescription prescription) {
+        return new PrescriptionChangedEvent(prescription, prescription.getStatus(), true);
+    }
+
+    public Prescription getPrescription() { return prescription; }
+
+    public String getPreviousStatus() { return previousStatus; }
+
+    public boolean isRemoved() { return removed; }
+}
@@ -0,0 +1,8 @@
+package com.medlink.tracker.exception;
+
+public class AccessForbiddenException extends RuntimeException {
+
+    public AccessForbiddenException(String message) {
+        super(message);
+    }
+}
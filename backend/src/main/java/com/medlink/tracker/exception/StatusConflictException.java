@@ -0,0 +1,15 @@
+package com.medlink.tracker.exception;
+
+public class StatusConflictException extends RuntimeException {
+
+    private final String currentStatus;
+
+    public StatusConflictException(String message, String currentStatus) {
+        super(message);
+        this.currentStatus = currentStatus;
+    }
+
+    public String getCurrentStatus() {
+        return currentStatus;
+    }
+}
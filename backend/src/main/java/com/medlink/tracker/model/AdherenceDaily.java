@@ -0,0 +1,52 @@
+package com.medlink.tracker.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDate;
+
+// Intake counters for one patient on one scheduled day; id is "<patientId>:<date>"
+@Document(collection = "adherence_daily")
+@CompoundIndex(name = "patient_date_idx", def = "{'patientId': 1, 'date': -1}")
+public class AdherenceDaily {
+
+    @Id
+    private String id;
+
+    private String patientId;
+    private LocalDate date;
+
+    private long taken;
+    private long missed;
+    private long skipped;
+    private long pending;
+
+    // Constructors
+    public AdherenceDaily() {}
+
+    public static String idFor(String patientId, LocalDate date) {
+        return patientId + ":" + date;
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getPatientId() { return patientId; }
+    public void setPatientId(String patientId) { this.patientId = patientId; }
+
+    public LocalDate getDate() { return date; }
+    public void setDate(LocalDate date) { this.date = date; }
+
+    public long getTaken() { return taken; }
+    public void setTaken(long taken) { this.taken = taken; }
+
+    public long getMissed() { return missed; }
+    public void setMissed(long missed) { this.missed = missed; }
+
+    public long getSkipped() { return skipped; }
+    public void setSkipped(long skipped) { this.skipped = skipped; }
+
+    public long getPending() { return pending; }
+    public void setPending(long pending) { this.pending = pending; }
+}
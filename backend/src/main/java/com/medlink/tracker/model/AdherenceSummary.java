@@ -0,0 +1,48 @@
+package com.medlink.tracker.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+// Running intake counters for one patient, kept in step with intake_logs via $inc
+@Document(collection = "adherence_summaries")
+public class AdherenceSummary {
+
+    @Id
+    private String patientId;
+
+    private long taken;
+    private long missed;
+    private long skipped;
+    private long pending;
+
+    // Set only by a full rebuild from the raw logs; $inc upserts leave it false
+    private boolean initialized;
+
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public AdherenceSummary() {}
+
+    // Getters and Setters
+    public String getPatientId() { return patientId; }
+    public void setPatientId(String patientId) { this.patientId = patientId; }
+
+    public long getTaken() { return taken; }
+    public void setTaken(long taken) { this.taken = taken; }
+
+    public long getMissed() { return missed; }
+    public void setMissed(long missed) { this.missed = missed; }
+
+    public long getSkipped() { return skipped; }
+    public void setSkipped(long skipped) { this.skipped = skipped; }
+
+    public long getPending() { return pending; }
+    public void setPending(long pending) { this.pending = pending; }
+
+    public boolean isInitialized() { return initialized; }
+    public void setInitialized(boolean initialized) { this.initialized = initialized; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
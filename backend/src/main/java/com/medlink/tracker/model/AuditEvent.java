@@ -0,0 +1,81 @@
+package com.medlink.tracker.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// One clinical write: who changed which prescription or intake, and when. Never updated once written
+@Document(collection = "audit_events")
+@CompoundIndex(name = "entity_time_idx", def = "{'entityId': 1, 'occurredAt': -1}")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AuditEvent {
+
+    public static final String PRESCRIPTION = "PRESCRIPTION";
+    public static final String INTAKE = "INTAKE";
+    // Set-based status changes are recorded once per patient, keyed by the patient id
+    public static final String PATIENT_INTAKES = "PATIENT_INTAKES";
+
+    public static final String CREATED = "CREATED";
+    public static final String STATUS_CHANGED = "STATUS_CHANGED";
+    public static final String REMOVED = "REMOVED";
+    public static final String BULK_STATUS_CHANGED = "BULK_STATUS_CHANGED";
+
+    @Id
+    private String id;
+
+    private String entityType;
+    private String entityId;
+    private String patientId;
+    private String action;
+    private String fromStatus;
+    private String toStatus;
+
+    // Email of the authenticated user, or "system" for scheduled jobs
+    private String actor;
+    private String actorRole;
+
+    private LocalDateTime occurredAt;
+
+    // e.g. dose counts per day for a bulk change
+    private Map<String, Object> details;
+
+    // Constructors
+    public AuditEvent() {}
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getEntityType() { return entityType; }
+    public void setEntityType(String entityType) { this.entityType = entityType; }
+
+    public String getEntityId() { return entityId; }
+    public void setEntityId(String entityId) { this.entityId = entityId; }
+
+    public String getPatientId() { return patientId; }
+    public void setPatientId(String patientId) { this.patientId = patientId; }
+
+    public String getAction() { return action; }
+    public void setAction(String action) { this.action = action; }
+
+    public String getFromStatus() { return fromStatus; }
+    public void setFromStatus(String fromStatus) { this.fromStatus = fromStatus; }
+
+    public String getToStatus() { return toStatus; }
+    public void setToStatus(String toStatus) { this.toStatus = toStatus; }
+
+    public String getActor() { return actor; }
+    public void setActor(String actor) { this.actor = actor; }
+
+    public String getActorRole() { return actorRole; }
+    public void setActorRole(String actorRole) { this.actorRole = actorRole; }
+
+    public LocalDateTime getOccurredAt() { return occurredAt; }
+    public void setOccurredAt(LocalDateTime occurredAt) { this.occurredAt = occurredAt; }
+
+    public Map<String, Object> getDetails() { return details; }
+    public void setDetails(Map<String, Object> details) { this.details = details; }
+}
@@ -0,0 +1,29 @@
+package com.medlink.tracker.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+// Counter bumped on every write to a cached collection, so each instance can tell its copies are stale
+@Document(collection = "catalog_stamps")
+public class CatalogStamp {
+
+    @Id
+    private String id;
+
+    private long stamp;
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public CatalogStamp() {}
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public long getStamp() { return stamp; }
+    public void setStamp(long stamp) { this.stamp = stamp; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -1,12 +1,15 @@
 package com.medlink.tracker.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.index.Indexed;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection = "doctors")
+@CompoundIndex(name = "directory_order_idx", def = "{'name': 1, '_id': 1}")
 public class Doctor {
 
     @Id
@@ -30,7 +33,8 @@ public class Doctor {
     private String consultationTimings;
     private boolean available = true;
 
-    private List<String> patientIds;
+    @Version
+    private Long version;
 
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt = LocalDateTime.now();
@@ -78,8 +82,8 @@ public class Doctor {
     public boolean isAvailable() { return available; }
     public void setAvailable(boolean available) { this.available = available; }
 
-    public List<String> getPatientIds() { return patientIds; }
-    public void setPatientIds(List<String> patientIds) { this.patientIds = patientIds; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
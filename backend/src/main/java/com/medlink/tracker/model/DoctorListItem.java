@@ -0,0 +1,48 @@
+package com.medlink.tracker.model;
+
+import java.util.List;
+
+// Directory entry: what a patient needs to pick a doctor, without contact or licence details
+public class DoctorListItem {
+
+    private String id;
+    private String name;
+    private String specialization;
+    private String hospital;
+    private String department;
+    private int yearsOfExperience;
+    private List<String> qualifications;
+    private String consultationTimings;
+    private boolean available;
+
+    // Constructors
+    public DoctorListItem() {}
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getSpecialization() { return specialization; }
+    public void setSpecialization(String specialization) { this.specialization = specialization; }
+
+    public String getHospital() { return hospital; }
+    public void setHospital(String hospital) { this.hospital = hospital; }
+
+    public String getDepartment() { return department; }
+    public void setDepartment(String department) { this.department = department; }
+
+    public int getYearsOfExperience() { return yearsOfExperience; }
+    public void setYearsOfExperience(int yearsOfExperience) { this.yearsOfExperience = yearsOfExperience; }
+
+    public List<String> getQualifications() { return qualifications; }
+    public void setQualifications(List<String> qualifications) { this.qualifications = qualifications; }
+
+    public String getConsultationTimings() { return consultationTimings; }
+    public void setConsultationTimings(String consultationTimings) { this.consultationTimings = consultationTimings; }
+
+    public boolean isAvailable() { return available; }
+    public void setAvailable(boolean available) { this.available = available; }
+}
@@ -0,0 +1,49 @@
+package com.medlink.tracker.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+// One patient on one doctor's roster; the unique pair makes repeated or concurrent assigns no-ops
+@Document(collection = "doctor_patients")
+@CompoundIndex(name = "doctor_patient_idx", def = "{'doctorId': 1, 'patientId': 1}", unique = true)
+@CompoundIndex(name = "patient_assigned_idx", def = "{'patientId': 1, 'assignedAt': 1}")
+@CompoundIndex(name = "roster_name_idx", def = "{'doctorId': 1, 'nameKey': 1, 'patientId': 1}")
+@CompoundIndex(name = "roster_email_idx", def = "{'doctorId': 1, 'emailKey': 1, 'patientId': 1}")
+@CompoundIndex(name = "roster_assigned_idx", def = "{'doctorId': 1, 'assignedAt': -1, 'patientId': -1}")
+public class DoctorPatient {
+
+    @Id
+    private String id;
+
+    private String doctorId;
+    private String patientId;
+    private LocalDateTime assignedAt;
+
+    // Copies of the patient's name and email keys, so a roster page is one index range
+    private String nameKey;
+    private String emailKey;
+
+    // Constructors
+    public DoctorPatient() {}
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getDoctorId() { return doctorId; }
+    public void setDoctorId(String doctorId) { this.doctorId = doctorId; }
+
+    public String getPatientId() { return patientId; }
+    public void setPatientId(String patientId) { this.patientId = patientId; }
+
+    public LocalDateTime getAssignedAt() { return assignedAt; }
+    public void setAssignedAt(LocalDateTime assignedAt) { this.assignedAt = assignedAt; }
+
+    public String getNameKey() { return nameKey; }
+    public void setNameKey(String nameKey) { this.nameKey = nameKey; }
+
+    public String getEmailKey() { return emailKey; }
+    public void setEmailKey(String emailKey) { this.emailKey = emailKey; }
+}
@@ -0,0 +1,39 @@
+package com.medlink.tracker.model;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+// Server-side mirror of FREQUENCY_OPTIONS in the frontend's constants.js
+public enum DoseFrequency {
+
+    ONCE_DAILY(LocalTime.of(8, 0)),
+    TWICE_DAILY(LocalTime.of(8, 0), LocalTime.of(20, 0)),
+    THREE_TIMES_DAILY(LocalTime.of(8, 0), LocalTime.of(14, 0), LocalTime.of(20, 0)),
+    FOUR_TIMES_DAILY(LocalTime.of(8, 0), LocalTime.of(12, 0), LocalTime.of(16, 0), LocalTime.of(20, 0)),
+    BEDTIME(LocalTime.of(22, 0)),
+    AS_NEEDED();
+
+    public static final DateTimeFormatter DISPLAY_TIME = DateTimeFormatter.ofPattern("hh:mm a", Locale.US);
+
+    private final List<LocalTime> times;
+
+    DoseFrequency(LocalTime... times) {
+        this.times = List.of(times);
+    }
+
+    public List<LocalTime> getTimes() { return times; }
+
+    // Unknown or missing frequencies produce no scheduled doses
+    public static DoseFrequency parse(String value) {
+        if (value == null) {
+            return AS_NEEDED;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return AS_NEEDED;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.medlink.tracker.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// One document per patient per day holding that day's doses, used by the bucketed storage mode
+// Indexes on the embedded doses are created by IntakeIndexes
+@Document(collection = "intake_buckets")
+@CompoundIndex(name = "patient_date_idx", def = "{'patientId': 1, 'date': -1}")
+public class IntakeBucket {
+
+    private static final DateTimeFormatter ID_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    @Id
+    private String id;
+
+    private String patientId;
+    // Same hash bucket as the doses' IntakeLog.patientBucket, so the sweeper can split work by range
+    private Integer patientBucket;
+    private LocalDate date;
+
+    private List<IntakeLog> doses = new ArrayList<>();
+
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public IntakeBucket() {}
+
+    // Bucket id is "<patientId>_<yyyyMMdd>"; dose ids append "_<objectId>" so a dose id locates its bucket
+    public static String idFor(String patientId, LocalDate date) {
+        return patientId + "_" + date.format(ID_DATE);
+    }
+
+    public static String bucketIdOfDose(String doseId) {
+        int cut = doseId == null ? -1 : doseId.lastIndexOf('_');
+        return cut > 0 ? doseId.substring(0, cut) : null;
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getPatientId() { return patientId; }
+    public void setPatientId(String patientId) { this.patientId = patientId; }
+
+    public Integer getPatientBucket() { return patientBucket; }
+    public void setPatientBucket(Integer patientBucket) { this.patientBucket = patientBucket; }
+
+    public LocalDate getDate() { return date; }
+    public void setDate(LocalDate date) { this.date = date; }
+
+    public List<IntakeLog> getDoses() { return doses; }
+    public void setDoses(List<IntakeLog> doses) { this.doses = doses; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
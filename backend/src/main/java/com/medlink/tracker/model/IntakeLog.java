@@ -1,17 +1,30 @@
 package com.medlink.tracker.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+// Indexes are created by IntakeIndexes, not annotations, because IntakeBucket embeds this class
 @Document(collection = "intake_logs")
 public class IntakeLog {
 
+    // Patients are spread over this many hash buckets so background jobs can split work by range
+    public static final int PATIENT_BUCKETS = 1024;
+
+    private static final Pattern TIME = Pattern.compile("^\\s*(\\d{1,2}):(\\d{2})\\s*([AaPp][Mm])?\\s*$");
+
     @Id
     private String id;
 
     private String patientId;
+    // Derived from patientId; never bound from request bodies
+    @JsonIgnore
+    private Integer patientBucket;
     private String prescriptionId;
     private String medicationId;
     private String medicationName;
@@ -19,14 +32,29 @@ public class IntakeLog {
     private LocalDate scheduledDate;
     private String scheduledTime;  // e.g., "08:00 AM"
 
+    // scheduledDate + scheduledTime as one sortable value; derived, null if the time can't be parsed
+    private LocalDateTime scheduledAt;
+
     private LocalDateTime takenAt;
 
+    // Set once the reminder for this dose was handed to the delivery sink
+    private LocalDateTime reminderSentAt;
+
     private String status; // "TAKEN", "MISSED", "SKIPPED", "PENDING"
 
     private String notes;
 
     private int dosageQuantity = 1;
 
+    // Client-generated key so offline replays of the same event are stored once
+    private String idempotencyKey;
+
+    // Set by the missed-dose sweeper so it can count exactly the rows it changed
+    private String sweepId;
+
+    // Write-ahead log record that last wrote this dose, set by the write-behind drainer
+    private String writeId;
+
     private LocalDateTime createdAt = LocalDateTime.now();
 
     // Constructors
@@ -37,7 +65,12 @@ public class IntakeLog {
     public void setId(String id) { this.id = id; }
 
     public String getPatientId() { return patientId; }
-    public void setPatientId(String patientId) { this.patientId = patientId; }
+    public void setPatientId(String patientId) {
+        this.patientId = patientId;
+        this.patientBucket = bucketOf(patientId);
+    }
+
+    public Integer getPatientBucket() { return patientBucket; }
 
     public String getPrescriptionId() { return prescriptionId; }
     public void setPrescriptionId(String prescriptionId) { this.prescriptionId = prescriptionId; }
@@ -49,14 +82,26 @@ public class IntakeLog {
     public void setMedicationName(String medicationName) { this.medicationName = medicationName; }
 
     public LocalDate getScheduledDate() { return scheduledDate; }
-    public void setScheduledDate(LocalDate scheduledDate) { this.scheduledDate = scheduledDate; }
+    public void setScheduledDate(LocalDate scheduledDate) {
+        this.scheduledDate = scheduledDate;
+        this.scheduledAt = scheduledAtOf(scheduledDate, scheduledTime);
+    }
 
     public String getScheduledTime() { return scheduledTime; }
-    public void setScheduledTime(String scheduledTime) { this.scheduledTime = scheduledTime; }
+    public void setScheduledTime(String scheduledTime) {
+        this.scheduledTime = scheduledTime;
+        this.scheduledAt = scheduledAtOf(scheduledDate, scheduledTime);
+    }
+
+    public LocalDateTime getScheduledAt() { return scheduledAt; }
+    public void setScheduledAt(LocalDateTime scheduledAt) { this.scheduledAt = scheduledAt; }
 
     public LocalDateTime getTakenAt() { return takenAt; }
     public void setTakenAt(LocalDateTime takenAt) { this.takenAt = takenAt; }
 
+    public LocalDateTime getReminderSentAt() { return reminderSentAt; }
+    public void setReminderSentAt(LocalDateTime reminderSentAt) { this.reminderSentAt = reminderSentAt; }
+
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
 
@@ -66,6 +111,48 @@ public class IntakeLog {
     public int getDosageQuantity() { return dosageQuantity; }
     public void setDosageQuantity(int dosageQuantity) { this.dosageQuantity = dosageQuantity; }
 
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    public String getSweepId() { return sweepId; }
+    public void setSweepId(String sweepId) { this.sweepId = sweepId; }
+
+    public String getWriteId() { return writeId; }
+    public void setWriteId(String writeId) { this.writeId = writeId; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public static Integer bucketOf(String patientId) {
+        return patientId == null ? null : Math.floorMod(patientId.hashCode(), PATIENT_BUCKETS);
+    }
+
+    // Accepts "08:00 AM", "8:00 pm" and 24-hour "20:00"
+    public static LocalTime parseTime(String value) {
+        if (value == null) {
+            return null;
+        }
+        Matcher m = TIME.matcher(value);
+        if (!m.matches()) {
+            return null;
+        }
+        int hour = Integer.parseInt(m.group(1));
+        int minute = Integer.parseInt(m.group(2));
+        String meridiem = m.group(3);
+        if (meridiem != null) {
+            if (hour < 1 || hour > 12) {
+                return null;
+            }
+            hour = hour % 12 + (meridiem.equalsIgnoreCase("PM") ? 12 : 0);
+        }
+        if (hour > 23 || minute > 59) {
+            return null;
+        }
+        return LocalTime.of(hour, minute);
+    }
+
+    public static LocalDateTime scheduledAtOf(LocalDate date, String time) {
+        LocalTime parsed = parseTime(time);
+        return date == null || parsed == null ? null : date.atTime(parsed);
+    }
 }
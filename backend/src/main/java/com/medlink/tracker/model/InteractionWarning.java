@@ -0,0 +1,46 @@
+package com.medlink.tracker.model;
+
+// A safety finding for one medication of a new prescription; returned with the prescription, never stored
+public class InteractionWarning {
+
+    public static final String ALLERGY = "ALLERGY";
+    public static final String CONDITION = "CONDITION";
+    public static final String DRUG_INTERACTION = "DRUG_INTERACTION";
+    public static final String DUPLICATE_THERAPY = "DUPLICATE_THERAPY";
+
+    private String type;
+    private String medicationId;
+    private String medicationName;
+
+    // The allergy, condition or other medication this one conflicts with
+    private String conflictsWith;
+    private String otherMedicationId;
+
+    // Constructors
+    public InteractionWarning() {}
+
+    public InteractionWarning(String type, String medicationId, String medicationName,
+                              String conflictsWith, String otherMedicationId) {
+        this.type = type;
+        this.medicationId = medicationId;
+        this.medicationName = medicationName;
+        this.conflictsWith = conflictsWith;
+        this.otherMedicationId = otherMedicationId;
+    }
+
+    // Getters and Setters
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getMedicationId() { return medicationId; }
+    public void setMedicationId(String medicationId) { this.medicationId = medicationId; }
+
+    public String getMedicationName() { return medicationName; }
+    public void setMedicationName(String medicationName) { this.medicationName = medicationName; }
+
+    public String getConflictsWith() { return conflictsWith; }
+    public void setConflictsWith(String conflictsWith) { this.conflictsWith = conflictsWith; }
+
+    public String getOtherMedicationId() { return otherMedicationId; }
+    public void setOtherMedicationId(String otherMedicationId) { this.otherMedicationId = otherMedicationId; }
+}
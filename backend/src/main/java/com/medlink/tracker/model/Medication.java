@@ -1,6 +1,8 @@
 package com.medlink.tracker.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -27,6 +29,13 @@ public class Medication {
     private boolean requiresPrescription = true;
     private boolean active = true;
 
+    // Normalised name|genericName|strength; bulk imports upsert on it
+    @Indexed
+    private String catalogKey;
+
+    @Version
+    private Long version;
+
     private LocalDateTime createdAt = LocalDateTime.now();
 
     // Constructors
@@ -75,6 +84,12 @@ public class Medication {
     public boolean isActive() { return active; }
     public void setActive(boolean active) { this.active = active; }
 
+    public String getCatalogKey() { return catalogKey; }
+    public void setCatalogKey(String catalogKey) { this.catalogKey = catalogKey; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 }
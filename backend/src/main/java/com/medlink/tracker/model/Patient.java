@@ -1,13 +1,18 @@
 package com.medlink.tracker.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection = "patients")
+@CompoundIndex(name = "name_key_idx", def = "{'nameKey': 1, '_id': 1}")
+@CompoundIndex(name = "email_key_idx", def = "{'emailKey': 1, '_id': 1}")
 public class Patient {
 
     @Id
@@ -20,6 +25,12 @@ public class Patient {
     private String email;
     private String phoneNumber;
 
+    // Lower-cased name and email for sorted, prefix-searchable patient lists
+    @JsonIgnore
+    private String nameKey;
+    @JsonIgnore
+    private String emailKey;
+
     private LocalDate dateOfBirth;
     private String gender;
     private String bloodGroup;
@@ -33,6 +44,9 @@ public class Patient {
 
     private String assignedDoctorId;
 
+    @Version
+    private Long version;
+
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt = LocalDateTime.now();
 
@@ -79,9 +93,18 @@ public class Patient {
     public String getEmergencyContactPhone() { return emergencyContactPhone; }
     public void setEmergencyContactPhone(String emergencyContactPhone) { this.emergencyContactPhone = emergencyContactPhone; }
 
+    public String getNameKey() { return nameKey; }
+    public void setNameKey(String nameKey) { this.nameKey = nameKey; }
+
+    public String getEmailKey() { return emailKey; }
+    public void setEmailKey(String emailKey) { this.emailKey = emailKey; }
+
     public String getAssignedDoctorId() { return assignedDoctorId; }
     public void setAssignedDoctorId(String assignedDoctorId) { this.assignedDoctorId = assignedDoctorId; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
@@ -0,0 +1,55 @@
+package com.medlink.tracker.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Row of a patient list: contact and triage fields only, no address, allergies or emergency contacts
+public class PatientListItem {
+
+    private String id;
+    private String name;
+    private String email;
+    private String phoneNumber;
+    private String gender;
+    private String bloodGroup;
+    private LocalDate dateOfBirth;
+    private List<String> chronicConditions;
+    private String assignedDoctorId;
+    // Only on a doctor's roster
+    private LocalDateTime assignedAt;
+
+    // Constructors
+    public PatientListItem() {}
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getEmail() { return email; }
+    public void setEmail(String email) { this.email = email; }
+
+    public String getPhoneNumber() { return phoneNumber; }
+    public void setPhoneNumber(String phoneNumber) { this.phoneNumber = phoneNumber; }
+
+    public String getGender() { return gender; }
+    public void setGender(String gender) { this.gender = gender; }
+
+    public String getBloodGroup() { return bloodGroup; }
+    public void setBloodGroup(String bloodGroup) { this.bloodGroup = bloodGroup; }
+
+    public LocalDate getDateOfBirth() { return dateOfBirth; }
+    public void setDateOfBirth(LocalDate dateOfBirth) { this.dateOfBirth = dateOfBirth; }
+
+    public List<String> getChronicConditions() { return chronicConditions; }
+    public void setChronicConditions(List<String> chronicConditions) { this.chronicConditions = chronicConditions; }
+
+    public String getAssignedDoctorId() { return assignedDoctorId; }
+    public void setAssignedDoctorId(String assignedDoctorId) { this.assignedDoctorId = assignedDoctorId; }
+
+    public LocalDateTime getAssignedAt() { return assignedAt; }
+    public void setAssignedAt(LocalDateTime assignedAt) { this.assignedAt = assignedAt; }
+}
@@ -1,12 +1,21 @@
 package com.medlink.tracker.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection = "prescriptions")
+@CompoundIndex(name = "patient_status_idx", def = "{'patientId': 1, 'status': 1}")
+@CompoundIndex(name = "doctor_created_idx", def = "{'doctorId': 1, 'createdAt': -1}")
+@CompoundIndex(name = "status_expiry_idx", def = "{'status': 1, 'expiryDate': 1}")
 public class Prescription {
 
     @Id
@@ -27,9 +36,25 @@ public class Prescription {
 
     private List<PrescriptionMedication> medications;
 
+    @Version
+    private Long version;
+
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt = LocalDateTime.now();
 
+    // Set by the expiry engine so it can read back exactly the prescriptions it completed
+    @Indexed(sparse = true)
+    private String expirySweepId;
+
+    // Set once the expiry date was derived from the courses, including when they are open-ended
+    @JsonIgnore
+    private boolean expiryDerived;
+
+    // Interaction check results, only present on the create response
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<InteractionWarning> warnings;
+
     // Nested class for medications in prescription
     public static class PrescriptionMedication {
         private String medicationId;
@@ -105,9 +130,21 @@ public class Prescription {
     public List<PrescriptionMedication> getMedications() { return medications; }
     public void setMedications(List<PrescriptionMedication> medications) { this.medications = medications; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public String getExpirySweepId() { return expirySweepId; }
+    public void setExpirySweepId(String expirySweepId) { this.expirySweepId = expirySweepId; }
+
+    public boolean isExpiryDerived() { return expiryDerived; }
+    public void setExpiryDerived(boolean expiryDerived) { this.expiryDerived = expiryDerived; }
+
+    public List<InteractionWarning> getWarnings() { return warnings; }
+    public void setWarnings(List<InteractionWarning> warnings) { this.warnings = warnings; }
 }
@@ -0,0 +1,53 @@
+package com.medlink.tracker.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Card-sized view of a prescription: no notes or medication details, just how many medications it has
+public class PrescriptionListItem {
+
+    private String id;
+    private String patientId;
+    private String patientName;
+    private String doctorName;
+    private String diagnosis;
+    private String status;
+    private LocalDate prescribedDate;
+    private LocalDate expiryDate;
+    private LocalDateTime createdAt;
+    private int medicationCount;
+
+    // Constructors
+    public PrescriptionListItem() {}
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getPatientId() { return patientId; }
+    public void setPatientId(String patientId) { this.patientId = patientId; }
+
+    public String getPatientName() { return patientName; }
+    public void setPatientName(String patientName) { this.patientName = patientName; }
+
+    public String getDoctorName() { return doctorName; }
+    public void setDoctorName(String doctorName) { this.doctorName = doctorName; }
+
+    public String getDiagnosis() { return diagnosis; }
+    public void setDiagnosis(String diagnosis) { this.diagnosis = diagnosis; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public LocalDate getPrescribedDate() { return prescribedDate; }
+    public void setPrescribedDate(LocalDate prescribedDate) { this.prescribedDate = prescribedDate; }
+
+    public LocalDate getExpiryDate() { return expiryDate; }
+    public void setExpiryDate(LocalDate expiryDate) { this.expiryDate = expiryDate; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public int getMedicationCount() { return medicationCount; }
+    public void setMedicationCount(int medicationCount) { this.medicationCount = medicationCount; }
+}
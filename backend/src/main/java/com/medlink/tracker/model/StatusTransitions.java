@@ -0,0 +1,51 @@
+package com.medlink.tracker.model;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Allowed status changes for intake logs and prescriptions, as target status to
+ * the statuses it may be reached from. Updates match on these source statuses in
+ * the same findAndModify that writes the new one, so a stale or illegal change
+ * simply matches nothing.
+ */
+public final class StatusTransitions {
+
+    // A missed or skipped dose can still be reported as taken late; TAKEN is final
+    public static final Map<String, Set<String>> INTAKE = Map.of(
+            "TAKEN", Set.of("PENDING", "MISSED", "SKIPPED"),
+            "SKIPPED", Set.of("PENDING", "MISSED"),
+            "MISSED", Set.of("PENDING"),
+            "PENDING", Set.of()
+    );
+
+    // Completed and cancelled prescriptions may be re-activated
+    public static final Map<String, Set<String>> PRESCRIPTION = Map.of(
+            "ACTIVE", Set.of("COMPLETED", "CANCELLED"),
+            "COMPLETED", Set.of("ACTIVE"),
+            "CANCELLED", Set.of("ACTIVE")
+    );
+
+    private StatusTransitions() {}
+
+    /**
+     * Source statuses a change to {@code target} may start from, narrowed to
+     * {@code expected} when the caller states what it last saw.
+     */
+    public static Set<String> sourcesFor(Map<String, Set<String>> machine, String target, String expected) {
+        if (target == null) {
+            throw new RuntimeException("status is required");
+        }
+        Set<String> sources = machine.get(target);
+        if (sources == null) {
+            throw new RuntimeException("Unknown status: " + target);
+        }
+        if (expected == null) {
+            return sources;
+        }
+        Set<String> narrowed = new HashSet<>(sources);
+        narrowed.retainAll(Set.of(expected));
+        return narrowed;
+    }
+}
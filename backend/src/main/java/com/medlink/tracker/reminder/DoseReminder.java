@@ -0,0 +1,31 @@
+package com.medlink.tracker.reminder;
+
+import com.medlink.tracker.model.IntakeLog;
+import java.time.LocalDateTime;
+
+public final class DoseReminder {
+
+    private final String doseId;
+    private final String patientId;
+    private final String medicationName;
+    private final LocalDateTime scheduledAt;
+
+    public DoseReminder(String doseId, String patientId, String medicationName, LocalDateTime scheduledAt) {
+        this.doseId = doseId;
+        this.patientId = patientId;
+        this.medicationName = medicationName;
+        this.scheduledAt = scheduledAt;
+    }
+
+    public static DoseReminder of(IntakeLog log) {
+        return new DoseReminder(log.getId(), log.getPatientId(), log.getMedicationName(), log.getScheduledAt());
+    }
+
+    public String getDoseId() { return doseId; }
+
+    public String getPatientId() { return patientId; }
+
+    public String getMedicationName() { return medicationName; }
+
+    public LocalDateTime getScheduledAt() { return scheduledAt; }
+}
@@ -0,0 +1,174 @@
+package com.medlink.tracker.reminder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel (Varghese &amp; Lauck) with 4 levels of 64 slots.
+ * Level l covers deltas below 64^(l+1) ticks; entries are moved one level down
+ * when the lower wheels wrap onto their slot. Add and cancel are O(1): each slot is
+ * an intrusive doubly-linked list and entries are also indexed by key.
+ * <p>
+ * All methods synchronize on the wheel. {@link #advance} only unlinks the expired
+ * entries; callers deliver them outside the lock.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private static final class Node<T> {
+        final String key;
+        final T payload;
+        long tick;
+        Node<T> prev;
+        Node<T> next;
+        Node<T>[] slotHead;
+        int slotIndex;
+
+        Node(String key, T payload, long tick) {
+            this.key = key;
+            this.payload = payload;
+            this.tick = tick;
+        }
+    }
+
+    private final long tickMillis;
+    private final Node<T>[][] wheels;
+    private final Map<String, Node<T>> byKey = new HashMap<>();
+    private long currentTick;
+
+    // Java can't create a generic array; the slots only ever hold Node<T> added by this class
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.wheels = (Node<T>[][]) new Node<?>[LEVELS][SLOTS];
+    }
+
+    // Largest deadline distance the wheel can hold, in milliseconds
+    public long getSpanMillis() {
+        return ((1L << (BITS * LEVELS)) - 1) * tickMillis;
+    }
+
+    /**
+     * Schedules (or reschedules) {@code key}. Deadlines already in the past fire on
+     * the next tick. Returns false if the deadline is beyond the wheel's span.
+     */
+    public synchronized boolean add(String key, T payload, long deadlineMillis) {
+        long tick = Math.max(ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        if (tick - currentTick >= (1L << (BITS * LEVELS))) {
+            return false;
+        }
+        Node<T> existing = byKey.remove(key);
+        if (existing != null) {
+            unlink(existing);
+        }
+        Node<T> node = new Node<>(key, payload, tick);
+        byKey.put(key, node);
+        place(node);
+        return true;
+    }
+
+    public synchronized boolean cancel(String key) {
+        Node<T> node = byKey.remove(key);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    public synchronized boolean contains(String key) {
+        return byKey.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return byKey.size();
+    }
+
+    /**
+     * Advances the wheel to {@code nowMillis}, cascading higher levels as lower ones
+     * wrap, and returns every entry that came due.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long target = nowMillis / tickMillis;
+        List<T> expired = new ArrayList<>();
+        while (currentTick < target) {
+            currentTick++;
+            // Cascade from the lowest wrapped level upward, as in the classic kernel timer wheel
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                cascade(level, (int) ((currentTick >>> (BITS * level)) & MASK));
+            }
+            Node<T>[] level0 = wheels[0];
+            int index = (int) (currentTick & MASK);
+            Node<T> node = level0[index];
+            level0[index] = null;
+            while (node != null) {
+                Node<T> next = node.next;
+                node.prev = node.next = null;
+                node.slotHead = null;
+                byKey.remove(node.key);
+                expired.add(node.payload);
+                node = next;
+            }
+        }
+        return expired;
+    }
+
+    private void cascade(int level, int index) {
+        Node<T> node = wheels[level][index];
+        wheels[level][index] = null;
+        while (node != null) {
+            Node<T> next = node.next;
+            node.prev = node.next = null;
+            place(node);
+            node = next;
+        }
+    }
+
+    private void place(Node<T> node) {
+        long delta = node.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+            level++;
+        }
+        int index = (int) ((node.tick >>> (BITS * level)) & MASK);
+        Node<T>[] slots = wheels[level];
+        node.slotHead = slots;
+        node.slotIndex = index;
+        node.prev = null;
+        node.next = slots[index];
+        if (slots[index] != null) {
+            slots[index].prev = node;
+        }
+        slots[index] = node;
+    }
+
+    private void unlink(Node<T> node) {
+        if (node.slotHead == null) {
+            return;
+        }
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            node.slotHead[node.slotIndex] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = node.next = null;
+        node.slotHead = null;
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+}
@@ -0,0 +1,33 @@
+package com.medlink.tracker.reminder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Stand-in sink until a real push channel exists; only counts and logs deliveries.
+// A real channel should be registered as a @Primary ReminderSink.
+@Component
+public class LoggingReminderSink implements ReminderSink {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingReminderSink.class);
+
+    private final LongAdder delivered = new LongAdder();
+
+    @Override
+    public void deliver(List<DoseReminder> reminders) {
+        delivered.add(reminders.size());
+        if (log.isDebugEnabled()) {
+            for (DoseReminder reminder : reminders) {
+                log.debug("Reminder: patient={} dose={} medication={} at={}", reminder.getPatientId(),
+                        reminder.getDoseId(), reminder.getMedicationName(), reminder.getScheduledAt());
+            }
+        }
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+}
@@ -0,0 +1,210 @@
+package com.medlink.tracker.reminder;
+
+import com.medlink.tracker.event.IntakeLogChangedEvent;
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.repository.IntakeLogRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Server-driven dose reminders. Upcoming PENDING doses are loaded from Mongo into a
+ * {@link HierarchicalTimingWheel}; a single ticker advances the wheel and hands due
+ * reminders to the {@link ReminderSink} in fixed-size batches on a separate pool, so
+ * an 08:00 spike of tens of thousands of doses never stalls the ticker.
+ * <p>
+ * Mongo stays the source of truth: delivered doses are stamped with reminderSentAt,
+ * so a restart simply reloads every unsent PENDING dose in the horizon.
+ */
+@Service
+public class ReminderScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(ReminderScheduler.class);
+
+    @Autowired private IntakeLogRepository intakeLogRepository;
+    @Autowired private ReminderSink reminderSink;
+
+    @Value("${reminders.enabled:true}")
+    private boolean enabled;
+
+    @Value("${reminders.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${reminders.horizon-minutes:120}")
+    private long horizonMinutes;
+
+    @Value("${reminders.reload-minutes:10}")
+    private long reloadMinutes;
+
+    @Value("${reminders.late-minutes:15}")
+    private long lateMinutes;
+
+    @Value("${reminders.delivery-batch-size:500}")
+    private int deliveryBatchSize;
+
+    @Value("${reminders.delivery-threads:2}")
+    private int deliveryThreads;
+
+    private volatile HierarchicalTimingWheel<DoseReminder> wheel;
+    private ScheduledExecutorService ticker;
+    private ExecutorService delivery;
+
+    // Doses with scheduledAt before this instant have been loaded into the wheel
+    private volatile LocalDateTime loadedUntil;
+
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder deliveryFailures = new LongAdder();
+    private volatile int largestBurst;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        wheel = new HierarchicalTimingWheel<>(tickMillis, System.currentTimeMillis());
+        AtomicInteger counter = new AtomicInteger();
+        delivery = Executors.newFixedThreadPool(Math.max(1, deliveryThreads), r -> {
+            Thread t = new Thread(r, "reminder-delivery-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reminder-ticker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        LocalDateTime now = LocalDateTime.now();
+        load(now.minusMinutes(lateMinutes), now.plusMinutes(horizonMinutes));
+
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        ticker.scheduleWithFixedDelay(this::extendHorizon, reloadMinutes, reloadMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        if (delivery != null) {
+            delivery.shutdown();
+        }
+    }
+
+    @EventListener
+    public void onIntakeLogChanged(IntakeLogChangedEvent event) {
+        if (wheel == null) {
+            return;
+        }
+        IntakeLog dose = event.getLog();
+        if (dose.getId() == null) {
+            return;
+        }
+        if (event.isRemoved() || !"PENDING".equals(dose.getStatus())) {
+            if (wheel.cancel(dose.getId())) {
+                cancelled.increment();
+            }
+            return;
+        }
+        LocalDateTime at = dose.getScheduledAt();
+        if (at != null && dose.getReminderSentAt() == null && loadedUntil != null && at.isBefore(loadedUntil)) {
+            schedule(dose);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("scheduled", wheel == null ? 0 : wheel.size());
+        stats.put("loaded", loaded.sum());
+        stats.put("fired", fired.sum());
+        stats.put("cancelled", cancelled.sum());
+        stats.put("delivered", delivered.sum());
+        stats.put("deliveryFailures", deliveryFailures.sum());
+        stats.put("largestBurst", largestBurst);
+        stats.put("loadedUntil", loadedUntil == null ? null : loadedUntil.toString());
+        return stats;
+    }
+
+    private void tick() {
+        try {
+            List<DoseReminder> due = wheel.advance(System.currentTimeMillis());
+            if (due.isEmpty()) {
+                return;
+            }
+            fired.add(due.size());
+            largestBurst = Math.max(largestBurst, due.size());
+            for (int i = 0; i < due.size(); i += deliveryBatchSize) {
+                List<DoseReminder> batch = due.subList(i, Math.min(i + deliveryBatchSize, due.size()));
+                delivery.execute(() -> deliver(batch));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Reminder tick failed", e);
+        }
+    }
+
+    private void deliver(List<DoseReminder> batch) {
+        try {
+            reminderSink.deliver(batch);
+            delivered.add(batch.size());
+            List<String> ids = new ArrayList<>(batch.size());
+            for (DoseReminder reminder : batch) {
+                ids.add(reminder.getDoseId());
+            }
+            intakeLogRepository.markReminderSent(ids, LocalDateTime.now());
+        } catch (RuntimeException e) {
+            deliveryFailures.add(batch.size());
+            log.warn("Reminder delivery failed for {} doses", batch.size(), e);
+        }
+    }
+
+    private void extendHorizon() {
+        try {
+            LocalDateTime from = loadedUntil != null ? loadedUntil : LocalDateTime.now();
+            load(from, LocalDateTime.now().plusMinutes(horizonMinutes));
+        } catch (RuntimeException e) {
+            log.warn("Reminder reload failed", e);
+        }
+    }
+
+    // Streams unsent PENDING doses in [from, to) from the (status, scheduledAt) index into the wheel
+    private void load(LocalDateTime from, LocalDateTime to) {
+        if (!to.isAfter(from)) {
+            return;
+        }
+        // Set first so changes arriving while we stream are scheduled by the listener
+        loadedUntil = to;
+        long count = 0;
+        try (Stream<IntakeLog> stream = intakeLogRepository.streamPending(from, to, true, 0)) {
+            Iterator<IntakeLog> it = stream.iterator();
+            while (it.hasNext()) {
+                if (schedule(it.next())) {
+                    count++;
+                }
+            }
+        }
+        loaded.add(count);
+        log.debug("Loaded {} reminders for [{}, {})", count, from, to);
+    }
+
+    private boolean schedule(IntakeLog dose) {
+        long deadline = dose.getScheduledAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return wheel.add(dose.getId(), DoseReminder.of(dose), deadline);
+    }
+}
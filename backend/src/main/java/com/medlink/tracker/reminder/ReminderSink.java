@@ -0,0 +1,8 @@
+package com.medlink.tracker.reminder;
+
+import java.util.List;
+
+// Delivery channel for due reminders (push, SMS, ...); called with batches from the reminder pool
+public interface ReminderSink {
+    void deliver(List<DoseReminder> reminders);
+}
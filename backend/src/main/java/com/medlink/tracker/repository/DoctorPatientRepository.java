@@ -0,0 +1,12 @@
+package com.medlink.tracker.repository;
+
+import com.medlink.tracker.model.DoctorPatient;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.List;
+import java.util.Optional;
+
+public interface DoctorPatientRepository extends MongoRepository<DoctorPatient, String> {
+    List<DoctorPatient> findByDoctorId(String doctorId);
+    Optional<DoctorPatient> findFirstByPatientIdOrderByAssignedAtAsc(String patientId);
+    long deleteByDoctorIdAndPatientId(String doctorId, String patientId);
+}
@@ -2,14 +2,15 @@ package com.medlink.tracker.repository;
 
 import com.medlink.tracker.model.IntakeLog;
 import org.springframework.data.mongodb.repository.MongoRepository;
-import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+
+public interface IntakeLogRepository extends MongoRepository<IntakeLog, String>, IntakeLogRepositoryCustom {
+    // Redeclared so calls resolve to the layout-aware implementation in IntakeLogRepositoryImpl
+    @Override <S extends IntakeLog> S save(S log);
+    @Override Optional<IntakeLog> findById(String id);
 
-public interface IntakeLogRepository extends MongoRepository<IntakeLog, String> {
-    List<IntakeLog> findByPatientId(String patientId);
-    List<IntakeLog> findByPatientIdAndScheduledDate(String patientId, LocalDate date);
     List<IntakeLog> findByPrescriptionId(String prescriptionId);
     List<IntakeLog> findByPatientIdAndStatus(String patientId, String status);
-    List<IntakeLog> findByPatientIdAndScheduledDateBetween(String patientId, LocalDate start, LocalDate end);
     long countByPatientIdAndStatus(String patientId, String status);
 }
@@ -0,0 +1,41 @@
+package com.medlink.tracker.repository;
+
+import com.medlink.tracker.model.IntakeLog;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Methods served by IntakeLogRepositoryImpl so they can switch between storage layouts
+public interface IntakeLogRepositoryCustom {
+
+    // Result of insertNew for one log: stored now, already stored under its key, or failed
+    record InsertOutcome(boolean created, String error) {}
+
+    <S extends IntakeLog> S save(S log);
+    Optional<IntakeLog> findById(String id);
+    List<IntakeLog> findByPatientId(String patientId);
+    List<IntakeLog> findByPatientIdAndScheduledDate(String patientId, LocalDate date);
+    List<IntakeLog> findByPatientIdAndScheduledDateBetween(String patientId, LocalDate start, LocalDate end);
+    Optional<IntakeLog> findByIdempotencyKey(String idempotencyKey);
+    Optional<IntakeLog> transitionStatus(String id, Collection<String> fromStatuses, String status, LocalDateTime takenAt);
+
+    List<InsertOutcome> insertNew(List<IntakeLog> logs);
+    Map<String, String> findIdsByIdempotencyKeys(Collection<String> keys);
+    List<IntakeLog> removePending(String prescriptionId, String keyPrefix, LocalDateTime after);
+    void deleteByPatientId(String patientId);
+
+    long markMissed(Integer fromBucket, Integer toBucket, LocalDateTime cutoff, String sweepId);
+    Map<String, Map<LocalDate, Long>> countBySweepId(String sweepId);
+
+    List<IntakeLog> findHistoryPage(String patientId, LocalDate lastDate, String lastId, int limit);
+    Stream<IntakeLog> streamHistory(String patientId);
+    Stream<IntakeLog> streamPending(LocalDateTime from, LocalDateTime to, boolean unremindedOnly, int limit);
+    void markReminderSent(Collection<String> ids, LocalDateTime sentAt);
+
+    Map<LocalDate, Map<String, Long>> countByDateAndStatus(String patientId);
+    List<String> findPatientIds();
+}
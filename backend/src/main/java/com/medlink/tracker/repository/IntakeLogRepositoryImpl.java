@@ -0,0 +1,663 @@
+package com.medlink.tracker.repository;
+
+import com.medlink.tracker.model.IntakeBucket;
+import com.medlink.tracker.model.IntakeLog;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Every intake read and write goes through here, so the storage layout can be
+ * switched without touching callers. In "document" mode (default) each dose is its
+ * own intake_logs document; in "bucketed" mode a patient's doses for one day live
+ * in a single intake_buckets document and each dose id carries its bucket id, so
+ * lookups by id stay a single _id read.
+ */
+public class IntakeLogRepositoryImpl implements IntakeLogRepositoryCustom {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${intake.storage.mode:document}")
+    private String storageMode;
+
+    @Override
+    public <S extends IntakeLog> S save(S log) {
+        if (!bucketed()) {
+            return mongoTemplate.save(log);
+        }
+        LocalDate date = log.getScheduledDate() != null ? log.getScheduledDate() : LocalDate.now();
+        log.setScheduledDate(date);
+        String bucketId = IntakeBucket.idFor(log.getPatientId(), date);
+
+        // A dose whose date changed moves to the new day's bucket under a new id
+        String movedFrom = null;
+        if (log.getId() != null && bucketId.equals(IntakeBucket.bucketIdOfDose(log.getId()))) {
+            long matched = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(bucketId).and("doses._id").is(log.getId())),
+                    new Update().set("doses.$", toDocument(log)).set("updatedAt", LocalDateTime.now()),
+                    IntakeBucket.class).getMatchedCount();
+            if (matched > 0) {
+                return log;
+            }
+        } else {
+            movedFrom = log.getId();
+            log.setId(newDoseId(bucketId));
+        }
+
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(bucketId)), pushDose(log, date), IntakeBucket.class);
+        String previousBucket = IntakeBucket.bucketIdOfDose(movedFrom);
+        if (previousBucket != null) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(previousBucket)),
+                    new Update().pull("doses", new Document("_id", movedFrom)).set("updatedAt", LocalDateTime.now()),
+                    IntakeBucket.class);
+        }
+        return log;
+    }
+
+    @Override
+    public Optional<IntakeLog> findById(String id) {
+        if (!bucketed()) {
+            return Optional.ofNullable(mongoTemplate.findById(id, IntakeLog.class));
+        }
+        String bucketId = IntakeBucket.bucketIdOfDose(id);
+        if (bucketId == null) {
+            return Optional.empty();
+        }
+        IntakeBucket bucket = mongoTemplate.findById(bucketId, IntakeBucket.class);
+        if (bucket == null) {
+            return Optional.empty();
+        }
+        return bucket.getDoses().stream().filter(d -> id.equals(d.getId())).findFirst();
+    }
+
+    @Override
+    public List<IntakeLog> findByPatientId(String patientId) {
+        if (!bucketed()) {
+            return mongoTemplate.find(Query.query(Criteria.where("patientId").is(patientId)), IntakeLog.class);
+        }
+        return doses(mongoTemplate.find(Query.query(Criteria.where("patientId").is(patientId))
+                .with(Sort.by(Sort.Direction.ASC, "date")), IntakeBucket.class));
+    }
+
+    @Override
+    public List<IntakeLog> findByPatientIdAndScheduledDate(String patientId, LocalDate date) {
+        if (!bucketed()) {
+            return mongoTemplate.find(Query.query(Criteria.where("patientId").is(patientId)
+                    .and("scheduledDate").is(date)), IntakeLog.class);
+        }
+        IntakeBucket bucket = mongoTemplate.findById(IntakeBucket.idFor(patientId, date), IntakeBucket.class);
+        return bucket == null ? new ArrayList<>() : bucket.getDoses();
+    }
+
+    @Override
+    public List<IntakeLog> findByPatientIdAndScheduledDateBetween(String patientId, LocalDate start, LocalDate end) {
+        if (!bucketed()) {
+            return mongoTemplate.find(Query.query(Criteria.where("patientId").is(patientId)
+                    .and("scheduledDate").gt(start).lt(end)), IntakeLog.class);
+        }
+        return doses(mongoTemplate.find(Query.query(Criteria.where("patientId").is(patientId)
+                .and("date").gt(start).lt(end))
+                .with(Sort.by(Sort.Direction.ASC, "date")), IntakeBucket.class));
+    }
+
+    @Override
+    public Optional<IntakeLog> findByIdempotencyKey(String idempotencyKey) {
+        if (!bucketed()) {
+            return Optional.ofNullable(mongoTemplate.findOne(
+                    Query.query(Criteria.where("idempotencyKey").is(idempotencyKey)), IntakeLog.class));
+        }
+        IntakeBucket bucket = mongoTemplate.findOne(
+                Query.query(Criteria.where("doses.idempotencyKey").is(idempotencyKey)), IntakeBucket.class);
+        if (bucket == null) {
+            return Optional.empty();
+        }
+        return bucket.getDoses().stream().filter(d -> idempotencyKey.equals(d.getIdempotencyKey())).findFirst();
+    }
+
+    /**
+     * Sets the status only if the dose is currently in one of {@code fromStatuses},
+     * in a single findAndModify. Returns the dose as it was before the change, or
+     * empty when nothing matched. {@code takenAt} is written when non-null.
+     */
+    @Override
+    public Optional<IntakeLog> transitionStatus(String id, Collection<String> fromStatuses, String status,
+                                                LocalDateTime takenAt) {
+        if (fromStatuses.isEmpty()) {
+            return Optional.empty();
+        }
+        if (!bucketed()) {
+            Update update = new Update().set("status", status);
+            if (takenAt != null) {
+                update.set("takenAt", takenAt);
+            }
+            return Optional.ofNullable(mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(id).and("status").in(fromStatuses)),
+                    update, IntakeLog.class));
+        }
+        String bucketId = IntakeBucket.bucketIdOfDose(id);
+        if (bucketId == null) {
+            return Optional.empty();
+        }
+        Update update = new Update().set("doses.$.status", status).set("updatedAt", LocalDateTime.now());
+        if (takenAt != null) {
+            update.set("doses.$.takenAt", takenAt);
+        }
+        IntakeBucket before = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(bucketId).and("doses").elemMatch(
+                        Criteria.where("_id").is(id).and("status").in(fromStatuses))),
+                update, FindAndModifyOptions.options().returnNew(false), IntakeBucket.class);
+        if (before == null) {
+            return Optional.empty();
+        }
+        return before.getDoses().stream().filter(d -> id.equals(d.getId())).findFirst();
+    }
+
+    /**
+     * Stores each log unless a log with the same idempotency key is already stored,
+     * as one unordered bulk write. Every log must carry a key. Created logs get their
+     * id set; the outcomes are in request order.
+     */
+    @Override
+    public List<InsertOutcome> insertNew(List<IntakeLog> logs) {
+        if (logs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return bucketed() ? insertNewBucketed(logs) : insertNewDocuments(logs);
+    }
+
+    @Override
+    public Map<String, String> findIdsByIdempotencyKeys(Collection<String> keys) {
+        Map<String, String> idsByKey = new HashMap<>();
+        if (keys.isEmpty()) {
+            return idsByKey;
+        }
+        if (!bucketed()) {
+            Query query = Query.query(Criteria.where("idempotencyKey").in(keys));
+            query.fields().include("_id").include("idempotencyKey");
+            for (IntakeLog existing : mongoTemplate.find(query, IntakeLog.class)) {
+                idsByKey.put(existing.getIdempotencyKey(), existing.getId());
+            }
+            return idsByKey;
+        }
+        Set<String> wanted = new HashSet<>(keys);
+        for (IntakeBucket bucket : mongoTemplate.find(
+                Query.query(Criteria.where("doses.idempotencyKey").in(keys)), IntakeBucket.class)) {
+            for (IntakeLog dose : bucket.getDoses()) {
+                if (dose.getIdempotencyKey() != null && wanted.contains(dose.getIdempotencyKey())) {
+                    idsByKey.put(dose.getIdempotencyKey(), dose.getId());
+                }
+            }
+        }
+        return idsByKey;
+    }
+
+    /**
+     * Removes the PENDING doses of a prescription scheduled after {@code after} whose
+     * idempotency key starts with {@code keyPrefix}, one dose at a time with the
+     * PENDING guard, and returns exactly the doses that were removed.
+     */
+    @Override
+    public List<IntakeLog> removePending(String prescriptionId, String keyPrefix, LocalDateTime after) {
+        Criteria pending = Criteria.where("prescriptionId").is(prescriptionId)
+                .and("status").is("PENDING")
+                .and("scheduledAt").gt(after)
+                .and("idempotencyKey").regex("^" + keyPrefix);
+
+        List<IntakeLog> removed = new ArrayList<>();
+        if (!bucketed()) {
+            Query query = Query.query(pending);
+            IntakeLog dose;
+            while ((dose = mongoTemplate.findAndRemove(query, IntakeLog.class)) != null) {
+                removed.add(dose);
+            }
+            return removed;
+        }
+        for (IntakeBucket bucket : mongoTemplate.find(
+                Query.query(Criteria.where("doses").elemMatch(pending)), IntakeBucket.class)) {
+            for (IntakeLog dose : bucket.getDoses()) {
+                boolean candidate = prescriptionId.equals(dose.getPrescriptionId())
+                        && "PENDING".equals(dose.getStatus())
+                        && dose.getScheduledAt() != null && dose.getScheduledAt().isAfter(after)
+                        && dose.getIdempotencyKey() != null && dose.getIdempotencyKey().startsWith(keyPrefix);
+                if (!candidate) {
+                    continue;
+                }
+                Document match = new Document("_id", dose.getId()).append("status", "PENDING");
+                long modified = mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(bucket.getId()).and("doses").elemMatch(
+                                Criteria.where("_id").is(dose.getId()).and("status").is("PENDING"))),
+                        new Update().pull("doses", match).set("updatedAt", LocalDateTime.now()),
+                        IntakeBucket.class).getModifiedCount();
+                if (modified > 0) {
+                    removed.add(dose);
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void deleteByPatientId(String patientId) {
+        mongoTemplate.remove(Query.query(Criteria.where("patientId").is(patientId)),
+                bucketed() ? IntakeBucket.class : IntakeLog.class);
+    }
+
+    /**
+     * Marks PENDING doses scheduled before {@code cutoff} as MISSED and tags them with
+     * {@code sweepId}, for patients in the hash range [fromBucket, toBucket). Null
+     * bounds select doses stored before patientBucket existed. Doses whose time could
+     * not be parsed only become overdue once their whole day has passed. Returns how
+     * many documents changed; count the doses with {@link #countBySweepId}.
+     */
+    @Override
+    public long markMissed(Integer fromBucket, Integer toBucket, LocalDateTime cutoff, String sweepId) {
+        Criteria range = fromBucket == null
+                ? Criteria.where("patientBucket").is(null)
+                : Criteria.where("patientBucket").gte(fromBucket).lt(toBucket);
+        long updated = 0;
+        if (!bucketed()) {
+            Update update = new Update().set("status", "MISSED").set("sweepId", sweepId);
+            for (Criteria overdue : List.of(overdueTimed("", cutoff), overdueUntimed("", cutoff))) {
+                updated += mongoTemplate.updateMulti(Query.query(new Criteria().andOperator(range, overdue)),
+                        update, IntakeLog.class).getModifiedCount();
+            }
+            return updated;
+        }
+        List<Criteria[]> passes = List.of(
+                new Criteria[] {overdueTimed("", cutoff), overdueTimed("d.", cutoff)},
+                new Criteria[] {overdueUntimed("", cutoff), overdueUntimed("d.", cutoff)});
+        for (Criteria[] pass : passes) {
+            Update update = new Update()
+                    .set("doses.$[d].status", "MISSED")
+                    .set("doses.$[d].sweepId", sweepId)
+                    .set("updatedAt", LocalDateTime.now())
+                    .filterArray(pass[1]);
+            updated += mongoTemplate.updateMulti(Query.query(new Criteria().andOperator(range,
+                            Criteria.where("doses").elemMatch(pass[0]))),
+                    update, IntakeBucket.class).getModifiedCount();
+        }
+        return updated;
+    }
+
+    // patientId -> scheduled day -> doses tagged with the sweep id
+    @Override
+    public Map<String, Map<LocalDate, Long>> countBySweepId(String sweepId) {
+        Aggregation aggregation;
+        String dateField;
+        if (!bucketed()) {
+            dateField = "scheduledDate";
+            aggregation = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("sweepId").is(sweepId)),
+                    Aggregation.group("patientId", dateField).count().as("count"));
+        } else {
+            dateField = "date";
+            aggregation = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("doses.sweepId").is(sweepId)),
+                    Aggregation.unwind("doses"),
+                    Aggregation.match(Criteria.where("doses.sweepId").is(sweepId)),
+                    Aggregation.group("patientId", dateField).count().as("count"));
+        }
+        Map<String, Map<LocalDate, Long>> counts = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, collection(), Document.class)) {
+            Document key = row.get("_id", Document.class);
+            LocalDate day = toLocalDate(key.get(dateField));
+            if (key.getString("patientId") == null || day == null) {
+                continue;
+            }
+            counts.computeIfAbsent(key.getString("patientId"), k -> new HashMap<>())
+                    .merge(day, ((Number) row.get("count")).longValue(), Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Up to {@code limit} doses of the patient, newest first by (scheduledDate, _id),
+     * that come after the position ({@code lastDate}, {@code lastId}); a null
+     * {@code lastId} starts from the newest. Undated doses sort last and are paged
+     * with a null {@code lastDate}.
+     */
+    @Override
+    public List<IntakeLog> findHistoryPage(String patientId, LocalDate lastDate, String lastId, int limit) {
+        if (!bucketed()) {
+            Criteria criteria = Criteria.where("patientId").is(patientId);
+            if (lastId != null) {
+                Object last = ObjectId.isValid(lastId) ? new ObjectId(lastId) : lastId;
+                if (lastDate == null) {
+                    criteria.and("scheduledDate").is(null).and("_id").lt(last);
+                } else {
+                    criteria.orOperator(
+                            Criteria.where("scheduledDate").lt(lastDate),
+                            Criteria.where("scheduledDate").is(lastDate).and("_id").lt(last),
+                            Criteria.where("scheduledDate").is(null));
+                }
+            }
+            return mongoTemplate.find(new Query(criteria).with(historySort()).limit(limit), IntakeLog.class);
+        }
+
+        List<IntakeLog> page = new ArrayList<>(limit);
+        if (lastId != null && lastDate == null) {
+            // Every bucketed dose has a date
+            return page;
+        }
+        Criteria criteria = Criteria.where("patientId").is(patientId);
+        if (lastDate != null) {
+            criteria.and("date").lte(lastDate);
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "date"));
+        try (Stream<IntakeBucket> buckets = mongoTemplate.stream(query, IntakeBucket.class)) {
+            Iterator<IntakeBucket> it = buckets.iterator();
+            while (page.size() < limit && it.hasNext()) {
+                IntakeBucket bucket = it.next();
+                boolean resumeInside = lastId != null && bucket.getDate().equals(lastDate);
+                for (IntakeLog dose : newestFirst(bucket)) {
+                    if (resumeInside && dose.getId().compareTo(lastId) >= 0) {
+                        continue;
+                    }
+                    page.add(dose);
+                    if (page.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+        return page;
+    }
+
+    // Whole history in the order of findHistoryPage, read from a cursor; close the stream
+    @Override
+    public Stream<IntakeLog> streamHistory(String patientId) {
+        if (!bucketed()) {
+            return mongoTemplate.stream(new Query(Criteria.where("patientId").is(patientId)).with(historySort()),
+                    IntakeLog.class);
+        }
+        Query query = new Query(Criteria.where("patientId").is(patientId)).with(Sort.by(Sort.Direction.DESC, "date"));
+        return mongoTemplate.stream(query, IntakeBucket.class).flatMap(bucket -> newestFirst(bucket).stream());
+    }
+
+    /**
+     * PENDING doses with scheduledAt in [from, to), earliest first, optionally only
+     * those whose reminder has not been sent. A {@code limit} of 0 means no limit.
+     */
+    @Override
+    public Stream<IntakeLog> streamPending(LocalDateTime from, LocalDateTime to, boolean unremindedOnly, int limit) {
+        if (!bucketed()) {
+            Query query = Query.query(pendingBetween("", from, to, unremindedOnly))
+                    .with(Sort.by(Sort.Direction.ASC, "scheduledAt"));
+            if (limit > 0) {
+                query.limit(limit);
+            }
+            return mongoTemplate.stream(query, IntakeLog.class);
+        }
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(Criteria.where("doses").elemMatch(pendingBetween("", from, to, unremindedOnly))));
+        stages.add(Aggregation.unwind("doses"));
+        stages.add(Aggregation.match(pendingBetween("doses.", from, to, unremindedOnly)));
+        stages.add(Aggregation.replaceRoot("doses"));
+        stages.add(Aggregation.sort(Sort.Direction.ASC, "scheduledAt"));
+        if (limit > 0) {
+            stages.add(Aggregation.limit(limit));
+        }
+        Aggregation aggregation = Aggregation.newAggregation(stages)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        return mongoTemplate.aggregateStream(aggregation, collection(), IntakeLog.class);
+    }
+
+    @Override
+    public void markReminderSent(Collection<String> ids, LocalDateTime sentAt) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!bucketed()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)),
+                    new Update().set("reminderSentAt", sentAt), IntakeLog.class);
+            return;
+        }
+        Set<String> bucketIds = new HashSet<>();
+        for (String id : ids) {
+            String bucketId = IntakeBucket.bucketIdOfDose(id);
+            if (bucketId != null) {
+                bucketIds.add(bucketId);
+            }
+        }
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(bucketIds)),
+                new Update().set("doses.$[d].reminderSentAt", sentAt).filterArray(Criteria.where("d._id").in(ids)),
+                IntakeBucket.class);
+    }
+
+    // scheduled day -> status -> number of the patient's doses
+    @Override
+    public Map<LocalDate, Map<String, Long>> countByDateAndStatus(String patientId) {
+        Aggregation aggregation;
+        String dateField;
+        if (!bucketed()) {
+            dateField = "scheduledDate";
+            aggregation = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("patientId").is(patientId)),
+                    Aggregation.group(dateField, "status").count().as("count"));
+        } else {
+            dateField = "date";
+            aggregation = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("patientId").is(patientId)),
+                    Aggregation.unwind("doses"),
+                    Aggregation.project(dateField).and("doses.status").as("status"),
+                    Aggregation.group(dateField, "status").count().as("count"));
+        }
+        Map<LocalDate, Map<String, Long>> counts = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, collection(), Document.class)) {
+            Document key = row.get("_id", Document.class);
+            String status = key.getString("status");
+            if (status == null) {
+                continue;
+            }
+            LocalDate day = toLocalDate(key.get(dateField));
+            counts.computeIfAbsent(day != null ? day : LocalDate.now(), k -> new HashMap<>())
+                    .merge(status, ((Number) row.get("count")).longValue(), Long::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public List<String> findPatientIds() {
+        return mongoTemplate.findDistinct(new Query(), "patientId",
+                bucketed() ? IntakeBucket.class : IntakeLog.class, String.class);
+    }
+
+    private List<InsertOutcome> insertNewDocuments(List<IntakeLog> logs) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, IntakeLog.class);
+        for (IntakeLog log : logs) {
+            Document doc = toDocument(log);
+            doc.remove("_id");
+            Update update = new Update();
+            doc.forEach(update::setOnInsert);
+            bulk.upsert(Query.query(Criteria.where("idempotencyKey").is(log.getIdempotencyKey())), update);
+        }
+        BulkWriteResult result;
+        Map<Integer, BulkWriteError> errors = new HashMap<>();
+        try {
+            result = bulk.execute();
+        } catch (BulkOperationException e) {
+            result = e.getResult();
+            e.getErrors().forEach(error -> errors.put(error.getIndex(), error));
+        }
+        Map<Integer, String> insertedIds = new HashMap<>();
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            insertedIds.put(upsert.getIndex(), upsert.getId().asObjectId().getValue().toHexString());
+        }
+
+        List<InsertOutcome> outcomes = new ArrayList<>(logs.size());
+        for (int i = 0; i < logs.size(); i++) {
+            BulkWriteError error = errors.get(i);
+            if (insertedIds.containsKey(i)) {
+                logs.get(i).setId(insertedIds.get(i));
+                outcomes.add(new InsertOutcome(true, null));
+            } else if (error == null || error.getCode() == DUPLICATE_KEY) {
+                // Matched a stored log, or lost an insert race on the unique key
+                outcomes.add(new InsertOutcome(false, null));
+            } else {
+                outcomes.add(new InsertOutcome(false, error.getMessage()));
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Keys stored in any bucket are found up front; the push itself is guarded on
+     * the key being absent from the target bucket. A push that fails on the bucket
+     * _id either hit that guard or lost the race to create the bucket, so it is
+     * retried once if its key is still not stored.
+     */
+    private List<InsertOutcome> insertNewBucketed(List<IntakeLog> logs) {
+        Map<String, String> stored = findIdsByIdempotencyKeys(
+                logs.stream().map(IntakeLog::getIdempotencyKey).filter(Objects::nonNull).toList());
+        InsertOutcome[] outcomes = new InsertOutcome[logs.size()];
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < logs.size(); i++) {
+            IntakeLog log = logs.get(i);
+            if (stored.containsKey(log.getIdempotencyKey())) {
+                outcomes[i] = new InsertOutcome(false, null);
+                continue;
+            }
+            LocalDate date = log.getScheduledDate() != null ? log.getScheduledDate() : LocalDate.now();
+            log.setScheduledDate(date);
+            log.setId(newDoseId(IntakeBucket.idFor(log.getPatientId(), date)));
+            pending.add(i);
+        }
+
+        for (int attempt = 0; attempt < 2 && !pending.isEmpty(); attempt++) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, IntakeBucket.class);
+            for (int i : pending) {
+                IntakeLog log = logs.get(i);
+                bulk.upsert(Query.query(Criteria.where("_id").is(IntakeBucket.bucketIdOfDose(log.getId()))
+                                .and("doses.idempotencyKey").ne(log.getIdempotencyKey())),
+                        pushDose(log, log.getScheduledDate()));
+            }
+            Map<Integer, BulkWriteError> errors = new HashMap<>();
+            try {
+                bulk.execute();
+            } catch (BulkOperationException e) {
+                e.getErrors().forEach(error -> errors.put(error.getIndex(), error));
+            }
+
+            List<Integer> collided = new ArrayList<>();
+            for (int b = 0; b < pending.size(); b++) {
+                int i = pending.get(b);
+                BulkWriteError error = errors.get(b);
+                if (error == null) {
+                    outcomes[i] = new InsertOutcome(true, null);
+                } else if (error.getCode() == DUPLICATE_KEY) {
+                    collided.add(i);
+                    outcomes[i] = new InsertOutcome(false, null);
+                } else {
+                    outcomes[i] = new InsertOutcome(false, error.getMessage());
+                }
+            }
+            Map<String, String> nowStored = findIdsByIdempotencyKeys(
+                    collided.stream().map(i -> logs.get(i).getIdempotencyKey()).toList());
+            pending = collided.stream().filter(i -> !nowStored.containsKey(logs.get(i).getIdempotencyKey())).toList();
+        }
+
+        for (int i = 0; i < logs.size(); i++) {
+            if (!outcomes[i].created()) {
+                logs.get(i).setId(null);
+            }
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    private Update pushDose(IntakeLog log, LocalDate date) {
+        return new Update().push("doses", toDocument(log))
+                .setOnInsert("patientId", log.getPatientId())
+                .setOnInsert("patientBucket", IntakeLog.bucketOf(log.getPatientId()))
+                .setOnInsert("date", date)
+                .set("updatedAt", LocalDateTime.now());
+    }
+
+    private static Criteria overdueTimed(String prefix, LocalDateTime cutoff) {
+        return Criteria.where(prefix + "status").is("PENDING").and(prefix + "scheduledAt").lt(cutoff);
+    }
+
+    private static Criteria overdueUntimed(String prefix, LocalDateTime cutoff) {
+        return Criteria.where(prefix + "status").is("PENDING")
+                .and(prefix + "scheduledAt").is(null)
+                .and(prefix + "scheduledDate").lt(cutoff.toLocalDate());
+    }
+
+    private static Criteria pendingBetween(String prefix, LocalDateTime from, LocalDateTime to, boolean unremindedOnly) {
+        Criteria criteria = Criteria.where(prefix + "status").is("PENDING").and(prefix + "scheduledAt").gte(from).lt(to);
+        if (unremindedOnly) {
+            criteria.and(prefix + "reminderSentAt").is(null);
+        }
+        return criteria;
+    }
+
+    private static Sort historySort() {
+        return Sort.by(Sort.Order.desc("scheduledDate"), Sort.Order.desc("_id"));
+    }
+
+    private boolean bucketed() {
+        return "bucketed".equalsIgnoreCase(storageMode);
+    }
+
+    private String collection() {
+        return mongoTemplate.getCollectionName(bucketed() ? IntakeBucket.class : IntakeLog.class);
+    }
+
+    private static String newDoseId(String bucketId) {
+        return bucketId + "_" + new ObjectId().toHexString();
+    }
+
+    private Document toDocument(IntakeLog log) {
+        Document doc = new Document();
+        mongoTemplate.getConverter().write(log, doc);
+        doc.remove("_class");
+        return doc;
+    }
+
+    private static List<IntakeLog> newestFirst(IntakeBucket bucket) {
+        List<IntakeLog> doses = new ArrayList<>(bucket.getDoses());
+        doses.sort(Comparator.comparing(IntakeLog::getId, Comparator.nullsFirst(Comparator.naturalOrder())).reversed());
+        return doses;
+    }
+
+    private static List<IntakeLog> doses(List<IntakeBucket> buckets) {
+        List<IntakeLog> doses = new ArrayList<>();
+        for (IntakeBucket bucket : buckets) {
+            doses.addAll(bucket.getDoses());
+        }
+        return doses;
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof Date date) {
+            return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        }
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        return null;
+    }
+}
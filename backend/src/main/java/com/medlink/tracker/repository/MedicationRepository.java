@@ -6,6 +6,5 @@ import java.util.List;
 
 public interface MedicationRepository extends MongoRepository<Medication, String> {
     List<Medication> findByCategory(String category);
-    List<Medication> findByNameContainingIgnoreCase(String name);
     List<Medication> findByActiveTrue();
 }
@@ -0,0 +1,25 @@
+package com.medlink.tracker.security;
+
+// Immutable view of a verified token, built from a single parse of its claims
+public final class JwtPrincipal {
+
+    private final String email;
+    private final String role;
+    private final long expiresAtMillis;
+
+    public JwtPrincipal(String email, String role, long expiresAtMillis) {
+        this.email = email;
+        this.role = role;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getEmail() { return email; }
+
+    public String getRole() { return role; }
+
+    public long getExpiresAtMillis() { return expiresAtMillis; }
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+}
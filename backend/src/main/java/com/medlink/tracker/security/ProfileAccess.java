@@ -0,0 +1,70 @@
+package com.medlink.tracker.security;
+
+import com.medlink.tracker.exception.AccessForbiddenException;
+import com.medlink.tracker.model.User;
+import com.medlink.tracker.repository.DoctorRepository;
+import com.medlink.tracker.repository.PatientRepository;
+import com.medlink.tracker.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Object-level checks for endpoints addressed by a patient or doctor profile id:
+ * the caller must be the user that profile belongs to, or an ADMIN. Role checks
+ * alone let any patient or doctor read another's data by changing the id in the URL.
+ */
+@Component
+public class ProfileAccess {
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private PatientRepository patientRepository;
+    @Autowired private DoctorRepository doctorRepository;
+
+    public void checkPatient(String patientId) {
+        if (isAdmin()) {
+            return;
+        }
+        String userId = currentUserId();
+        boolean owner = patientRepository.findById(patientId)
+                .map(patient -> userId.equals(patient.getUserId()))
+                .orElse(false);
+        if (!owner) {
+            throw new AccessForbiddenException("Not allowed to access this patient");
+        }
+    }
+
+    public void checkDoctor(String doctorId) {
+        if (isAdmin()) {
+            return;
+        }
+        String userId = currentUserId();
+        boolean owner = doctorRepository.findById(doctorId)
+                .map(doctor -> userId.equals(doctor.getUserId()))
+                .orElse(false);
+        if (!owner) {
+            throw new AccessForbiddenException("Not allowed to access this doctor");
+        }
+    }
+
+    public boolean hasRole(String role) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.getAuthorities().stream()
+                .anyMatch(authority -> ("ROLE_" + role).equals(authority.getAuthority()));
+    }
+
+    private boolean isAdmin() {
+        return hasRole("ADMIN");
+    }
+
+    private String currentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null) {
+            throw new AccessForbiddenException("Not authenticated");
+        }
+        return userRepository.findByEmail(auth.getName())
+                .map(User::getId)
+                .orElseThrow(() -> new AccessForbiddenException("Unknown user"));
+    }
+}
@@ -1,8 +1,11 @@
 package com.medlink.tracker.security;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -23,9 +26,12 @@ public class SecurityConfig {
     @Autowired
     private JwtFilter jwtFilter;
 
+    @Value("${auth.bcrypt.strength:10}")
+    private int bcryptStrength;
+
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     @Bean
@@ -38,8 +44,33 @@ public class SecurityConfig {
                 session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
             )
             .authorizeHttpRequests(auth -> auth
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/health").permitAll()          // ✅ health check
+                // Operational endpoints; ADMIN accounts are provisioned directly, never self-registered
+                .requestMatchers("/api/metrics/**").hasRole("ADMIN")
+                .requestMatchers("/api/audit/**").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.POST, "/api/medications/adherence/rebuild",
+                        "/api/medications/adherence/*/rebuild").hasRole("ADMIN")
+                .requestMatchers("/api/medications/intake/batch/benchmark").hasRole("ADMIN")
+                .requestMatchers("/api/prescriptions/schedule/materialise").hasRole("ADMIN")
+                .requestMatchers("/api/prescriptions/expire").hasRole("ADMIN")
+                .requestMatchers("/api/medications/intake/sweep-missed").hasRole("ADMIN")
+                .requestMatchers("/api/medications/intake/storage/**").hasRole("ADMIN")
+                .requestMatchers("/api/medications/intake/backfill-scheduled-at").hasRole("ADMIN")
+                // Due doses across every patient
+                .requestMatchers("/api/medications/intake/due").hasRole("ADMIN")
+                .requestMatchers("/api/doctor/*/patients/benchmark").hasRole("ADMIN")
+                // Every patient's profile, so not under the PATIENT rule below
+                .requestMatchers("/api/patient/page").hasRole("ADMIN")
+                .requestMatchers("/api/medications/search/rebuild",
+                        "/api/medications/search/benchmark").hasRole("ADMIN")
+                .requestMatchers("/api/prescriptions/interactions/rebuild",
+                        "/api/prescriptions/interactions/benchmark").hasRole("ADMIN")
+                .requestMatchers("/api/prescriptions/doctor/*/summary/benchmark").hasRole("ADMIN")
+                // Catalog curation; PHARMACIST accounts are provisioned like ADMIN
+                .requestMatchers(HttpMethod.PATCH, "/api/medications/*/deactivate").hasAnyRole("ADMIN", "PHARMACIST")
+                .requestMatchers(HttpMethod.POST, "/api/medications/import").hasAnyRole("ADMIN", "PHARMACIST")
                 .requestMatchers("/api/doctor/**").hasRole("DOCTOR")
                 .requestMatchers("/api/patient/**").hasRole("PATIENT")
                 .requestMatchers("/api/medications/search").authenticated()
@@ -73,6 +104,7 @@ public class SecurityConfig {
         ));
 
         config.setAllowedHeaders(List.of("*"));
+        config.setExposedHeaders(List.of("ETag"));
         config.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source =
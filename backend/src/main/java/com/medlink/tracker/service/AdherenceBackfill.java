@@ -0,0 +1,63 @@
+package com.medlink.tracker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Rebuilds the adherence counters of every patient whose intake logs predate them.
+ * Without it, the first $inc after a deploy upserts a summary starting at zero and
+ * the patient's earlier doses never show up. One instance does the work under a
+ * lease; the rest skip it. Patients already rebuilt are not touched again.
+ */
+@Component
+public class AdherenceBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(AdherenceBackfill.class);
+    private static final String LEASE_ID = "adherence-backfill";
+    private static final int RENEW_EVERY = 100;
+
+    @Autowired private AdherenceService adherenceService;
+
+    @Autowired private LeaseService leaseService;
+
+    @Value("${adherence.backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${adherence.backfill.lease-seconds:600}")
+    private long leaseSeconds;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        Duration ttl = Duration.ofSeconds(leaseSeconds);
+        if (!enabled || !leaseService.tryAcquire(LEASE_ID, ttl)) {
+            return;
+        }
+        try {
+            List<String> patientIds = adherenceService.findUninitialized();
+            int rebuilt = 0;
+            for (String patientId : patientIds) {
+                if (rebuilt % RENEW_EVERY == 0 && rebuilt > 0 && !leaseService.tryAcquire(LEASE_ID, ttl)) {
+                    log.warn("Lost the adherence backfill lease after {} of {} patients", rebuilt, patientIds.size());
+                    return;
+                }
+                adherenceService.rebuild(patientId);
+                rebuilt++;
+            }
+            if (rebuilt > 0) {
+                log.info("Rebuilt adherence counters for {} patients", rebuilt);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Adherence backfill failed; patients left are retried on the next start", e);
+        } finally {
+            leaseService.release(LEASE_ID);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.AdherenceDaily;
+import com.medlink.tracker.model.AdherenceSummary;
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.repository.IntakeLogRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Maintains pre-aggregated intake counters per patient and per patient-day so the
+ * adherence endpoint never has to count over the raw intake_logs history. Every
+ * status change is applied as a single atomic $inc on both documents.
+ */
+@Service
+public class AdherenceService {
+
+    private static final Set<String> COUNTED_STATUSES = Set.of("TAKEN", "MISSED", "SKIPPED", "PENDING");
+    private static final int[] ROLLING_WINDOWS = {7, 30, 90};
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private IntakeLogRepository intakeLogRepository;
+
+    /**
+     * Moves one dose from {@code fromStatus} to {@code toStatus}. Either side may be
+     * null (new log / deleted log). Unknown statuses are ignored.
+     */
+    public void recordTransition(String patientId, LocalDate date, String fromStatus, String toStatus) {
+        if (patientId == null || Objects.equals(fromStatus, toStatus)) {
+            return;
+        }
+        boolean countsFrom = fromStatus != null && COUNTED_STATUSES.contains(fromStatus);
+        boolean countsTo = toStatus != null && COUNTED_STATUSES.contains(toStatus);
+        if (!countsFrom && !countsTo) {
+            return;
+        }
+
+        LocalDate day = date != null ? date : LocalDate.now();
+        Update summaryUpdate = increments(countsFrom ? fromStatus : null, countsTo ? toStatus : null)
+                .set("updatedAt", LocalDateTime.now());
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(patientId)),
+                summaryUpdate, AdherenceSummary.class);
+
+        Update dailyUpdate = increments(countsFrom ? fromStatus : null, countsTo ? toStatus : null)
+                .setOnInsert("patientId", patientId)
+                .setOnInsert("date", day);
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(AdherenceDaily.idFor(patientId, day))),
+                dailyUpdate, AdherenceDaily.class);
+    }
+
+    public void recordTransition(IntakeLog log, String fromStatus, String toStatus) {
+        recordTransition(log.getPatientId(), log.getScheduledDate(), fromStatus, toStatus);
+    }
+
+    /**
+     * Applies counters for a batch of newly stored logs, collapsing them to one
+     * increment per patient and per patient-day before writing.
+     */
+    public void recordNewLogs(Collection<IntakeLog> logs) {
+        applyBatch(logs, 1);
+    }
+
+    // Reverses the counters of logs that were deleted in bulk
+    public void recordRemovedLogs(Collection<IntakeLog> logs) {
+        applyBatch(logs, -1);
+    }
+
+    /**
+     * Moves counts between two statuses for logs changed by a bulk update. The map is
+     * patientId -> scheduled day -> number of logs that moved.
+     */
+    public void recordBulkTransition(Map<String, Map<LocalDate, Long>> moved, String fromStatus, String toStatus) {
+        Map<String, Map<LocalDate, Map<String, Long>>> deltas = new HashMap<>();
+        moved.forEach((patientId, days) -> days.forEach((day, count) -> {
+            Map<String, Long> fields = deltas.computeIfAbsent(patientId, k -> new HashMap<>())
+                    .computeIfAbsent(day, k -> new HashMap<>());
+            if (COUNTED_STATUSES.contains(fromStatus)) {
+                fields.merge(field(fromStatus), -count, Long::sum);
+            }
+            if (COUNTED_STATUSES.contains(toStatus)) {
+                fields.merge(field(toStatus), count, Long::sum);
+            }
+        }));
+        applyDeltas(deltas);
+    }
+
+    /**
+     * Applies many single-log transitions in one bulk write per collection. Each log
+     * moves from {@code fromStatus.apply(log)} (null for a new log) to its current status.
+     */
+    public void recordTransitions(Collection<IntakeLog> logs, Function<IntakeLog, String> fromStatus) {
+        Map<String, Map<LocalDate, Map<String, Long>>> deltas = new HashMap<>();
+        for (IntakeLog log : logs) {
+            String from = fromStatus.apply(log);
+            String to = log.getStatus();
+            boolean countsFrom = from != null && COUNTED_STATUSES.contains(from);
+            boolean countsTo = to != null && COUNTED_STATUSES.contains(to);
+            if (log.getPatientId() == null || Objects.equals(from, to) || (!countsFrom && !countsTo)) {
+                continue;
+            }
+            LocalDate day = log.getScheduledDate() != null ? log.getScheduledDate() : LocalDate.now();
+            Map<String, Long> fields = deltas.computeIfAbsent(log.getPatientId(), k -> new HashMap<>())
+                    .computeIfAbsent(day, k -> new HashMap<>());
+            if (countsFrom) {
+                fields.merge(field(from), -1L, Long::sum);
+            }
+            if (countsTo) {
+                fields.merge(field(to), 1L, Long::sum);
+            }
+        }
+        applyDeltas(deltas);
+    }
+
+    private void applyBatch(Collection<IntakeLog> logs, long sign) {
+        Map<String, Map<LocalDate, Map<String, Long>>> deltas = new HashMap<>();
+        for (IntakeLog log : logs) {
+            String status = log.getStatus();
+            if (log.getPatientId() == null || status == null || !COUNTED_STATUSES.contains(status)) {
+                continue;
+            }
+            LocalDate day = log.getScheduledDate() != null ? log.getScheduledDate() : LocalDate.now();
+            deltas.computeIfAbsent(log.getPatientId(), k -> new HashMap<>())
+                    .computeIfAbsent(day, k -> new HashMap<>())
+                    .merge(field(status), sign, Long::sum);
+        }
+        applyDeltas(deltas);
+    }
+
+    // patientId -> day -> counter field -> delta, written as one bulk per collection
+    private void applyDeltas(Map<String, Map<LocalDate, Map<String, Long>>> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        BulkOperations summaries = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AdherenceSummary.class);
+        BulkOperations days = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AdherenceDaily.class);
+
+        deltas.forEach((patientId, byDay) -> {
+            Map<String, Long> patientTotals = new HashMap<>();
+            byDay.forEach((day, fields) -> {
+                Update update = new Update()
+                        .setOnInsert("patientId", patientId)
+                        .setOnInsert("date", day);
+                fields.forEach(update::inc);
+                days.upsert(Query.query(Criteria.where("_id").is(AdherenceDaily.idFor(patientId, day))), update);
+                fields.forEach((f, delta) -> patientTotals.merge(f, delta, Long::sum));
+            });
+
+            Update update = new Update().set("updatedAt", LocalDateTime.now());
+            patientTotals.forEach(update::inc);
+            summaries.upsert(Query.query(Criteria.where("_id").is(patientId)), update);
+        });
+
+        summaries.execute();
+        days.execute();
+    }
+
+    public Map<String, Object> getStats(String patientId) {
+        AdherenceSummary summary = mongoTemplate.findById(patientId, AdherenceSummary.class);
+        if (summary == null || !summary.isInitialized()) {
+            // Logs that predate the counters are not in them until a rebuild has run
+            rebuild(patientId);
+            summary = mongoTemplate.findById(patientId, AdherenceSummary.class);
+            if (summary == null) {
+                summary = new AdherenceSummary();
+            }
+        }
+
+        Map<String, Object> stats = counts(summary.getTaken(), summary.getMissed(),
+                summary.getSkipped(), summary.getPending());
+
+        LocalDate today = LocalDate.now();
+        int longest = ROLLING_WINDOWS[ROLLING_WINDOWS.length - 1];
+        List<AdherenceDaily> days = mongoTemplate.find(Query.query(Criteria.where("patientId").is(patientId)
+                .and("date").gt(today.minusDays(longest)).lte(today)), AdherenceDaily.class);
+
+        Map<String, Object> rolling = new LinkedHashMap<>();
+        for (int window : ROLLING_WINDOWS) {
+            LocalDate from = today.minusDays(window);
+            long taken = 0, missed = 0, skipped = 0, pending = 0;
+            for (AdherenceDaily d : days) {
+                if (d.getDate().isAfter(from)) {
+                    taken += d.getTaken();
+                    missed += d.getMissed();
+                    skipped += d.getSkipped();
+                    pending += d.getPending();
+                }
+            }
+            rolling.put(window + "d", counts(taken, missed, skipped, pending));
+        }
+        stats.put("rolling", rolling);
+        return stats;
+    }
+
+    /**
+     * Recomputes a patient's counters from the raw intake logs with one aggregation
+     * and replaces the stored documents. Concurrent writes during the rebuild may be
+     * lost from the counters, so run it while the patient is idle.
+     */
+    public Map<String, Object> rebuild(String patientId) {
+        Map<LocalDate, AdherenceDaily> daily = new HashMap<>();
+        AdherenceSummary summary = new AdherenceSummary();
+        summary.setPatientId(patientId);
+        summary.setInitialized(true);
+        summary.setUpdatedAt(LocalDateTime.now());
+
+        intakeLogRepository.countByDateAndStatus(patientId).forEach((date, byStatus) -> byStatus.forEach((status, count) -> {
+            if (!COUNTED_STATUSES.contains(status)) {
+                return;
+            }
+            AdherenceDaily day = daily.computeIfAbsent(date, d -> {
+                AdherenceDaily created = new AdherenceDaily();
+                created.setId(AdherenceDaily.idFor(patientId, d));
+                created.setPatientId(patientId);
+                created.setDate(d);
+                return created;
+            });
+            add(day, status, count);
+            add(summary, status, count);
+        }));
+
+        mongoTemplate.remove(Query.query(Criteria.where("patientId").is(patientId)), AdherenceDaily.class);
+        if (!daily.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AdherenceDaily.class);
+            bulk.insert(new ArrayList<>(daily.values()));
+            bulk.execute();
+        }
+        mongoTemplate.save(summary);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("patientId", patientId);
+        result.put("days", daily.size());
+        result.put("totalLogs", summary.getTaken() + summary.getMissed() + summary.getSkipped() + summary.getPending());
+        return result;
+    }
+
+    public Map<String, Object> rebuildAll() {
+        List<String> patientIds = intakeLogRepository.findPatientIds();
+        int rebuilt = 0;
+        for (String patientId : patientIds) {
+            rebuild(patientId);
+            rebuilt++;
+        }
+        return Map.of("patients", rebuilt);
+    }
+
+    // Patients with intake logs whose counters have never been rebuilt from them
+    public List<String> findUninitialized() {
+        List<String> patientIds = intakeLogRepository.findPatientIds();
+        Query initialized = Query.query(Criteria.where("initialized").is(true));
+        initialized.fields().include("_id");
+        Set<String> done = new HashSet<>();
+        for (AdherenceSummary summary : mongoTemplate.find(initialized, AdherenceSummary.class)) {
+            done.add(summary.getPatientId());
+        }
+        List<String> pending = new ArrayList<>();
+        for (String patientId : patientIds) {
+            if (patientId != null && !done.contains(patientId)) {
+                pending.add(patientId);
+            }
+        }
+        return pending;
+    }
+
+    private static Map<String, Object> counts(long taken, long missed, long skipped, long pending) {
+        long total = taken + missed;
+        double adherenceRate = total > 0 ? (double) taken / total * 100 : 0;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("taken", taken);
+        stats.put("missed", missed);
+        stats.put("skipped", skipped);
+        stats.put("pending", pending);
+        stats.put("total", total);
+        stats.put("adherenceRate", Math.round(adherenceRate));
+        return stats;
+    }
+
+    private static Update increments(String fromStatus, String toStatus) {
+        Update update = new Update();
+        if (fromStatus != null) {
+            update.inc(field(fromStatus), -1);
+        }
+        if (toStatus != null) {
+            update.inc(field(toStatus), 1);
+        }
+        return update;
+    }
+
+    private static String field(String status) {
+        return status.toLowerCase(Locale.ROOT);
+    }
+
+    private static void add(AdherenceDaily day, String status, long count) {
+        switch (status) {
+            case "TAKEN" -> day.setTaken(day.getTaken() + count);
+            case "MISSED" -> day.setMissed(day.getMissed() + count);
+            case "SKIPPED" -> day.setSkipped(day.getSkipped() + count);
+            case "PENDING" -> day.setPending(day.getPending() + count);
+            default -> { }
+        }
+    }
+
+    private static void add(AdherenceSummary summary, String status, long count) {
+        switch (status) {
+            case "TAKEN" -> summary.setTaken(summary.getTaken() + count);
+            case "MISSED" -> summary.setMissed(summary.getMissed() + count);
+            case "SKIPPED" -> summary.setSkipped(summary.getSkipped() + count);
+            case "PENDING" -> summary.setPending(summary.getPending() + count);
+            default -> { }
+        }
+    }
+}
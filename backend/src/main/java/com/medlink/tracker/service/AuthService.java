@@ -7,10 +7,15 @@ import com.medlink.tracker.repository.DoctorRepository;
 import com.medlink.tracker.repository.PatientRepository;
 import com.medlink.tracker.repository.UserRepository;
 import com.medlink.tracker.security.JwtUtil;
+import com.medlink.tracker.security.PasswordHasher;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -21,8 +26,10 @@ public class AuthService {
     @Autowired private UserRepository userRepository;
     @Autowired private PatientRepository patientRepository;
     @Autowired private DoctorRepository doctorRepository;
-    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private PasswordHasher passwordHasher;
     @Autowired private JwtUtil jwtUtil;
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private DoctorDirectoryService doctorDirectoryService;
 
     public Map<String, Object> register(Map<String, String> request) {
         String email = request.get("email");
@@ -31,6 +38,9 @@ if (roleStr == null || roleStr.isEmpty()) {
     throw new RuntimeException("Role is required");
 }
 String role = roleStr.toUpperCase();
+if (!"PATIENT".equals(role) && !"DOCTOR".equals(role)) {
+    throw new RuntimeException("Role must be PATIENT or DOCTOR");
+}
         if (userRepository.existsByEmail(email)) {
             throw new RuntimeException("Email already registered");
         }
@@ -38,7 +48,7 @@ String role = roleStr.toUpperCase();
         User user = new User();
         user.setName(request.get("name"));
         user.setEmail(email);
-        user.setPassword(passwordEncoder.encode(request.get("password")));
+        user.setPassword(passwordHasher.encode(request.get("password")));
         user.setRole(role);
         user.setPhoneNumber(request.get("phoneNumber"));
         userRepository.save(user);
@@ -49,6 +59,8 @@ String role = roleStr.toUpperCase();
             patient.setUserId(user.getId());
             patient.setName(user.getName());
             patient.setEmail(user.getEmail());
+            patient.setNameKey(PatientService.searchKey(user.getName()));
+            patient.setEmailKey(PatientService.searchKey(user.getEmail()));
             patient.setPhoneNumber(user.getPhoneNumber());
             patientRepository.save(patient);
         } else if ("DOCTOR".equals(role)) {
@@ -60,6 +72,7 @@ String role = roleStr.toUpperCase();
             doctor.setSpecialization(request.getOrDefault("specialization", "General"));
             doctor.setLicenseNumber(request.getOrDefault("licenseNumber", ""));
             doctorRepository.save(doctor);
+            doctorDirectoryService.invalidate();
         }
 
         String token = jwtUtil.generateToken(user.getEmail(), user.getRole());
@@ -80,10 +93,22 @@ String role = roleStr.toUpperCase();
         }
 
         User user = optUser.get();
-        if (!passwordEncoder.matches(request.get("password"), user.getPassword())) {
+        String rawPassword = request.get("password");
+        if (!passwordHasher.matches(rawPassword, user.getPassword())) {
             throw new RuntimeException("Invalid credentials");
         }
 
+        // Transparently upgrade hashes stored under an older bcrypt cost. Only the hash is
+        // written, and only if it is still the one just verified, so a password or profile
+        // change made meanwhile is never overwritten
+        if (passwordHasher.needsRehash(user.getPassword())) {
+            String verifiedHash = user.getPassword();
+            passwordHasher.rehashAsync(rawPassword, hash -> mongoTemplate.updateFirst(
+                    new Query(Criteria.where("_id").is(user.getId()).and("password").is(verifiedHash)),
+                    new Update().set("password", hash).set("updatedAt", LocalDateTime.now()),
+                    User.class));
+        }
+
         String token = jwtUtil.generateToken(user.getEmail(), user.getRole());
 
         String profileId = null;
@@ -0,0 +1,158 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.IntakeBucket;
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.model.Prescription;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Feeds {@link LiveFeedService} from MongoDB change streams on the intake
+ * collection of the active storage layout and on prescriptions, so every instance
+ * sees writes made anywhere in the cluster. Only inserts, replaces and updates that
+ * touch {@code status} (or a dose of a bucket) are watched.
+ * Requires a replica set; each watcher resumes from its last token after an error.
+ */
+@Component
+@ConditionalOnProperty(name = "live.change-streams.enabled", havingValue = "true")
+public class ChangeStreamFeedSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeStreamFeedSource.class);
+
+    private static final List<Bson> STATUS_CHANGES = List.of(Aggregates.match(Filters.or(
+            Filters.in("operationType", "insert", "replace"),
+            Filters.and(Filters.eq("operationType", "update"),
+                    Filters.exists("updateDescription.updatedFields.status")))));
+
+    // Bucket updates name the changed dose by position, so they can't be filtered on a fixed field
+    private static final List<Bson> BUCKET_CHANGES = List.of(Aggregates.match(
+            Filters.in("operationType", "insert", "update")));
+
+    // "doses.3" is a pushed dose, "doses.3.status" a status change on an existing one
+    private static final Pattern DOSE_FIELD = Pattern.compile("^doses\\.(\\d+)(\\.status)?$");
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private LiveFeedService liveFeedService;
+
+    @Value("${live.change-streams.retry-ms:5000}")
+    private long retryMillis;
+
+    private final List<Thread> watchers = new ArrayList<>();
+    private volatile boolean running;
+
+    @Value("${intake.storage.mode:document}")
+    private String storageMode;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        if ("bucketed".equalsIgnoreCase(storageMode)) {
+            watchers.add(watch(mongoTemplate.getCollectionName(IntakeBucket.class), BUCKET_CHANGES, this::publishDoses));
+        } else {
+            watchers.add(watch(mongoTemplate.getCollectionName(IntakeLog.class), STATUS_CHANGES, change ->
+                    liveFeedService.publishIntake(read(IntakeLog.class, change), action(change), null)));
+        }
+        watchers.add(watch(mongoTemplate.getCollectionName(Prescription.class), STATUS_CHANGES, change ->
+                liveFeedService.publishPrescription(read(Prescription.class, change), action(change), null)));
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        watchers.forEach(Thread::interrupt);
+    }
+
+    private Thread watch(String collection, List<Bson> pipeline, Consumer<ChangeStreamDocument<Document>> sink) {
+        Thread thread = new Thread(() -> {
+            BsonDocument resumeToken = null;
+            while (running) {
+                var stream = mongoTemplate.getCollection(collection).watch(pipeline)
+                        .fullDocument(FullDocument.UPDATE_LOOKUP);
+                if (resumeToken != null) {
+                    stream = stream.resumeAfter(resumeToken);
+                }
+                try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                    while (running && cursor.hasNext()) {
+                        ChangeStreamDocument<Document> change = cursor.next();
+                        resumeToken = change.getResumeToken();
+                        if (change.getFullDocument() != null) {
+                            sink.accept(change);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    if (!running) {
+                        break;
+                    }
+                    log.warn("Change stream on {} failed, retrying in {} ms", collection, retryMillis, e);
+                    try {
+                        Thread.sleep(retryMillis);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }, "live-feed-" + collection);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private <T> T read(Class<T> type, ChangeStreamDocument<Document> change) {
+        return mongoTemplate.getConverter().read(type, change.getFullDocument());
+    }
+
+    private static String action(ChangeStreamDocument<Document> change) {
+        return "insert".equals(change.getOperationType().getValue()) ? "created" : "statusChanged";
+    }
+
+    /**
+     * Publishes the doses a bucket change touched. A new bucket publishes all its
+     * doses; an update publishes pushed doses as created and positional status sets
+     * as status changes. Whole-array rewrites (a $pull) carry no single dose and are
+     * skipped, like deletes in the per-dose layout.
+     */
+    private void publishDoses(ChangeStreamDocument<Document> change) {
+        IntakeBucket bucket = read(IntakeBucket.class, change);
+        List<IntakeLog> doses = bucket.getDoses();
+        if ("insert".equals(change.getOperationType().getValue())) {
+            doses.forEach(dose -> liveFeedService.publishIntake(dose, "created", null));
+            return;
+        }
+        if (change.getUpdateDescription() == null || change.getUpdateDescription().getUpdatedFields() == null) {
+            return;
+        }
+        for (String field : change.getUpdateDescription().getUpdatedFields().keySet()) {
+            Matcher m = DOSE_FIELD.matcher(field);
+            if (!m.matches()) {
+                continue;
+            }
+            int index = Integer.parseInt(m.group(1));
+            if (index < doses.size()) {
+                liveFeedService.publishIntake(doses.get(index), m.group(2) == null ? "created" : "statusChanged", null);
+            }
+        }
+    }
+}
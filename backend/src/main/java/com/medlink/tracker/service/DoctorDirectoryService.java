@@ -0,0 +1,180 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.Doctor;
+import com.medlink.tracker.model.DoctorListItem;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Doctor directory: specialization, hospital, department and availability filters
+ * with a page of list items and, for each dimension, counts of its values under the
+ * other dimensions' filters, so a selected value still shows its alternatives. On a
+ * facet cache miss everything comes from one $facet aggregation; on a hit only the
+ * page is queried. Cached counts live for {@code doctors.directory.facet-ttl-ms} and
+ * are dropped when a doctor is registered or updated through this instance.
+ * <p>
+ * Pages are offset-based: the directory is small and callers want page numbers and a total.
+ */
+@Service
+public class DoctorDirectoryService {
+
+    private static final List<String> DIMENSIONS = List.of("specialization", "hospital", "department", "available");
+    private static final String[] LIST_FIELDS = {"name", "specialization", "hospital", "department",
+            "yearsOfExperience", "qualifications", "consultationTimings", "available"};
+
+    @Autowired private MongoTemplate mongoTemplate;
+
+    @Value("${doctors.directory.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${doctors.directory.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${doctors.directory.facet-ttl-ms:30000}")
+    private long facetTtlMillis;
+
+    @Value("${doctors.directory.max-cached-filters:1000}")
+    private int maxCachedFilters;
+
+    private record CachedFacets(Map<String, Map<String, Long>> facets, long total, long expiresAt) {}
+
+    private final Map<String, CachedFacets> facetCache = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public Map<String, Object> search(List<String> specializations, List<String> hospitals,
+                                      List<String> departments, Boolean available, Integer page, Integer size) {
+        int pageSize = size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+        int pageNumber = page == null ? 0 : Math.max(0, page);
+
+        Map<String, Criteria> filters = new LinkedHashMap<>();
+        addIn(filters, "specialization", specializations);
+        addIn(filters, "hospital", hospitals);
+        addIn(filters, "department", departments);
+        if (available != null) {
+            filters.put("available", Criteria.where("available").is(available));
+        }
+        String cacheKey = cacheKey(specializations, hospitals, departments, available);
+        Criteria all = combine(filters, null);
+        Sort order = Sort.by(Sort.Order.asc("name"), Sort.Order.asc("_id"));
+        long skip = (long) pageNumber * pageSize;
+
+        CachedFacets cached = facetCache.get(cacheKey);
+        boolean fromCache = cached != null && cached.expiresAt() > System.currentTimeMillis();
+        List<DoctorListItem> items = new ArrayList<>();
+        if (fromCache) {
+            hits.increment();
+            Query query = new Query(all).with(order).skip(skip).limit(pageSize);
+            query.fields().include(LIST_FIELDS);
+            items.addAll(mongoTemplate.find(query, DoctorListItem.class, mongoTemplate.getCollectionName(Doctor.class)));
+        } else {
+            misses.increment();
+            FacetOperation facet = Aggregation.facet(Aggregation.match(all), Aggregation.sort(order),
+                            Aggregation.skip(skip), Aggregation.limit(pageSize), Aggregation.project(LIST_FIELDS))
+                    .as("items")
+                    .and(Aggregation.match(all), Aggregation.count().as("count")).as("total");
+            for (String dimension : DIMENSIONS) {
+                facet = facet.and(Aggregation.match(combine(filters, dimension)),
+                        Aggregation.group(dimension).count().as("count")).as(dimension);
+            }
+            Document result = mongoTemplate.aggregate(Aggregation.newAggregation(facet), Doctor.class, Document.class)
+                    .getUniqueMappedResult();
+
+            for (Document doc : result.getList("items", Document.class)) {
+                items.add(mongoTemplate.getConverter().read(DoctorListItem.class, doc));
+            }
+            List<Document> total = result.getList("total", Document.class);
+            Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+            for (String dimension : DIMENSIONS) {
+                Map<String, Long> counts = new TreeMap<>();
+                for (Document group : result.getList(dimension, Document.class)) {
+                    // Doctors with no value for the field are left out of its facet
+                    if (group.get("_id") != null) {
+                        counts.put(String.valueOf(group.get("_id")), ((Number) group.get("count")).longValue());
+                    }
+                }
+                facets.put(dimension, counts);
+            }
+            cached = new CachedFacets(facets,
+                    total.isEmpty() ? 0 : ((Number) total.get(0).get("count")).longValue(),
+                    System.currentTimeMillis() + facetTtlMillis);
+            if (facetCache.size() >= maxCachedFilters) {
+                facetCache.clear();
+            }
+            facetCache.put(cacheKey, cached);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", items);
+        response.put("page", pageNumber);
+        response.put("size", pageSize);
+        response.put("total", cached.total());
+        response.put("totalPages", (cached.total() + pageSize - 1) / pageSize);
+        response.put("facets", cached.facets());
+        response.put("facetsCached", fromCache);
+        return response;
+    }
+
+    public void invalidate() {
+        facetCache.clear();
+        invalidations.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("cachedFilters", facetCache.size());
+        stats.put("facetTtlMs", facetTtlMillis);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private static void addIn(Map<String, Criteria> filters, String field, List<String> values) {
+        if (values == null) {
+            return;
+        }
+        List<String> present = values.stream().filter(v -> v != null && !v.isBlank()).map(String::trim).toList();
+        if (!present.isEmpty()) {
+            filters.put(field, Criteria.where(field).in(present));
+        }
+    }
+
+    // Every filter except the one on {@code excluded}, if given
+    private static Criteria combine(Map<String, Criteria> filters, String excluded) {
+        List<Criteria> parts = new ArrayList<>();
+        filters.forEach((field, criteria) -> {
+            if (!field.equals(excluded)) {
+                parts.add(criteria);
+            }
+        });
+        return parts.isEmpty() ? new Criteria() : new Criteria().andOperator(parts);
+    }
+
+    private static String cacheKey(List<String> specializations, List<String> hospitals,
+                                   List<String> departments, Boolean available) {
+        return sortedKey(specializations) + "|" + sortedKey(hospitals) + "|" + sortedKey(departments) + "|" + available;
+    }
+
+    private static String sortedKey(List<String> values) {
+        if (values == null) {
+            return "";
+        }
+        return String.join(",", new TreeSet<>(values.stream()
+                .filter(v -> v != null && !v.isBlank()).map(String::trim).toList()));
+    }
+}
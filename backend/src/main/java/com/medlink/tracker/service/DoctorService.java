@@ -1,20 +1,54 @@
 package com.medlink.tracker.service;
 
+import com.medlink.tracker.exception.PreconditionFailedException;
 import com.medlink.tracker.exception.ResourceNotFoundException;
 import com.medlink.tracker.model.Doctor;
+import com.medlink.tracker.model.DoctorPatient;
+import com.medlink.tracker.model.Patient;
+import com.medlink.tracker.repository.DoctorPatientRepository;
 import com.medlink.tracker.repository.DoctorRepository;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 public class DoctorService {
 
+    private static final Logger log = LoggerFactory.getLogger(DoctorService.class);
+    private static final int DUPLICATE_KEY = 11000;
+
     @Autowired
     private DoctorRepository doctorRepository;
 
+    @Autowired
+    private DoctorPatientRepository doctorPatientRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private DoctorDirectoryService doctorDirectoryService;
+
+    @Value("${doctors.assign.max-batch-size:1000}")
+    private int maxBatchSize;
+
     public Doctor getById(String id) {
         return doctorRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Doctor not found: " + id));
@@ -33,8 +67,12 @@ public class DoctorService {
         return doctorRepository.findBySpecialization(specialization);
     }
 
-    public Doctor update(String id, Doctor updatedDoctor) {
+    // expectedVersion comes from If-Match; null skips the check
+    public Doctor update(String id, Doctor updatedDoctor, Long expectedVersion) {
         Doctor doctor = getById(id);
+        if (expectedVersion != null && !expectedVersion.equals(doctor.getVersion())) {
+            throw new PreconditionFailedException("Doctor has changed since version " + expectedVersion, doctor.getVersion());
+        }
         doctor.setSpecialization(updatedDoctor.getSpecialization());
         doctor.setHospital(updatedDoctor.getHospital());
         doctor.setDepartment(updatedDoctor.getDepartment());
@@ -43,16 +81,146 @@ public class DoctorService {
         doctor.setConsultationTimings(updatedDoctor.getConsultationTimings());
         doctor.setAvailable(updatedDoctor.isAvailable());
         doctor.setUpdatedAt(LocalDateTime.now());
-        return doctorRepository.save(doctor);
+        try {
+            Doctor saved = doctorRepository.save(doctor);
+            doctorDirectoryService.invalidate();
+            return saved;
+        } catch (OptimisticLockingFailureException e) {
+            if (expectedVersion == null) {
+                throw e;
+            }
+            throw new PreconditionFailedException("Doctor has changed since version " + expectedVersion, null);
+        }
     }
 
-    public void addPatient(String doctorId, String patientId) {
-        Doctor doctor = getById(doctorId);
-        List<String> patients = doctor.getPatientIds();
-        if (!patients.contains(patientId)) {
-            patients.add(patientId);
-            doctor.setPatientIds(patients);
-            doctorRepository.save(doctor);
+    /**
+     * Puts a patient on the doctor's roster with one upsert on the unique
+     * (doctorId, patientId) pair, so repeated or concurrent calls are no-ops. The
+     * patient's assignedDoctorId is set to this doctor only when it has none yet.
+     */
+    public Map<String, Object> assignPatient(String doctorId, String patientId) {
+        if (patientId == null || patientId.isBlank()) {
+            throw new RuntimeException("patientId is required");
         }
+        requireDoctor(doctorId);
+        List<Patient> patient = findForRoster(List.of(patientId));
+        if (patient.isEmpty()) {
+            throw new ResourceNotFoundException("Patient not found: " + patientId);
+        }
+        long created = upsertAssignments(doctorId, patient);
+        claimUnassigned(doctorId, List.of(patientId));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("doctorId", doctorId);
+        result.put("patientId", patientId);
+        result.put("assigned", created > 0);
+        return result;
+    }
+
+    public Map<String, Object> assignPatients(String doctorId, List<String> patientIds) {
+        if (patientIds == null || patientIds.isEmpty()) {
+            throw new RuntimeException("patientIds is empty");
+        }
+        if (patientIds.size() > maxBatchSize) {
+            throw new RuntimeException("Batch exceeds maximum size of " + maxBatchSize);
+        }
+        requireDoctor(doctorId);
+        Set<String> requested = new LinkedHashSet<>(patientIds);
+        requested.remove(null);
+
+        List<Patient> found = findForRoster(requested);
+        Set<String> existing = found.stream().map(Patient::getId).collect(Collectors.toSet());
+        List<String> notFound = requested.stream().filter(id -> !existing.contains(id)).toList();
+
+        long created = found.isEmpty() ? 0 : upsertAssignments(doctorId, found);
+        long primary = found.isEmpty() ? 0 : claimUnassigned(doctorId, existing);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("doctorId", doctorId);
+        result.put("assigned", created);
+        result.put("alreadyAssigned", found.size() - created);
+        result.put("primaryDoctorSet", primary);
+        result.put("notFound", notFound);
+        return result;
+    }
+
+    // A patient whose primary doctor this was falls back to their earliest remaining doctor
+    public void unassignPatient(String doctorId, String patientId) {
+        if (doctorPatientRepository.deleteByDoctorIdAndPatientId(doctorId, patientId) == 0) {
+            throw new ResourceNotFoundException("Patient " + patientId + " is not assigned to doctor " + doctorId);
+        }
+        String next = doctorPatientRepository.findFirstByPatientIdOrderByAssignedAtAsc(patientId)
+                .map(DoctorPatient::getDoctorId)
+                .orElse(null);
+        Update update = next != null ? new Update().set("assignedDoctorId", next) : new Update().unset("assignedDoctorId");
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(patientId).and("assignedDoctorId").is(doctorId)),
+                update.set("updatedAt", LocalDateTime.now()), Patient.class);
+    }
+
+    // Rosters used to be a patientIds array on the doctor document; move any left into doctor_patients
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateEmbeddedRosters() {
+        Query withRoster = Query.query(Criteria.where("patientIds").exists(true));
+        withRoster.fields().include("_id").include("patientIds");
+        String collection = mongoTemplate.getCollectionName(Doctor.class);
+        long moved = 0;
+        for (Document doctor : mongoTemplate.find(withRoster, Document.class, collection)) {
+            String doctorId = doctor.get("_id").toString();
+            List<String> patientIds = new ArrayList<>(new LinkedHashSet<>(doctor.getList("patientIds", String.class, List.of())));
+            patientIds.remove(null);
+            for (int i = 0; i < patientIds.size(); i += maxBatchSize) {
+                List<Patient> page = findForRoster(patientIds.subList(i, Math.min(i + maxBatchSize, patientIds.size())));
+                if (!page.isEmpty()) {
+                    moved += upsertAssignments(doctorId, page);
+                    claimUnassigned(doctorId, page.stream().map(Patient::getId).toList());
+                }
+            }
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(doctor.get("_id"))),
+                    new Update().unset("patientIds"), collection);
+        }
+        if (moved > 0) {
+            log.info("Moved {} embedded doctor-patient assignments to doctor_patients", moved);
+        }
+    }
+
+    private void requireDoctor(String doctorId) {
+        if (!doctorRepository.existsById(doctorId)) {
+            throw new ResourceNotFoundException("Doctor not found: " + doctorId);
+        }
+    }
+
+    private List<Patient> findForRoster(Collection<String> patientIds) {
+        Query query = Query.query(Criteria.where("_id").in(patientIds));
+        query.fields().include("_id").include("name").include("email");
+        return mongoTemplate.find(query, Patient.class);
+    }
+
+    // Returns how many pairs were new
+    private long upsertAssignments(String doctorId, Collection<Patient> patients) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DoctorPatient.class);
+        LocalDateTime now = LocalDateTime.now();
+        for (Patient patient : patients) {
+            bulk.upsert(Query.query(Criteria.where("doctorId").is(doctorId).and("patientId").is(patient.getId())),
+                    new Update().setOnInsert("assignedAt", now)
+                            .set("nameKey", PatientService.searchKey(patient.getName()))
+                            .set("emailKey", PatientService.searchKey(patient.getEmail())));
+        }
+        try {
+            return bulk.execute().getUpserts().size();
+        } catch (BulkOperationException e) {
+            // A concurrent assign inserting the same pair first is fine; anything else is not
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+            return e.getResult().getUpserts().size();
+        }
+    }
+
+    private long claimUnassigned(String doctorId, Collection<String> patientIds) {
+        Query unassigned = Query.query(Criteria.where("_id").in(patientIds).and("assignedDoctorId").is(null));
+        Update update = new Update().set("assignedDoctorId", doctorId).set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.updateMulti(unassigned, update, Patient.class).getModifiedCount();
     }
 }
@@ -0,0 +1,42 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.Doctor;
+import com.medlink.tracker.model.Medication;
+import com.medlink.tracker.model.Patient;
+import com.medlink.tracker.model.Prescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Gives documents written before @Version existed a version of 0. Spring Data
+ * treats an entity with a null version as new, so saving one of them would try an
+ * insert and fail on the duplicate id.
+ */
+@Component
+public class DocumentVersionBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentVersionBackfill.class);
+
+    @Autowired private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        for (Class<?> type : List.of(Patient.class, Doctor.class, Medication.class, Prescription.class)) {
+            long updated = mongoTemplate.updateMulti(Query.query(Criteria.where("version").exists(false)),
+                    new Update().set("version", 0L), type).getModifiedCount();
+            if (updated > 0) {
+                log.info("Set version 0 on {} {} documents", updated, mongoTemplate.getCollectionName(type));
+            }
+        }
+    }
+}
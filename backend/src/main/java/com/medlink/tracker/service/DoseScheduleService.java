@@ -0,0 +1,281 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.event.IntakeLogChangedEvent;
+import com.medlink.tracker.model.DoseFrequency;
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.model.Prescription;
+import com.medlink.tracker.repository.IntakeLogRepository;
+import com.medlink.tracker.repository.IntakeLogRepositoryCustom.InsertOutcome;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expands active prescriptions into PENDING intake slots for a rolling horizon.
+ * Every slot gets a deterministic idempotency key ("sched:" + prescription,
+ * medication index, date and time), so writes only insert new keys and
+ * re-running over the same window never duplicates a dose.
+ */
+@Service
+public class DoseScheduleService {
+
+    private static final Logger log = LoggerFactory.getLogger(DoseScheduleService.class);
+
+    static final String KEY_PREFIX = "sched:";
+    private static final DateTimeFormatter KEY_TIME = DateTimeFormatter.ofPattern("HHmm");
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private IntakeLogRepository intakeLogRepository;
+    @Autowired private AdherenceService adherenceService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+
+    @Value("${schedule.horizon-days:7}")
+    private int horizonDays;
+
+    @Value("${schedule.patient-batch-size:200}")
+    private int patientBatchSize;
+
+    @Value("${schedule.parallelism:4}")
+    private int parallelism;
+
+    private ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, "dose-schedule-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+
+    @Scheduled(cron = "${schedule.cron:0 15 0 * * *}")
+    public void scheduledRun() {
+        materialiseAll();
+    }
+
+    /**
+     * Materialises the horizon for every patient with an active prescription,
+     * processing patients in batches on the worker pool with one bulk write per batch.
+     */
+    public Map<String, Object> materialiseAll() {
+        if (!running.compareAndSet(false, true)) {
+            return Map.of("skipped", true, "reason", "run already in progress");
+        }
+        long started = System.nanoTime();
+        try {
+            List<String> patientIds = mongoTemplate.findDistinct(
+                    Query.query(Criteria.where("status").is("ACTIVE")), "patientId", Prescription.class, String.class);
+
+            AtomicLong created = new AtomicLong();
+            AtomicLong prescriptions = new AtomicLong();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < patientIds.size(); i += patientBatchSize) {
+                List<String> batch = patientIds.subList(i, Math.min(i + patientBatchSize, patientIds.size()));
+                futures.add(workers.submit(() -> {
+                    List<Prescription> active = mongoTemplate.find(Query.query(
+                            Criteria.where("patientId").in(batch).and("status").is("ACTIVE")), Prescription.class);
+                    prescriptions.addAndGet(active.size());
+                    created.addAndGet(writeSlots(active, LocalDateTime.now()));
+                }));
+            }
+
+            int failedBatches = 0;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failedBatches++;
+                    log.warn("Dose schedule batch failed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("patients", patientIds.size());
+            result.put("prescriptions", prescriptions.get());
+            result.put("slotsCreated", created.get());
+            result.put("failedBatches", failedBatches);
+            result.put("durationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            result.put("finishedAt", LocalDateTime.now().toString());
+            lastRun = result;
+            log.info("Dose schedule run: {}", result);
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // Incremental path for a single prescription that was just created or re-activated
+    public long materialise(Prescription prescription) {
+        if (prescription == null || !"ACTIVE".equals(prescription.getStatus())) {
+            return 0;
+        }
+        return writeSlots(List.of(prescription), LocalDateTime.now());
+    }
+
+    /**
+     * Drops the not-yet-due slots of a prescription that is no longer active. Past,
+     * due and already answered doses are kept as history. Slots are removed one at a
+     * time with a PENDING guard, so a dose answered meanwhile is neither deleted nor
+     * taken off the counters.
+     */
+    public long removeFutureSlots(String prescriptionId) {
+        List<IntakeLog> removed = intakeLogRepository.removePending(prescriptionId, KEY_PREFIX, LocalDateTime.now());
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        adherenceService.recordRemovedLogs(removed);
+        removed.forEach(gone -> eventPublisher.publishEvent(IntakeLogChangedEvent.removed(gone)));
+        return removed.size();
+    }
+
+    public Map<String, Object> getLastRun() {
+        return lastRun;
+    }
+
+    private long writeSlots(List<Prescription> prescriptions, LocalDateTime now) {
+        LocalDate horizonEnd = now.toLocalDate().plusDays(Math.max(1, horizonDays) - 1L);
+        List<IntakeLog> slots = new ArrayList<>();
+        for (Prescription prescription : prescriptions) {
+            expand(prescription, now, horizonEnd, slots);
+        }
+        if (slots.isEmpty()) {
+            return 0;
+        }
+
+        List<InsertOutcome> outcomes = intakeLogRepository.insertNew(slots);
+        List<IntakeLog> created = new ArrayList<>();
+        for (int i = 0; i < slots.size(); i++) {
+            InsertOutcome outcome = outcomes.get(i);
+            if (outcome.created()) {
+                created.add(slots.get(i));
+            } else if (outcome.error() != null) {
+                log.warn("Dose slot {} not stored: {}", slots.get(i).getIdempotencyKey(), outcome.error());
+            }
+        }
+        adherenceService.recordNewLogs(created);
+        created.forEach(slot -> eventPublisher.publishEvent(IntakeLogChangedEvent.created(slot)));
+        return created.size();
+    }
+
+    private void expand(Prescription prescription, LocalDateTime now, LocalDate horizonEnd, List<IntakeLog> out) {
+        List<Prescription.PrescriptionMedication> medications = prescription.getMedications();
+        if (medications == null || prescription.getId() == null) {
+            return;
+        }
+        LocalDate today = now.toLocalDate();
+        for (int index = 0; index < medications.size(); index++) {
+            Prescription.PrescriptionMedication med = medications.get(index);
+            List<LocalTime> times = DoseFrequency.parse(med.getFrequency()).getTimes();
+            if (times.isEmpty()) {
+                continue;
+            }
+
+            LocalDate start = firstNonNull(med.getStartDate(), prescription.getPrescribedDate(), today);
+            LocalDate end = lastDay(prescription, med, start);
+            LocalDate from = start.isAfter(today) ? start : today;
+            LocalDate to = end != null && end.isBefore(horizonEnd) ? end : horizonEnd;
+
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                for (LocalTime time : times) {
+                    // Doses that were already due when the prescription was created are not owed
+                    if (date.equals(today) && time.isBefore(now.toLocalTime())) {
+                        continue;
+                    }
+                    out.add(slot(prescription, med, index, date, time));
+                }
+            }
+        }
+    }
+
+    private static LocalDate lastDay(Prescription prescription, Prescription.PrescriptionMedication med, LocalDate start) {
+        LocalDate end = med.getEndDate();
+        if (end == null && med.getDurationDays() > 0) {
+            end = start.plusDays(med.getDurationDays() - 1L);
+        }
+        LocalDate expiry = prescription.getExpiryDate();
+        if (expiry != null && (end == null || expiry.isBefore(end))) {
+            end = expiry;
+        }
+        return end;
+    }
+
+    /**
+     * Last day any medication of the prescription is due, or null when a course is
+     * open-ended. Used as the expiry date of prescriptions created without one.
+     */
+    public static LocalDate courseEnd(Prescription prescription) {
+        List<Prescription.PrescriptionMedication> medications = prescription.getMedications();
+        if (medications == null || medications.isEmpty()) {
+            return null;
+        }
+        LocalDate created = prescription.getCreatedAt() == null ? null : prescription.getCreatedAt().toLocalDate();
+        LocalDate latest = null;
+        for (Prescription.PrescriptionMedication med : medications) {
+            LocalDate end = lastDay(prescription, med,
+                    firstNonNull(med.getStartDate(), prescription.getPrescribedDate(), created, LocalDate.now()));
+            if (end == null) {
+                return null;
+            }
+            if (latest == null || end.isAfter(latest)) {
+                latest = end;
+            }
+        }
+        return latest;
+    }
+
+    private static IntakeLog slot(Prescription prescription, Prescription.PrescriptionMedication med,
+                                  int index, LocalDate date, LocalTime time) {
+        IntakeLog slot = new IntakeLog();
+        slot.setPatientId(prescription.getPatientId());
+        slot.setPrescriptionId(prescription.getId());
+        slot.setMedicationId(med.getMedicationId());
+        slot.setMedicationName(med.getMedicationName());
+        slot.setScheduledDate(date);
+        slot.setScheduledTime(time.format(DoseFrequency.DISPLAY_TIME));
+        slot.setStatus("PENDING");
+        slot.setIdempotencyKey(KEY_PREFIX + prescription.getId() + ":" + index + ":" + date + ":" + time.format(KEY_TIME));
+        slot.setCreatedAt(LocalDateTime.now());
+        return slot;
+    }
+
+    @SafeVarargs
+    private static <T> T firstNonNull(T... values) {
+        for (T value : values) {
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
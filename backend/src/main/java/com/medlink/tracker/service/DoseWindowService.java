@@ -0,0 +1,112 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.repository.IntakeLogRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Answers "which doses are due between from and to" across all patients with a
+ * single range scan on the (status, scheduledAt) index of the active storage layout.
+ */
+@Service
+public class DoseWindowService {
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private IntakeLogRepository intakeLogRepository;
+    @Autowired private IntakeWriteBehindBuffer writeBehind;
+
+    @Value("${intake.due.max-results:1000}")
+    private int maxResults;
+
+    @Value("${intake.due.overdue-lookback-hours:24}")
+    private long overdueLookbackHours;
+
+    public Map<String, Object> findDue(LocalDateTime from, LocalDateTime to, boolean includeOverdue, Integer limit) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime start = from != null ? from : now;
+        LocalDateTime end = to != null ? to : start.plusMinutes(15);
+        if (end.isBefore(start)) {
+            throw new RuntimeException("Window end must not be before its start");
+        }
+        if (includeOverdue) {
+            start = now.minusHours(overdueLookbackHours).isBefore(start) ? now.minusHours(overdueLookbackHours) : start;
+        }
+        int cap = limit == null || limit <= 0 ? maxResults : Math.min(limit, maxResults);
+
+        List<IntakeLog> doses;
+        try (Stream<IntakeLog> stream = intakeLogRepository.streamPending(start, end, false, cap + 1)) {
+            // A dose answered in the write-behind buffer is no longer due
+            doses = stream.map(writeBehind::latest).filter(dose -> "PENDING".equals(dose.getStatus())).toList();
+        }
+        boolean truncated = doses.size() > cap;
+        if (truncated) {
+            doses = doses.subList(0, cap);
+        }
+
+        List<IntakeLog> due = new ArrayList<>();
+        List<IntakeLog> overdue = new ArrayList<>();
+        for (IntakeLog dose : doses) {
+            (dose.getScheduledAt().isBefore(now) ? overdue : due).add(dose);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("from", start.toString());
+        result.put("to", end.toString());
+        result.put("due", due);
+        result.put("overdue", overdue);
+        result.put("truncated", truncated);
+        return result;
+    }
+
+    /**
+     * Fills scheduledAt on logs written before it existed, parsing their
+     * free-form scheduledTime. Logs whose time can't be parsed are left unset.
+     * Only intake_logs can hold such logs: doses copied into the bucketed layout get
+     * scheduledAt derived by the migration.
+     */
+    public Map<String, Object> backfillScheduledAt() {
+        Query query = Query.query(Criteria.where("scheduledAt").exists(false)
+                .and("scheduledDate").ne(null).and("scheduledTime").ne(null));
+        query.fields().include("_id").include("scheduledDate").include("scheduledTime");
+
+        long scanned = 0, updated = 0;
+        BulkOperations bulk = null;
+        int pending = 0;
+        try (Stream<IntakeLog> stream = mongoTemplate.stream(query, IntakeLog.class)) {
+            Iterator<IntakeLog> it = stream.iterator();
+            while (it.hasNext()) {
+                IntakeLog log = it.next();
+                scanned++;
+                LocalDateTime scheduledAt = IntakeLog.scheduledAtOf(log.getScheduledDate(), log.getScheduledTime());
+                if (scheduledAt == null) {
+                    continue;
+                }
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, IntakeLog.class);
+                }
+                bulk.updateOne(Query.query(Criteria.where("_id").is(log.getId())),
+                        new Update().set("scheduledAt", scheduledAt));
+                if (++pending == 1000) {
+                    updated += bulk.execute().getModifiedCount();
+                    bulk = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (bulk != null) {
+            updated += bulk.execute().getModifiedCount();
+        }
+        return Map.of("scanned", scanned, "updated", updated);
+    }
+}
@@ -0,0 +1,237 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.event.IntakeLogChangedEvent;
+import com.medlink.tracker.model.AdherenceDaily;
+import com.medlink.tracker.model.AdherenceSummary;
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.repository.IntakeLogRepository;
+import com.medlink.tracker.repository.IntakeLogRepositoryCustom.InsertOutcome;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Stores intake events replayed by offline clients. Each event carries a
+ * client-generated idempotency key and is only inserted when the key is new, so
+ * the whole batch goes out as one unordered bulk write and retries never create
+ * duplicates.
+ */
+@Service
+public class IntakeBatchService {
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private IntakeLogRepository intakeLogRepository;
+    @Autowired private IntakeWriteBehindBuffer writeBehind;
+    @Autowired private AdherenceService adherenceService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+
+    @Value("${intake.batch.max-size:500}")
+    private int maxBatchSize;
+
+    public Map<String, Object> logIntakeBatch(List<IntakeLog> logs) {
+        return write(logs, true);
+    }
+
+    /**
+     * Times {@code events} intake writes stored one at a time, as POST /intake does
+     * (idempotency lookup, insert, adherence $inc per event), against the same number
+     * sent through one batch. Writes go to a throwaway patient id whose logs and
+     * counters are deleted afterwards; no change events are published.
+     */
+    public Map<String, Object> benchmark(int events, int rounds) {
+        int size = Math.max(1, Math.min(events, maxBatchSize));
+        int runs = Math.max(1, Math.min(rounds, 10));
+        String patientId = "benchmark-" + UUID.randomUUID();
+
+        long[] singleTimes = new long[runs];
+        long[] batchTimes = new long[runs];
+        try {
+            for (int r = 0; r < runs; r++) {
+                List<IntakeLog> single = syntheticLogs(patientId, "single-" + r, size);
+                long t = System.nanoTime();
+                for (IntakeLog log : single) {
+                    if (intakeLogRepository.findByIdempotencyKey(log.getIdempotencyKey()).isEmpty()) {
+                        IntakeLog saved = intakeLogRepository.save(log);
+                        adherenceService.recordTransition(saved, null, saved.getStatus());
+                    }
+                }
+                singleTimes[r] = System.nanoTime() - t;
+
+                List<IntakeLog> batch = syntheticLogs(patientId, "batch-" + r, size);
+                t = System.nanoTime();
+                write(batch, false);
+                batchTimes[r] = System.nanoTime() - t;
+            }
+        } finally {
+            intakeLogRepository.deleteByPatientId(patientId);
+            mongoTemplate.remove(Query.query(Criteria.where("patientId").is(patientId)), AdherenceDaily.class);
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(patientId)), AdherenceSummary.class);
+        }
+
+        Map<String, Object> singleResult = throughput(singleTimes, size);
+        Map<String, Object> batchResult = throughput(batchTimes, size);
+        Map<String, Object> result = new HashMap<>();
+        result.put("events", size);
+        result.put("rounds", runs);
+        result.put("single", singleResult);
+        result.put("batch", batchResult);
+        result.put("speedup", Math.round((double) median(singleTimes) / Math.max(1, median(batchTimes)) * 10) / 10.0);
+        return result;
+    }
+
+    private Map<String, Object> write(List<IntakeLog> logs, boolean publish) {
+        if (logs == null || logs.isEmpty()) {
+            throw new RuntimeException("Batch is empty");
+        }
+        if (logs.size() > maxBatchSize) {
+            throw new RuntimeException("Batch exceeds maximum size of " + maxBatchSize);
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(logs.size());
+        // insert index -> position in the request
+        List<Integer> insertToRequest = new ArrayList<>();
+        List<IntakeLog> toInsert = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < logs.size(); i++) {
+            IntakeLog log = logs.get(i);
+            String key = log.getIdempotencyKey();
+            if (key == null || key.isBlank()) {
+                results.add(result(i, key, "ERROR", null, "idempotencyKey is required"));
+                continue;
+            }
+            if (log.getPatientId() == null) {
+                results.add(result(i, key, "ERROR", null, "patientId is required"));
+                continue;
+            }
+            if (!seenKeys.add(key)) {
+                results.add(result(i, key, "DUPLICATE", null, null));
+                continue;
+            }
+            // Accepted by the write-behind buffer but not flushed yet
+            Optional<IntakeLog> buffered = writeBehind.findByIdempotencyKey(key);
+            if (buffered.isPresent()) {
+                results.add(result(i, key, "DUPLICATE", buffered.get().getId(), null));
+                continue;
+            }
+
+            log.setId(null);
+            log.setCreatedAt(now);
+            if ("TAKEN".equals(log.getStatus()) && log.getTakenAt() == null) {
+                log.setTakenAt(now);
+            }
+            toInsert.add(log);
+            insertToRequest.add(i);
+            results.add(null);
+        }
+
+        List<InsertOutcome> outcomes = intakeLogRepository.insertNew(toInsert);
+        List<IntakeLog> created = new ArrayList<>();
+        for (int b = 0; b < insertToRequest.size(); b++) {
+            int i = insertToRequest.get(b);
+            IntakeLog log = logs.get(i);
+            InsertOutcome outcome = outcomes.get(b);
+            if (outcome.created()) {
+                created.add(log);
+                results.set(i, result(i, log.getIdempotencyKey(), "CREATED", log.getId(), null));
+            } else if (outcome.error() == null) {
+                results.set(i, result(i, log.getIdempotencyKey(), "DUPLICATE", null, null));
+            } else {
+                results.set(i, result(i, log.getIdempotencyKey(), "ERROR", null, outcome.error()));
+            }
+        }
+
+        resolveDuplicateIds(results);
+        adherenceService.recordNewLogs(created);
+        if (publish) {
+            created.forEach(log -> eventPublisher.publishEvent(IntakeLogChangedEvent.created(log)));
+        }
+
+        int createdCount = 0, duplicateCount = 0, failedCount = 0;
+        for (Map<String, Object> r : results) {
+            switch ((String) r.get("status")) {
+                case "CREATED" -> createdCount++;
+                case "DUPLICATE" -> duplicateCount++;
+                default -> failedCount++;
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        response.put("created", createdCount);
+        response.put("duplicates", duplicateCount);
+        response.put("failed", failedCount);
+        return response;
+    }
+
+    // Fills in the stored id for duplicates with one lookup for the whole batch
+    private void resolveDuplicateIds(List<Map<String, Object>> results) {
+        List<String> keys = new ArrayList<>();
+        for (Map<String, Object> r : results) {
+            if ("DUPLICATE".equals(r.get("status")) && r.get("id") == null && r.get("idempotencyKey") != null) {
+                keys.add((String) r.get("idempotencyKey"));
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        Map<String, String> idsByKey = intakeLogRepository.findIdsByIdempotencyKeys(keys);
+        for (Map<String, Object> r : results) {
+            if ("DUPLICATE".equals(r.get("status")) && r.get("id") == null) {
+                r.put("id", idsByKey.get(r.get("idempotencyKey")));
+            }
+        }
+    }
+
+    private static List<IntakeLog> syntheticLogs(String patientId, String prefix, int count) {
+        String[] times = {"08:00 AM", "01:00 PM", "08:00 PM"};
+        LocalDate today = LocalDate.now();
+        List<IntakeLog> logs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            IntakeLog log = new IntakeLog();
+            log.setPatientId(patientId);
+            log.setMedicationName("Benchmark");
+            log.setScheduledDate(today.minusDays(i / times.length));
+            log.setScheduledTime(times[i % times.length]);
+            log.setStatus(i % 4 == 3 ? "MISSED" : "TAKEN");
+            log.setIdempotencyKey(patientId + "-" + prefix + "-" + i);
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    private static Map<String, Object> throughput(long[] roundNanos, int events) {
+        long median = median(roundNanos);
+        Map<String, Object> result = new HashMap<>();
+        result.put("medianRoundMs", median / 1_000_000.0);
+        result.put("eventsPerSecond", Math.round(events / (Math.max(1, median) / 1e9)));
+        return result;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static Map<String, Object> result(int index, String key, String status, String id, String error) {
+        Map<String, Object> r = new HashMap<>();
+        r.put("index", index);
+        r.put("idempotencyKey", key);
+        r.put("status", status);
+        r.put("id", id);
+        if (error != null) {
+            r.put("error", error);
+        }
+        return r;
+    }
+}
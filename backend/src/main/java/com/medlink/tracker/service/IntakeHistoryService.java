@@ -0,0 +1,102 @@
+package com.medlink.tracker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.repository.IntakeLogRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Reads a patient's intake history newest-first, either one keyset page at a time
+ * or as a cursor-backed stream, so the full history is never held on the heap.
+ * Ordering is (scheduledDate desc, _id desc), matching patient_history_idx; the
+ * repository serves the same order from day buckets in the bucketed layout.
+ */
+@Service
+public class IntakeHistoryService {
+
+    private static final String NULL_DATE = "-";
+
+    @Autowired private IntakeLogRepository intakeLogRepository;
+    @Autowired private IntakeWriteBehindBuffer writeBehind;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Value("${intake.history.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${intake.history.max-page-size:200}")
+    private int maxPageSize;
+
+    public Map<String, Object> getPage(String patientId, String cursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+
+        LocalDate lastDate = null;
+        String lastId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = decodeCursor(cursor);
+            lastDate = NULL_DATE.equals(parts[0]) ? null : LocalDate.parse(parts[0]);
+            lastId = parts[1];
+        }
+        List<IntakeLog> items = intakeLogRepository.findHistoryPage(patientId, lastDate, lastId, pageSize + 1)
+                .stream().map(writeBehind::latest).toList();
+
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = encodeCursor(items.get(pageSize - 1));
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", items);
+        page.put("nextCursor", nextCursor);
+        page.put("limit", pageSize);
+        return page;
+    }
+
+    // Writes one JSON document per line straight from the Mongo cursor
+    public void streamNdjson(String patientId, OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(IntakeLog.class);
+        try (Stream<IntakeLog> stream = intakeLogRepository.streamHistory(patientId)) {
+            var it = stream.iterator();
+            while (it.hasNext()) {
+                out.write(writer.writeValueAsBytes(writeBehind.latest(it.next())));
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
+    private static String encodeCursor(IntakeLog last) {
+        String date = last.getScheduledDate() != null ? last.getScheduledDate().toString() : NULL_DATE;
+        String raw = date + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                throw new IllegalArgumentException();
+            }
+            if (!NULL_DATE.equals(parts[0])) {
+                LocalDate.parse(parts[0]);
+            }
+            return parts;
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid history cursor");
+        }
+    }
+}
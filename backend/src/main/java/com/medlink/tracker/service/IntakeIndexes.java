@@ -0,0 +1,53 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.IntakeBucket;
+import com.medlink.tracker.model.IntakeLog;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Indexes of intake_logs and of the doses inside intake_buckets. They are created
+ * here instead of through annotations on IntakeLog: buckets embed IntakeLog, so
+ * auto-index creation would repeat every IntakeLog index under "doses." next to
+ * the bucket's own, and the clashing definitions stop the application from starting.
+ * A unique index on the embedded keys would also make buckets collide on keyless doses.
+ */
+@Component
+public class IntakeIndexes {
+
+    static final List<Index> LOG_INDEXES = List.of(
+            new Index().on("patientId", Sort.Direction.ASC).on("scheduledDate", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC).named("patient_history_idx"),
+            new Index().on("status", Sort.Direction.ASC).on("patientBucket", Sort.Direction.ASC)
+                    .on("scheduledAt", Sort.Direction.ASC).named("status_bucket_due_idx"),
+            new Index().on("status", Sort.Direction.ASC).on("scheduledAt", Sort.Direction.ASC).named("status_due_idx"),
+            new Index().on("prescriptionId", Sort.Direction.ASC).named("prescriptionId"),
+            new Index().on("idempotencyKey", Sort.Direction.ASC).named("idempotencyKey").unique().sparse(),
+            new Index().on("sweepId", Sort.Direction.ASC).named("sweepId").sparse(),
+            new Index().on("writeId", Sort.Direction.ASC).named("writeId").sparse());
+
+    // Key uniqueness within buckets is enforced by the insert guard in IntakeLogRepositoryImpl
+    static final List<Index> BUCKET_INDEXES = List.of(
+            new Index().on("doses.idempotencyKey", Sort.Direction.ASC).named("dose_key_idx").sparse(),
+            new Index().on("doses.status", Sort.Direction.ASC).on("doses.scheduledAt", Sort.Direction.ASC)
+                    .named("dose_status_due_idx"),
+            new Index().on("doses.prescriptionId", Sort.Direction.ASC).named("dose_prescription_idx"),
+            new Index().on("doses.sweepId", Sort.Direction.ASC).named("dose_sweep_idx").sparse());
+
+    @Autowired private MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    public void ensureIndexes() {
+        IndexOperations logs = mongoTemplate.indexOps(IntakeLog.class);
+        LOG_INDEXES.forEach(logs::ensureIndex);
+        IndexOperations buckets = mongoTemplate.indexOps(IntakeBucket.class);
+        BUCKET_INDEXES.forEach(buckets::ensureIndex);
+    }
+}
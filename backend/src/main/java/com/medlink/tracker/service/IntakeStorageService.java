@@ -0,0 +1,184 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.IntakeBucket;
+import com.medlink.tracker.model.IntakeLog;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Tooling for the bucketed intake layout: copies per-dose intake_logs into
+ * per-patient-day intake_buckets, and compares the two layouts on collection
+ * size, index size and day-view read latency.
+ */
+@Service
+public class IntakeStorageService {
+
+    @Autowired private MongoTemplate mongoTemplate;
+
+    @Value("${intake.storage.migration-batch-size:500}")
+    private int migrationBatchSize;
+
+    /**
+     * Streams intake_logs in patientId order and appends each dose to its
+     * patient-day bucket. Dose ids are re-issued as "<bucketId>_<originalId>". Each
+     * bucket is written with $pull of the doses being copied followed by an upserting
+     * $push, never a replace, so a bucket that shows up again later in the stream
+     * (logs without a scheduledDate are bucketed by createdAt but sort last) keeps its
+     * earlier doses, and re-running the copy never duplicates one.
+     */
+    public Map<String, Object> migrate() {
+        long started = System.nanoTime();
+        Query query = new Query().with(Sort.by(Sort.Order.asc("patientId"), Sort.Order.desc("scheduledDate")));
+
+        long doses = 0, buckets = 0;
+        Map<String, IntakeBucket> pending = new LinkedHashMap<>();
+        int pendingDoses = 0;
+        String patient = null;
+        Set<String> patientBuckets = new HashSet<>();
+
+        try (Stream<IntakeLog> stream = mongoTemplate.stream(query, IntakeLog.class)) {
+            Iterator<IntakeLog> it = stream.iterator();
+            while (it.hasNext()) {
+                IntakeLog log = it.next();
+                if (log.getPatientId() == null) {
+                    continue;
+                }
+                if (!log.getPatientId().equals(patient)) {
+                    patient = log.getPatientId();
+                    patientBuckets.clear();
+                }
+                LocalDate date = log.getScheduledDate() != null ? log.getScheduledDate() : log.getCreatedAt().toLocalDate();
+                String bucketId = IntakeBucket.idFor(log.getPatientId(), date);
+                if (patientBuckets.add(bucketId)) {
+                    buckets++;
+                }
+
+                IntakeBucket bucket = pending.computeIfAbsent(bucketId, id -> {
+                    IntakeBucket created = new IntakeBucket();
+                    created.setId(id);
+                    created.setPatientId(log.getPatientId());
+                    created.setPatientBucket(IntakeLog.bucketOf(log.getPatientId()));
+                    created.setDate(date);
+                    return created;
+                });
+                log.setId(bucketId + "_" + log.getId());
+                log.setScheduledDate(date);
+                if (log.getScheduledAt() == null) {
+                    log.setScheduledAt(IntakeLog.scheduledAtOf(date, log.getScheduledTime()));
+                }
+                bucket.getDoses().add(log);
+                doses++;
+                if (++pendingDoses >= migrationBatchSize) {
+                    writeBuckets(pending);
+                    pendingDoses = 0;
+                }
+            }
+        }
+        writeBuckets(pending);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("doses", doses);
+        result.put("buckets", buckets);
+        result.put("durationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return result;
+    }
+
+    /**
+     * Reports storage footprint of both layouts and times the day view
+     * (findByPatientIdAndScheduledDate) against each for the given patient and date.
+     */
+    public Map<String, Object> benchmark(String patientId, LocalDate date, int iterations) {
+        int runs = Math.max(1, Math.min(iterations, 10_000));
+
+        Query perDose = Query.query(Criteria.where("patientId").is(patientId).and("scheduledDate").is(date));
+        long[] documentTimes = new long[runs];
+        int documentDoses = 0;
+        for (int i = 0; i < runs; i++) {
+            long t = System.nanoTime();
+            documentDoses = mongoTemplate.find(perDose, IntakeLog.class).size();
+            documentTimes[i] = System.nanoTime() - t;
+        }
+
+        String bucketId = IntakeBucket.idFor(patientId, date);
+        long[] bucketTimes = new long[runs];
+        int bucketDoses = 0;
+        for (int i = 0; i < runs; i++) {
+            long t = System.nanoTime();
+            IntakeBucket bucket = mongoTemplate.findById(bucketId, IntakeBucket.class);
+            bucketDoses = bucket == null ? 0 : bucket.getDoses().size();
+            bucketTimes[i] = System.nanoTime() - t;
+        }
+
+        Map<String, Object> document = collectionStats(mongoTemplate.getCollectionName(IntakeLog.class));
+        document.put("dayViewDoses", documentDoses);
+        document.put("dayViewLatencyMicros", Latencies.micros(documentTimes));
+
+        Map<String, Object> bucketed = collectionStats(mongoTemplate.getCollectionName(IntakeBucket.class));
+        bucketed.put("dayViewDoses", bucketDoses);
+        bucketed.put("dayViewLatencyMicros", Latencies.micros(bucketTimes));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("iterations", runs);
+        result.put("document", document);
+        result.put("bucketed", bucketed);
+        return result;
+    }
+
+    private void writeBuckets(Map<String, IntakeBucket> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        // Ordered, so each bucket's $pull runs before its $push
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, IntakeBucket.class);
+        LocalDateTime now = LocalDateTime.now();
+        for (IntakeBucket bucket : buckets.values()) {
+            List<String> ids = new ArrayList<>(bucket.getDoses().size());
+            List<Document> docs = new ArrayList<>(bucket.getDoses().size());
+            for (IntakeLog dose : bucket.getDoses()) {
+                Document doc = new Document();
+                mongoTemplate.getConverter().write(dose, doc);
+                doc.remove("_class");
+                ids.add(dose.getId());
+                docs.add(doc);
+            }
+            Query byId = Query.query(Criteria.where("_id").is(bucket.getId()));
+            bulk.updateOne(byId, new Update().pull("doses", new Document("_id", new Document("$in", ids))));
+            bulk.upsert(byId, new Update()
+                    .push("doses").each(docs.toArray())
+                    .setOnInsert("patientId", bucket.getPatientId())
+                    .setOnInsert("patientBucket", bucket.getPatientBucket())
+                    .setOnInsert("date", bucket.getDate())
+                    .set("updatedAt", now));
+        }
+        bulk.execute();
+        buckets.clear();
+    }
+
+    // Working-set proxy: data and index bytes that must stay in cache to serve the collection
+    private Map<String, Object> collectionStats(String collection) {
+        Document stats = mongoTemplate.executeCommand(new Document("collStats", collection));
+        Map<String, Object> result = new HashMap<>();
+        result.put("collection", collection);
+        result.put("count", stats.get("count"));
+        result.put("sizeBytes", stats.get("size"));
+        result.put("storageSizeBytes", stats.get("storageSize"));
+        result.put("avgObjSizeBytes", stats.get("avgObjSize"));
+        result.put("indexes", stats.get("nindexes"));
+        result.put("totalIndexSizeBytes", stats.get("totalIndexSize"));
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.IntakeLog;
+
+// One accepted intake write as stored in the write-ahead log; log holds the state after the write
+class IntakeWalRecord {
+
+    static final String CREATE = "CREATE";
+    static final String STATUS = "STATUS";
+
+    private String type;
+    private String previousStatus;
+    private IntakeLog log;
+    private long seq;
+
+    IntakeWalRecord() {}
+
+    IntakeWalRecord(String type, String previousStatus, IntakeLog log) {
+        this.type = type;
+        this.previousStatus = previousStatus;
+        this.log = log;
+    }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getPreviousStatus() { return previousStatus; }
+    public void setPreviousStatus(String previousStatus) { this.previousStatus = previousStatus; }
+
+    public IntakeLog getLog() { return log; }
+    public void setLog(IntakeLog log) { this.log = log; }
+
+    long seq() { return seq; }
+    void seq(long seq) { this.seq = seq; }
+}
@@ -0,0 +1,222 @@
+package com.medlink.tracker.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of fixed-size memory-mapped segments. A record is
+ * [length:int][seq:long][crc32:int][payload], and the length is written last so a
+ * record torn by a crash reads as end-of-log. Writes to the mapping reach the page
+ * cache immediately and survive a process crash; {@code fsync} also forces each
+ * append to disk so they survive power loss.
+ * <p>
+ * The checkpoint file holds the log id and the highest sequence already flushed;
+ * segments wholly at or below it are deleted.
+ */
+final class IntakeWriteAheadLog {
+
+    private static final int HEADER_BYTES = 4 + 8 + 4;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT = "checkpoint";
+
+    record Entry(long seq, byte[] payload) {}
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final boolean fsync;
+
+    private String logId;
+    private long checkpoint;
+    private long nextSeq;
+
+    private long segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    // segment index -> highest sequence written to it
+    private final TreeMap<Long, Long> segmentMaxSeq = new TreeMap<>();
+
+    IntakeWriteAheadLog(Path dir, int segmentBytes, boolean fsync) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Opens the log and returns every intact record above the checkpoint, in
+     * sequence order. New appends go to a fresh segment.
+     */
+    synchronized List<Entry> open() throws IOException {
+        Files.createDirectories(dir);
+        readCheckpoint();
+
+        List<Entry> pending = new ArrayList<>();
+        long maxSeq = checkpoint;
+        long maxIndex = -1;
+        boolean torn = false;
+        for (Path file : segmentFiles()) {
+            long index = indexOf(file);
+            maxIndex = Math.max(maxIndex, index);
+            long segmentMax = -1;
+            if (!torn) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                    while (buf.remaining() >= HEADER_BYTES) {
+                        int length = buf.getInt();
+                        if (length == 0) {
+                            break;
+                        }
+                        long seq = buf.getLong();
+                        int crc = buf.getInt();
+                        if (length < 0 || length > buf.remaining()) {
+                            torn = true;
+                            break;
+                        }
+                        byte[] payload = new byte[length];
+                        buf.get(payload);
+                        if (crc != crc(seq, payload)) {
+                            torn = true;
+                            break;
+                        }
+                        segmentMax = Math.max(segmentMax, seq);
+                        maxSeq = Math.max(maxSeq, seq);
+                        if (seq > checkpoint) {
+                            pending.add(new Entry(seq, payload));
+                        }
+                    }
+                }
+            }
+            segmentMaxSeq.put(index, segmentMax);
+        }
+
+        nextSeq = maxSeq + 1;
+        segmentIndex = maxIndex;
+        roll();
+        deleteCheckpointedSegments();
+        return pending;
+    }
+
+    synchronized long append(byte[] payload) throws IOException {
+        int size = HEADER_BYTES + payload.length;
+        if (size + 4 > segmentBytes) {
+            throw new IOException("Record of " + payload.length + " bytes exceeds the segment size");
+        }
+        if (segment.remaining() < size + 4) {
+            roll();
+        }
+        long seq = nextSeq++;
+        int position = segment.position();
+        segment.putLong(position + 4, seq);
+        segment.putInt(position + 12, crc(seq, payload));
+        segment.put(position + HEADER_BYTES, payload);
+        // Publishing the length last commits the record
+        segment.putInt(position, payload.length);
+        segment.position(position + size);
+        if (fsync) {
+            segment.force(position, size);
+        }
+        segmentMaxSeq.put(segmentIndex, seq);
+        return seq;
+    }
+
+    /**
+     * Records that everything up to {@code seq} is durable elsewhere and deletes
+     * segments that hold nothing newer.
+     */
+    synchronized void checkpoint(long seq) throws IOException {
+        if (seq <= checkpoint) {
+            return;
+        }
+        checkpoint = seq;
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(tmp, logId + "\n" + seq + "\n", StandardCharsets.UTF_8);
+        Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        deleteCheckpointedSegments();
+    }
+
+    private void deleteCheckpointedSegments() throws IOException {
+        Iterator<Map.Entry<Long, Long>> it = segmentMaxSeq.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Long> entry = it.next();
+            if (entry.getKey() == segmentIndex || entry.getValue() > checkpoint) {
+                break;
+            }
+            Files.deleteIfExists(segmentPath(entry.getKey()));
+            it.remove();
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    // Stable across restarts, so write ids derived from it stay unique to this log
+    synchronized String getLogId() { return logId; }
+
+    synchronized long getCheckpoint() { return checkpoint; }
+
+    synchronized long getLastSeq() { return nextSeq - 1; }
+
+    synchronized int getSegmentCount() { return segmentMaxSeq.size(); }
+
+    private void roll() throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+        }
+        segmentIndex++;
+        channel = FileChannel.open(segmentPath(segmentIndex),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segmentMaxSeq.put(segmentIndex, -1L);
+    }
+
+    private void readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT);
+        if (Files.exists(file)) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            logId = lines.get(0).trim();
+            checkpoint = Long.parseLong(lines.get(1).trim());
+        } else {
+            logId = UUID.randomUUID().toString();
+            checkpoint = 0;
+            Files.writeString(file, logId + "\n0\n", StandardCharsets.UTF_8);
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(IntakeWriteAheadLog::indexOf))
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return dir.resolve(String.format("%020d%s", index, SEGMENT_SUFFIX));
+    }
+
+    private static long indexOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int crc(long seq, byte[] payload) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (seq >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
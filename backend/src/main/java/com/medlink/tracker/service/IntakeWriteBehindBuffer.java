@@ -0,0 +1,507 @@
+package com.medlink.tracker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medlink.tracker.event.IntakeLogChangedEvent;
+import com.medlink.tracker.exception.ServiceBusyException;
+import com.medlink.tracker.exception.StatusConflictException;
+import com.medlink.tracker.model.IntakeLog;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Optional write-behind path for intake writes ({@code intake.write-behind.enabled}).
+ * An accepted create or status change is appended to a local memory-mapped
+ * write-ahead log and answered at once; a single drainer coalesces queued records
+ * per dose and flushes them to intake_logs in unordered bulk writes, then
+ * checkpoints the log. Until a dose is flushed its newest state is kept in an
+ * overlay that MedicationService merges into reads.
+ * <p>
+ * Flushes are idempotent: creates are insert-only upserts on a pre-assigned _id,
+ * and status changes only match the status the change was accepted against. Every
+ * write is tagged with a write id unique to its log record, which tells the drainer
+ * which operations took effect even when a flush is retried. Records replayed after
+ * a crash are written the same way, and the adherence counters of the patients they
+ * touch are rebuilt from the stored logs rather than incremented. A batch that is
+ * retried after it reached the counting step (say the checkpoint failed) rebuilds
+ * its patients instead of counting again, so nothing is counted twice.
+ * <p>
+ * Reads by id and idempotency key, the patient and day views, history pages and
+ * streams and the due window see buffered status changes. Buffered creates show up
+ * in history and the due window, and every write shows up in the adherence
+ * counters, only after the flush, so those lag by at most one flush interval.
+ */
+@Service
+public class IntakeWriteBehindBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(IntakeWriteBehindBuffer.class);
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private AdherenceService adherenceService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Value("${intake.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${intake.storage.mode:document}")
+    private String storageMode;
+
+    @Value("${intake.write-behind.dir:data/intake-wal}")
+    private String directory;
+
+    @Value("${intake.write-behind.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${intake.write-behind.fsync:false}")
+    private boolean fsync;
+
+    @Value("${intake.write-behind.flush-interval-ms:100}")
+    private long flushIntervalMillis;
+
+    @Value("${intake.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${intake.write-behind.max-pending:50000}")
+    private int maxPending;
+
+    @Value("${intake.write-behind.retry-after-seconds:5}")
+    private int retryAfterSeconds;
+
+    private record Pending(IntakeLog log, long seq) {}
+
+    private static final class Op {
+        final IntakeWalRecord first;
+        IntakeWalRecord last;
+        String writeId;
+
+        Op(IntakeWalRecord first) {
+            this.first = first;
+            this.last = first;
+        }
+
+        boolean create() {
+            return IntakeWalRecord.CREATE.equals(first.getType());
+        }
+    }
+
+    private IntakeWriteAheadLog wal;
+    private volatile boolean active;
+    private volatile boolean running;
+    private Thread drainer;
+    private final Object appendLock = new Object();
+    private final BlockingQueue<IntakeWalRecord> queue = new LinkedBlockingQueue<>();
+
+    // dose id -> newest accepted state that is not flushed yet
+    private final Map<String, Pending> overlay = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> overlayByPatient = new ConcurrentHashMap<>();
+    private final Map<String, String> overlayByKey = new ConcurrentHashMap<>();
+
+    // Patients whose counters are rebuilt once everything up to replayedUntil is flushed
+    private final Set<String> replayedPatients = ConcurrentHashMap.newKeySet();
+    private volatile long replayedUntil;
+
+    // Last seq of the newest batch that reached the counting step; drainer thread only
+    private long countAttemptedUntil;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long lastFlushMillis;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        if ("bucketed".equalsIgnoreCase(storageMode)) {
+            log.warn("intake.write-behind.enabled is ignored with intake.storage.mode=bucketed");
+            return;
+        }
+        wal = new IntakeWriteAheadLog(Path.of(directory), segmentBytes, fsync);
+        try {
+            for (IntakeWriteAheadLog.Entry entry : wal.open()) {
+                IntakeWalRecord record = objectMapper.readValue(entry.payload(), IntakeWalRecord.class);
+                record.seq(entry.seq());
+                remember(record);
+                queue.add(record);
+                if (record.getLog().getPatientId() != null) {
+                    replayedPatients.add(record.getLog().getPatientId());
+                }
+                replayedUntil = entry.seq();
+                replayed.increment();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open intake write-ahead log in " + directory, e);
+        }
+        if (replayed.sum() > 0) {
+            log.info("Replaying {} intake writes from the write-ahead log", replayed.sum());
+        }
+
+        running = true;
+        active = true;
+        drainer = new Thread(this::drainLoop, "intake-write-behind");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    // Drains what it can; anything left stays in the log and is replayed on the next start
+    @PreDestroy
+    void shutdown() throws IOException, InterruptedException {
+        if (!active) {
+            return;
+        }
+        active = false;
+        running = false;
+        drainer.join(TimeUnit.SECONDS.toMillis(10));
+        wal.close();
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    Optional<IntakeLog> find(String id) {
+        Pending pending = overlay.get(id);
+        return pending == null ? Optional.empty() : Optional.of(pending.log());
+    }
+
+    Optional<IntakeLog> findByIdempotencyKey(String key) {
+        String id = key == null ? null : overlayByKey.get(key);
+        return id == null ? Optional.empty() : find(id);
+    }
+
+    /**
+     * Replaces stored doses of the patient with their buffered state and adds
+     * buffered new doses; both are kept only if they match {@code filter}.
+     */
+    List<IntakeLog> merge(String patientId, List<IntakeLog> stored, Predicate<IntakeLog> filter) {
+        Set<String> ids = overlayByPatient.get(patientId);
+        if (ids == null || ids.isEmpty()) {
+            return stored;
+        }
+        Map<String, IntakeLog> buffered = new HashMap<>();
+        for (String id : ids) {
+            Pending pending = overlay.get(id);
+            if (pending != null) {
+                buffered.put(id, pending.log());
+            }
+        }
+        List<IntakeLog> merged = new ArrayList<>(stored.size() + buffered.size());
+        for (IntakeLog log : stored) {
+            IntakeLog newer = buffered.remove(log.getId());
+            IntakeLog current = newer != null ? newer : log;
+            if (newer == null || filter.test(current)) {
+                merged.add(current);
+            }
+        }
+        for (IntakeLog log : buffered.values()) {
+            if (filter.test(log)) {
+                merged.add(log);
+            }
+        }
+        return merged;
+    }
+
+    // The buffered state of a stored dose, or the dose itself when nothing newer is buffered
+    IntakeLog latest(IntakeLog stored) {
+        Pending pending = active ? overlay.get(stored.getId()) : null;
+        return pending == null ? stored : pending.log();
+    }
+
+    IntakeWalRecord acceptCreate(IntakeLog log) {
+        if (log.getId() == null) {
+            log.setId(new ObjectId().toHexString());
+        }
+        synchronized (appendLock) {
+            return append(new IntakeWalRecord(IntakeWalRecord.CREATE, null, log));
+        }
+    }
+
+    /**
+     * Accepts a status change that the caller validated against {@code current}. If
+     * another change to the same dose was accepted in between, the dose is no longer
+     * in that status and a StatusConflictException is thrown instead.
+     */
+    IntakeWalRecord acceptTransition(IntakeLog current, String status, LocalDateTime takenAt) {
+        synchronized (appendLock) {
+            IntakeLog base = find(current.getId()).orElse(current);
+            if (!Objects.equals(base.getStatus(), current.getStatus())) {
+                throw new StatusConflictException("Cannot change intake log status from "
+                        + base.getStatus() + " to " + status, base.getStatus());
+            }
+            IntakeLog next = objectMapper.convertValue(base, IntakeLog.class);
+            next.setStatus(status);
+            if (takenAt != null) {
+                next.setTakenAt(takenAt);
+            }
+            return append(new IntakeWalRecord(IntakeWalRecord.STATUS, base.getStatus(), next));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("active", active);
+        stats.put("fsync", fsync);
+        stats.put("queued", queue.size());
+        stats.put("bufferedDoses", overlay.size());
+        stats.put("accepted", accepted.sum());
+        stats.put("replayed", replayed.sum());
+        stats.put("batches", batches.sum());
+        stats.put("writes", writes.sum());
+        stats.put("applied", applied.sum());
+        stats.put("conflicts", conflicts.sum());
+        stats.put("failures", failures.sum());
+        stats.put("lastFlushMs", lastFlushMillis);
+        if (wal != null) {
+            stats.put("lastSeq", wal.getLastSeq());
+            stats.put("checkpoint", wal.getCheckpoint());
+            stats.put("segments", wal.getSegmentCount());
+        }
+        return stats;
+    }
+
+    // Caller holds appendLock, so log order, queue order and overlay order agree
+    private IntakeWalRecord append(IntakeWalRecord record) {
+        if (queue.size() >= maxPending) {
+            throw new ServiceBusyException("Intake write buffer is full, retry later", retryAfterSeconds);
+        }
+        try {
+            record.seq(wal.append(objectMapper.writeValueAsBytes(record)));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not record intake write", e);
+        }
+        remember(record);
+        queue.add(record);
+        accepted.increment();
+        return record;
+    }
+
+    private void remember(IntakeWalRecord record) {
+        IntakeLog log = record.getLog();
+        overlay.put(log.getId(), new Pending(log, record.seq()));
+        if (log.getPatientId() != null) {
+            overlayByPatient.computeIfAbsent(log.getPatientId(), k -> ConcurrentHashMap.newKeySet()).add(log.getId());
+        }
+        if (log.getIdempotencyKey() != null) {
+            overlayByKey.put(log.getIdempotencyKey(), log.getId());
+        }
+    }
+
+    // Drops the overlay entry unless a newer write to the dose is still queued; caller holds appendLock
+    private void forget(IntakeLog log, long flushedSeq) {
+        Pending newer = overlay.computeIfPresent(log.getId(), (id, p) -> p.seq() <= flushedSeq ? null : p);
+        if (newer != null) {
+            return;
+        }
+        if (log.getPatientId() != null) {
+            overlayByPatient.computeIfPresent(log.getPatientId(), (patientId, ids) -> {
+                ids.remove(log.getId());
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        if (log.getIdempotencyKey() != null) {
+            overlayByKey.remove(log.getIdempotencyKey(), log.getId());
+        }
+    }
+
+    private void drainLoop() {
+        List<IntakeWalRecord> batch = new ArrayList<>(batchSize);
+        long backoff = flushIntervalMillis;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    IntakeWalRecord first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+                flush(batch);
+                batch.clear();
+                backoff = flushIntervalMillis;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException | IOException e) {
+                // The batch is retried as is; its writes are idempotent
+                failures.increment();
+                log.warn("Intake write-behind flush of {} records failed, retrying in {} ms", batch.size(), backoff, e);
+                if (!running) {
+                    return;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, 30_000);
+            }
+        }
+    }
+
+    private void flush(List<IntakeWalRecord> batch) throws IOException {
+        long started = System.nanoTime();
+        String prefix = wal.getLogId() + ":";
+        long maxSeq = batch.get(batch.size() - 1).seq();
+
+        Map<String, Op> byDose = new LinkedHashMap<>();
+        for (IntakeWalRecord record : batch) {
+            byDose.computeIfAbsent(record.getLog().getId(), id -> new Op(record)).last = record;
+        }
+        List<Op> ops = new ArrayList<>(byDose.values());
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, IntakeLog.class);
+        for (Op op : ops) {
+            IntakeLog target = op.last.getLog();
+            op.writeId = prefix + op.last.seq();
+            if (op.create()) {
+                bulk.upsert(Query.query(Criteria.where("_id").is(target.getId())),
+                        MongoUpdates.insertOnly(mongoTemplate.getConverter(), target).setOnInsert("writeId", op.writeId));
+            } else {
+                Update update = new Update().set("status", target.getStatus()).set("writeId", op.writeId);
+                if (target.getTakenAt() != null) {
+                    update.set("takenAt", target.getTakenAt());
+                }
+                bulk.updateOne(Query.query(Criteria.where("_id").is(target.getId())
+                        .and("status").is(op.first.getPreviousStatus())), update);
+            }
+        }
+
+        BulkWriteResult result;
+        try {
+            result = bulk.execute();
+        } catch (BulkOperationException e) {
+            // Per-document rejections (such as a duplicate idempotency key) are not retried
+            result = e.getResult();
+        }
+
+        Set<String> appliedIds = appliedWriteIds(ops, result);
+        List<IntakeLog> counted = new ArrayList<>();
+        Map<IntakeLog, String> fromStatus = new IdentityHashMap<>();
+        List<IntakeLog> rejected = new ArrayList<>();
+        for (Op op : ops) {
+            IntakeLog target = op.last.getLog();
+            if (!appliedIds.contains(op.writeId)) {
+                rejected.add(target);
+            } else if (op.first.seq() > replayedUntil) {
+                counted.add(target);
+                fromStatus.put(target, op.create() ? null : op.first.getPreviousStatus());
+            }
+        }
+        if (maxSeq <= countAttemptedUntil) {
+            // A failed attempt at this batch may have counted some of it already
+            Set<String> patients = new HashSet<>();
+            for (IntakeLog log : counted) {
+                patients.add(log.getPatientId());
+            }
+            patients.remove(null);
+            patients.forEach(adherenceService::rebuild);
+        } else {
+            countAttemptedUntil = maxSeq;
+            adherenceService.recordTransitions(counted, fromStatus::get);
+        }
+        wal.checkpoint(maxSeq);
+
+        batches.increment();
+        writes.add(ops.size());
+        applied.add(appliedIds.size());
+        synchronized (appendLock) {
+            for (Op op : ops) {
+                forget(op.last.getLog(), maxSeq);
+            }
+        }
+        if (!rejected.isEmpty()) {
+            conflicts.add(rejected.size());
+            republish(rejected);
+        }
+        if (!replayedPatients.isEmpty() && maxSeq >= replayedUntil) {
+            for (String patientId : replayedPatients) {
+                adherenceService.rebuild(patientId);
+            }
+            replayedPatients.clear();
+        }
+        lastFlushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    // Upserted creates are known from the result; anything else is confirmed by its write id
+    private Set<String> appliedWriteIds(List<Op> ops, BulkWriteResult result) {
+        Set<Integer> upserted = new HashSet<>();
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            upserted.add(upsert.getIndex());
+        }
+        long updates = ops.stream().filter(op -> !op.create()).count();
+        boolean allUpdatesApplied = result.getModifiedCount() == updates;
+
+        Set<String> appliedIds = new HashSet<>();
+        List<String> unconfirmed = new ArrayList<>();
+        for (int i = 0; i < ops.size(); i++) {
+            Op op = ops.get(i);
+            if (op.create() ? upserted.contains(i) : allUpdatesApplied) {
+                appliedIds.add(op.writeId);
+            } else {
+                unconfirmed.add(op.writeId);
+            }
+        }
+        if (!unconfirmed.isEmpty()) {
+            Query query = Query.query(Criteria.where("writeId").in(unconfirmed));
+            query.fields().include("writeId");
+            for (IntakeLog stored : mongoTemplate.find(query, IntakeLog.class)) {
+                appliedIds.add(stored.getWriteId());
+            }
+        }
+        return appliedIds;
+    }
+
+    /**
+     * Writes that lost to a concurrent change were already announced when accepted,
+     * so announce what is actually stored: the current state, or a removal for a
+     * create that was never stored.
+     */
+    private void republish(List<IntakeLog> rejected) {
+        log.warn("{} buffered intake writes were superseded by concurrent changes", rejected.size());
+        Map<String, IntakeLog> stored = new HashMap<>();
+        List<String> ids = rejected.stream().map(IntakeLog::getId).toList();
+        for (IntakeLog log : mongoTemplate.find(Query.query(Criteria.where("_id").in(ids)), IntakeLog.class)) {
+            stored.put(log.getId(), log);
+        }
+        for (IntakeLog announced : rejected) {
+            IntakeLog current = stored.get(announced.getId());
+            eventPublisher.publishEvent(current == null
+                    ? IntakeLogChangedEvent.removed(announced)
+                    : IntakeLogChangedEvent.statusChanged(current, announced.getStatus()));
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.InteractionWarning;
+import com.medlink.tracker.model.Medication;
+import com.medlink.tracker.model.Patient;
+import com.medlink.tracker.model.Prescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * In-memory interaction index over the active medication catalog. Every
+ * normalised term (allergy, condition, drug name, generic name, brand, category)
+ * is interned to an int, and each medication carries two bitsets: the terms that
+ * identify it and the terms it is contraindicated with. Checking a prescription is
+ * then a handful of bitset intersections against the patient's allergies and
+ * conditions and the union of the active regimen, with pairwise detail only for
+ * medications whose bitsets actually intersect.
+ * <p>
+ * The catalog snapshot is replaced copy-on-write on every medication change and
+ * fully rebuilt on a timer so changes made through other instances are picked up.
+ */
+@Service
+public class InteractionCheckService {
+
+    private static final Logger log = LoggerFactory.getLogger(InteractionCheckService.class);
+
+    // Words that qualify a term without changing what it refers to ("Allergic to penicillin")
+    private static final Set<String> QUALIFIERS = Set.of(
+            "allergy", "allergies", "allergic", "to", "hypersensitivity", "intolerance");
+
+    private static final int MAX_BENCHMARK_ITERATIONS = 20_000;
+
+    @Autowired private MongoTemplate mongoTemplate;
+
+    private record Entry(int index, String id, String name, BitSet identity, BitSet contraindicated) {}
+
+    // terms is an immutable copy of the dictionary as of this snapshot, indexed by bit
+    private record Catalog(Map<String, Entry> byId, Map<String, Entry> byName, List<String> terms) {}
+
+    // Append-only term dictionary shared by all snapshots, so bit positions never move.
+    // terms is only touched under the instance lock; readers use the snapshot's copy.
+    private final Map<String, Integer> termIds = new ConcurrentHashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    private final Map<String, Integer> medicationIndex = new ConcurrentHashMap<>();
+
+    private volatile Catalog catalog = new Catalog(Map.of(), Map.of(), List.of());
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${interactions.refresh-ms:600000}", initialDelayString = "${interactions.refresh-ms:600000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    public synchronized Map<String, Object> rebuild() {
+        long started = System.nanoTime();
+        Map<String, Entry> byId = new HashMap<>();
+        Map<String, Entry> byName = new HashMap<>();
+        try (Stream<Medication> medications = mongoTemplate.stream(
+                Query.query(Criteria.where("active").is(true)), Medication.class)) {
+            medications.forEach(medication -> {
+                Entry entry = entryFor(medication);
+                byId.put(entry.id(), entry);
+                names(medication).forEach(name -> byName.putIfAbsent(name, entry));
+            });
+        }
+        catalog = new Catalog(byId, byName, List.copyOf(terms));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("medications", byId.size());
+        result.put("terms", terms.size());
+        result.put("durationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        log.debug("Interaction index rebuilt: {}", result);
+        return result;
+    }
+
+    // Incremental update for one created, changed or deactivated medication
+    public synchronized void upsert(Medication medication) {
+        if (medication == null || medication.getId() == null) {
+            return;
+        }
+        Catalog current = catalog;
+        Map<String, Entry> byId = new HashMap<>(current.byId());
+        Map<String, Entry> byName = new HashMap<>(current.byName());
+        Entry previous = byId.remove(medication.getId());
+        if (previous != null) {
+            byName.values().removeIf(e -> e.id().equals(previous.id()));
+        }
+        if (medication.isActive()) {
+            Entry entry = entryFor(medication);
+            byId.put(entry.id(), entry);
+            names(medication).forEach(name -> byName.putIfAbsent(name, entry));
+        }
+        catalog = new Catalog(byId, byName, List.copyOf(terms));
+    }
+
+    /**
+     * Checks a new prescription against the patient's allergies, chronic conditions
+     * and other active prescriptions.
+     */
+    public List<InteractionWarning> check(Prescription prescription) {
+        if (prescription.getMedications() == null || prescription.getMedications().isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> allergies = List.of();
+        List<String> conditions = List.of();
+        List<Prescription.PrescriptionMedication> regimen = new ArrayList<>();
+        if (prescription.getPatientId() != null) {
+            Query patientQuery = Query.query(Criteria.where("_id").is(prescription.getPatientId()));
+            patientQuery.fields().include("allergies").include("chronicConditions");
+            Patient patient = mongoTemplate.findOne(patientQuery, Patient.class);
+            if (patient != null) {
+                allergies = patient.getAllergies() != null ? patient.getAllergies() : List.of();
+                conditions = patient.getChronicConditions() != null ? patient.getChronicConditions() : List.of();
+            }
+
+            Query activeQuery = Query.query(Criteria.where("patientId").is(prescription.getPatientId())
+                    .and("status").is("ACTIVE"));
+            activeQuery.fields().include("medications");
+            for (Prescription active : mongoTemplate.find(activeQuery, Prescription.class)) {
+                if (active.getMedications() != null && !active.getId().equals(prescription.getId())) {
+                    regimen.addAll(active.getMedications());
+                }
+            }
+        }
+        return evaluate(prescription.getMedications(), regimen, allergies, conditions);
+    }
+
+    /**
+     * Pure in-memory part of the check. Medications are resolved by id, then by name;
+     * ones not in the catalog are skipped.
+     */
+    public List<InteractionWarning> evaluate(List<Prescription.PrescriptionMedication> proposed,
+                                             List<Prescription.PrescriptionMedication> regimen,
+                                             Collection<String> allergies, Collection<String> conditions) {
+        Catalog snapshot = catalog;
+        BitSet allergyBits = lookupTerms(allergies);
+        BitSet conditionBits = lookupTerms(conditions);
+
+        List<Entry> current = new ArrayList<>(regimen.size());
+        BitSet regimenMeds = new BitSet();
+        BitSet regimenIdentity = new BitSet();
+        BitSet regimenContraindicated = new BitSet();
+        for (Prescription.PrescriptionMedication med : regimen) {
+            Entry entry = resolve(snapshot, med);
+            if (entry != null && !regimenMeds.get(entry.index())) {
+                current.add(entry);
+                regimenMeds.set(entry.index());
+                regimenIdentity.or(entry.identity());
+                regimenContraindicated.or(entry.contraindicated());
+            }
+        }
+
+        List<InteractionWarning> warnings = new ArrayList<>();
+        List<Entry> added = new ArrayList<>(proposed.size());
+        for (Prescription.PrescriptionMedication med : proposed) {
+            Entry entry = resolve(snapshot, med);
+            if (entry == null) {
+                continue;
+            }
+            if (regimenMeds.get(entry.index())) {
+                warnings.add(new InteractionWarning(InteractionWarning.DUPLICATE_THERAPY,
+                        entry.id(), entry.name(), entry.name(), entry.id()));
+            }
+
+            BitSet allergyHits = (BitSet) entry.identity().clone();
+            allergyHits.or(entry.contraindicated());
+            allergyHits.and(allergyBits);
+            termWarnings(warnings, InteractionWarning.ALLERGY, snapshot, entry, allergyHits);
+
+            BitSet conditionHits = (BitSet) entry.contraindicated().clone();
+            conditionHits.and(conditionBits);
+            termWarnings(warnings, InteractionWarning.CONDITION, snapshot, entry, conditionHits);
+
+            if (entry.contraindicated().intersects(regimenIdentity) || entry.identity().intersects(regimenContraindicated)) {
+                for (Entry other : current) {
+                    if (other.index() != entry.index() && interacts(entry, other)) {
+                        warnings.add(new InteractionWarning(InteractionWarning.DRUG_INTERACTION,
+                                entry.id(), entry.name(), other.name(), other.id()));
+                    }
+                }
+            }
+            for (Entry other : added) {
+                if (other.index() != entry.index() && interacts(entry, other)) {
+                    warnings.add(new InteractionWarning(InteractionWarning.DRUG_INTERACTION,
+                            entry.id(), entry.name(), other.name(), other.id()));
+                }
+            }
+            added.add(entry);
+        }
+        return warnings;
+    }
+
+    /**
+     * Times {@link #evaluate} for a random regimen of {@code regimenSize} catalog
+     * medications plus one proposed medication, with patient terms drawn from the
+     * catalog's contraindications.
+     */
+    public Map<String, Object> benchmark(int regimenSize, int iterations) {
+        Catalog snapshot = catalog;
+        List<Entry> entries = new ArrayList<>(snapshot.byId().values());
+        if (entries.size() < 2) {
+            throw new RuntimeException("Interaction index needs at least two medications to benchmark");
+        }
+        int runs = Math.max(1, Math.min(iterations, MAX_BENCHMARK_ITERATIONS));
+        int size = Math.max(1, Math.min(regimenSize, entries.size() - 1));
+        Collections.shuffle(entries, ThreadLocalRandom.current());
+
+        List<Prescription.PrescriptionMedication> regimen = new ArrayList<>(size);
+        for (Entry entry : entries.subList(0, size)) {
+            regimen.add(reference(entry));
+        }
+        List<Prescription.PrescriptionMedication> proposed = List.of(reference(entries.get(size)));
+        List<String> known = snapshot.terms();
+        List<String> sample = known.isEmpty() ? List.of() : List.of(known.get(0), known.get(known.size() / 2));
+
+        int warnings = 0;
+        long[] nanos = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long t = System.nanoTime();
+            warnings = evaluate(proposed, regimen, sample, sample).size();
+            nanos[i] = System.nanoTime() - t;
+        }
+        Arrays.sort(nanos);
+        long sum = 0;
+        for (long n : nanos) {
+            sum += n;
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("catalogSize", entries.size());
+        result.put("regimenSize", size);
+        result.put("iterations", runs);
+        result.put("warnings", warnings);
+        result.put("avgNanos", sum / runs);
+        result.put("p50Nanos", nanos[runs / 2]);
+        result.put("p99Nanos", nanos[(int) Math.min(runs - 1, Math.ceil(runs * 0.99) - 1)]);
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Catalog snapshot = catalog;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("medications", snapshot.byId().size());
+        stats.put("names", snapshot.byName().size());
+        stats.put("terms", snapshot.terms().size());
+        return stats;
+    }
+
+    private static boolean interacts(Entry a, Entry b) {
+        return a.contraindicated().intersects(b.identity()) || b.contraindicated().intersects(a.identity());
+    }
+
+    private static void termWarnings(List<InteractionWarning> warnings, String type, Catalog snapshot,
+                                     Entry entry, BitSet hits) {
+        for (int bit = hits.nextSetBit(0); bit >= 0; bit = hits.nextSetBit(bit + 1)) {
+            warnings.add(new InteractionWarning(type, entry.id(), entry.name(), snapshot.terms().get(bit), null));
+        }
+    }
+
+    private Entry resolve(Catalog snapshot, Prescription.PrescriptionMedication med) {
+        Entry entry = med.getMedicationId() != null ? snapshot.byId().get(med.getMedicationId()) : null;
+        if (entry == null && med.getMedicationName() != null) {
+            entry = snapshot.byName().get(normalise(med.getMedicationName()));
+        }
+        return entry;
+    }
+
+    private Entry entryFor(Medication medication) {
+        int index = medicationIndex.computeIfAbsent(medication.getId(), id -> medicationIndex.size());
+        BitSet identity = new BitSet();
+        for (String name : names(medication)) {
+            identity.set(intern(name));
+        }
+        if (medication.getCategory() != null && !normalise(medication.getCategory()).isEmpty()) {
+            identity.set(intern(normalise(medication.getCategory())));
+        }
+        BitSet contraindicated = new BitSet();
+        if (medication.getContraindications() != null) {
+            for (String term : medication.getContraindications()) {
+                String normalised = normalise(term);
+                if (!normalised.isEmpty()) {
+                    contraindicated.set(intern(normalised));
+                }
+            }
+        }
+        String name = medication.getName() != null ? medication.getName() : medication.getGenericName();
+        return new Entry(index, medication.getId(), name, identity, contraindicated);
+    }
+
+    private static List<String> names(Medication medication) {
+        List<String> names = new ArrayList<>(3);
+        for (String value : new String[]{medication.getName(), medication.getGenericName(), medication.getBrand()}) {
+            String normalised = normalise(value);
+            if (!normalised.isEmpty() && !names.contains(normalised)) {
+                names.add(normalised);
+            }
+        }
+        return names;
+    }
+
+    // Only looks terms up: a term no medication mentions can never produce a warning
+    private BitSet lookupTerms(Collection<String> values) {
+        BitSet bits = new BitSet();
+        if (values == null) {
+            return bits;
+        }
+        for (String value : values) {
+            Integer id = termIds.get(normalise(value));
+            if (id != null) {
+                bits.set(id);
+            }
+        }
+        return bits;
+    }
+
+    // Callers hold the instance lock, so ids and the terms list stay in step
+    private int intern(String term) {
+        Integer id = termIds.get(term);
+        if (id == null) {
+            id = terms.size();
+            terms.add(term);
+            termIds.put(term, id);
+        }
+        return id;
+    }
+
+    private static Prescription.PrescriptionMedication reference(Entry entry) {
+        Prescription.PrescriptionMedication med = new Prescription.PrescriptionMedication();
+        med.setMedicationId(entry.id());
+        med.setMedicationName(entry.name());
+        return med;
+    }
+
+    static String normalise(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (String word : value.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if (!word.isEmpty() && !QUALIFIERS.contains(word)) {
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+                out.append(word);
+            }
+        }
+        return out.toString();
+    }
+}
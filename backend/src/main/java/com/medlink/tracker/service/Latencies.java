@@ -0,0 +1,26 @@
+package com.medlink.tracker.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Summary of benchmark timings shared by the benchmark endpoints
+final class Latencies {
+
+    private Latencies() {}
+
+    // avg, p50 and p95 of the given nanosecond timings, in microseconds
+    static Map<String, Object> micros(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (long n : sorted) {
+            sum += n;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("avg", sum / sorted.length / 1000);
+        result.put("p50", sorted[sorted.length / 2] / 1000);
+        result.put("p95", sorted[(int) Math.min(sorted.length - 1, Math.ceil(sorted.length * 0.95) - 1)] / 1000);
+        return result;
+    }
+}
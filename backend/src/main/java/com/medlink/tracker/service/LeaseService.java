@@ -0,0 +1,92 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.Lease;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Mongo-backed leases that let several backend instances split background work.
+ * A lease is taken or renewed with a single findAndModify that only matches when
+ * the lease is free, expired, or already ours; losing the upsert race on _id means
+ * another instance holds it.
+ */
+@Service
+public class LeaseService {
+
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName()
+            + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    @Autowired private MongoTemplate mongoTemplate;
+
+    public boolean tryAcquire(String leaseId, Duration ttl) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("_id").is(leaseId).orOperator(
+                Criteria.where("owner").is(instanceId),
+                Criteria.where("expiresAt").lt(now)
+        ));
+        Update update = new Update()
+                .set("owner", instanceId)
+                .set("expiresAt", now.plus(ttl))
+                .set("acquiredAt", now);
+        try {
+            Lease lease = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), Lease.class);
+            return lease != null && instanceId.equals(lease.getOwner());
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    public void release(String leaseId) {
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(leaseId).and("owner").is(instanceId)), Lease.class);
+    }
+
+    /**
+     * Records this instance as a live member of {@code group} until {@code ttl} from
+     * now and returns how many members are live, this one included. Members that
+     * stopped heartbeating are dropped once they have been expired for a further ttl.
+     */
+    public int heartbeat(String group, Duration ttl) {
+        LocalDateTime now = LocalDateTime.now();
+        String prefix = "^" + Pattern.quote("member:" + group + ":");
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is("member:" + group + ":" + instanceId)),
+                new Update().set("owner", instanceId).set("expiresAt", now.plus(ttl)).setOnInsert("acquiredAt", now),
+                Lease.class);
+        mongoTemplate.remove(Query.query(Criteria.where("_id").regex(prefix)
+                .and("expiresAt").lt(now.minus(ttl))), Lease.class);
+        long live = mongoTemplate.count(Query.query(Criteria.where("_id").regex(prefix)
+                .and("expiresAt").gt(now)), Lease.class);
+        return (int) Math.max(1, live);
+    }
+
+    // Ids of unexpired leases starting with {@code prefix} that this instance holds
+    public Set<String> findOwned(String prefix) {
+        Query query = Query.query(Criteria.where("_id").regex("^" + Pattern.quote(prefix))
+                .and("owner").is(instanceId)
+                .and("expiresAt").gt(LocalDateTime.now()));
+        query.fields().include("_id");
+        Set<String> owned = new HashSet<>();
+        for (Lease lease : mongoTemplate.find(query, Lease.class)) {
+            owned.add(lease.getId());
+        }
+        return owned;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+}
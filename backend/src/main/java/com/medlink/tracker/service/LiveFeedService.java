@@ -0,0 +1,375 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.event.IntakeLogChangedEvent;
+import com.medlink.tracker.event.IntakeStatusBulkChangedEvent;
+import com.medlink.tracker.event.PrescriptionChangedEvent;
+import com.medlink.tracker.exception.ServiceBusyException;
+import com.medlink.tracker.model.DoctorPatient;
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.model.Prescription;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes intake and prescription changes to connected dashboards over Server-Sent
+ * Events. A patient subscription receives its own changes; a doctor subscription
+ * receives changes for every patient on the doctor's roster plus the doctor's own
+ * prescriptions. Subscribers are indexed by patient id so routing an event is a
+ * map lookup. Each subscriber has its own bounded outbox drained by at most one
+ * dispatch thread at a time, which keeps per-client order while a slow client only
+ * stalls itself; a client whose outbox fills is disconnected and reloads on reconnect.
+ * <p>
+ * Events come from the in-process bus. With {@code live.change-streams.enabled}
+ * the inserts and updates are taken from {@link ChangeStreamFeedSource} instead,
+ * so writes made by other instances reach this instance's clients too.
+ */
+@Service
+public class LiveFeedService {
+
+    private static final String PATIENT = "patient";
+    private static final String DOCTOR = "doctor";
+
+    @Autowired private MongoTemplate mongoTemplate;
+
+    @Value("${live.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${live.heartbeat-seconds:25}")
+    private long heartbeatSeconds;
+
+    @Value("${live.max-subscribers:5000}")
+    private int maxSubscribers;
+
+    @Value("${live.dispatch-threads:4}")
+    private int dispatchThreads;
+
+    @Value("${live.subscriber-queue-capacity:256}")
+    private int subscriberQueueCapacity;
+
+    @Value("${live.retry-after-seconds:30}")
+    private int retryAfterSeconds;
+
+    @Value("${live.change-streams.enabled:false}")
+    private boolean changeStreamsEnabled;
+
+    private static final class Subscriber {
+        final String scope;
+        final String ownerId;
+        final Set<String> patientIds;
+        final SseEmitter emitter;
+        final BlockingQueue<SseEmitter.SseEventBuilder> outbox;
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(String scope, String ownerId, Set<String> patientIds, SseEmitter emitter, int capacity) {
+            this.scope = scope;
+            this.ownerId = ownerId;
+            this.patientIds = patientIds;
+            this.emitter = emitter;
+            this.outbox = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<Subscriber>> byPatient = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscriber>> byDoctor = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private ThreadPoolExecutor dispatcher;
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        // At most one queued drain per subscriber, so the task queue is bounded by max-subscribers
+        dispatcher = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "live-feed-dispatch-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "live-feed-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+        dispatcher.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    public SseEmitter subscribePatient(String patientId) {
+        return subscribe(PATIENT, patientId, Set.of(patientId));
+    }
+
+    public SseEmitter subscribeDoctor(String doctorId) {
+        return subscribe(DOCTOR, doctorId, resolveRoster(doctorId));
+    }
+
+    /**
+     * Routes an intake change to the patient's and the roster doctors' streams.
+     * {@code action} is one of created, statusChanged or removed.
+     */
+    public void publishIntake(IntakeLog log, String action, String previousStatus) {
+        if (log == null || log.getPatientId() == null) {
+            return;
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("action", action);
+        data.put("previousStatus", previousStatus);
+        data.put("log", log);
+        dispatch(route(log.getPatientId(), null), "intake", data);
+    }
+
+    public void publishPrescription(Prescription prescription, String action, String previousStatus) {
+        if (prescription == null) {
+            return;
+        }
+        String patientId = prescription.getPatientId();
+        String doctorId = prescription.getDoctorId();
+        if ("created".equals(action) && patientId != null && doctorId != null) {
+            addToRoster(doctorId, patientId);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("action", action);
+        data.put("previousStatus", previousStatus);
+        data.put("prescription", prescription);
+        dispatch(route(patientId, doctorId), "prescription", data);
+    }
+
+    @EventListener
+    public void onIntakeLogChanged(IntakeLogChangedEvent event) {
+        // Change streams carry no patient id for deletes, so removals always come from the local bus
+        if (changeStreamsEnabled && !event.isRemoved()) {
+            return;
+        }
+        String action = event.isRemoved() ? "removed" : event.getPreviousStatus() == null ? "created" : "statusChanged";
+        publishIntake(event.getLog(), action, event.getPreviousStatus());
+    }
+
+    @EventListener
+    public void onPrescriptionChanged(PrescriptionChangedEvent event) {
+        if (changeStreamsEnabled && !event.isRemoved()) {
+            return;
+        }
+        String action = event.isRemoved() ? "removed" : event.getPreviousStatus() == null ? "created" : "statusChanged";
+        publishPrescription(event.getPrescription(), action, event.getPreviousStatus());
+    }
+
+    // One summary per patient instead of one event per swept dose
+    @EventListener
+    public void onIntakeStatusBulkChanged(IntakeStatusBulkChangedEvent event) {
+        if (changeStreamsEnabled) {
+            return;
+        }
+        event.getCounts().forEach((patientId, byDate) -> {
+            Map<String, Long> dates = new TreeMap<>();
+            byDate.forEach((date, count) -> dates.put(date.toString(), count));
+            Map<String, Object> data = new HashMap<>();
+            data.put("action", "bulkStatusChanged");
+            data.put("patientId", patientId);
+            data.put("previousStatus", event.getFromStatus());
+            data.put("status", event.getToStatus());
+            data.put("dates", dates);
+            dispatch(route(patientId, null), "intake", data);
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        long patients = subscribers.stream().filter(s -> PATIENT.equals(s.scope)).count();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("subscribers", subscribers.size());
+        stats.put("patientSubscribers", patients);
+        stats.put("doctorSubscribers", subscribers.size() - patients);
+        stats.put("routedPatients", byPatient.size());
+        stats.put("opened", opened.sum());
+        stats.put("closed", closed.sum());
+        stats.put("published", published.sum());
+        stats.put("sent", sent.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("dispatchQueued", subscribers.stream().mapToInt(s -> s.outbox.size()).sum());
+        stats.put("source", changeStreamsEnabled ? "change-stream" : "local");
+        return stats;
+    }
+
+    private SseEmitter subscribe(String scope, String ownerId, Set<String> patientIds) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ServiceBusyException("Too many live feed connections, retry later", retryAfterSeconds);
+        }
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(scope, ownerId, ConcurrentHashMap.newKeySet(), emitter,
+                Math.max(1, subscriberQueueCapacity));
+        subscriber.patientIds.addAll(patientIds);
+
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(() -> unregister(subscriber));
+        emitter.onError(e -> unregister(subscriber));
+
+        subscribers.add(subscriber);
+        for (String patientId : subscriber.patientIds) {
+            byPatient.computeIfAbsent(patientId, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        if (DOCTOR.equals(scope)) {
+            byDoctor.computeIfAbsent(ownerId, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        opened.increment();
+
+        // Clients reload their views on "ready", which also covers anything missed while reconnecting
+        Map<String, Object> ready = new HashMap<>();
+        ready.put("scope", scope);
+        ready.put("id", ownerId);
+        ready.put("patients", subscriber.patientIds.size());
+        ready.put("connectedAt", LocalDateTime.now().toString());
+        dispatch(List.of(subscriber), "ready", ready);
+        return emitter;
+    }
+
+    private void unregister(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        for (String patientId : subscriber.patientIds) {
+            removeFrom(byPatient, patientId, subscriber);
+        }
+        if (DOCTOR.equals(subscriber.scope)) {
+            removeFrom(byDoctor, subscriber.ownerId, subscriber);
+        }
+        closed.increment();
+    }
+
+    private static void removeFrom(Map<String, Set<Subscriber>> index, String key, Subscriber subscriber) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    // Roster: patients assigned to the doctor or holding one of the doctor's prescriptions
+    private Set<String> resolveRoster(String doctorId) {
+        Set<String> roster = new HashSet<>();
+        roster.addAll(mongoTemplate.findDistinct(Query.query(Criteria.where("doctorId").is(doctorId)),
+                "patientId", DoctorPatient.class, String.class));
+        roster.addAll(mongoTemplate.findDistinct(Query.query(Criteria.where("doctorId").is(doctorId)),
+                "patientId", Prescription.class, String.class));
+        roster.remove(null);
+        return roster;
+    }
+
+    private void addToRoster(String doctorId, String patientId) {
+        Set<Subscriber> doctors = byDoctor.get(doctorId);
+        if (doctors == null) {
+            return;
+        }
+        for (Subscriber subscriber : doctors) {
+            if (subscriber.patientIds.add(patientId)) {
+                byPatient.computeIfAbsent(patientId, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+            }
+        }
+    }
+
+    private Collection<Subscriber> route(String patientId, String doctorId) {
+        Set<Subscriber> targets = new HashSet<>();
+        if (patientId != null) {
+            targets.addAll(byPatient.getOrDefault(patientId, Set.of()));
+        }
+        if (doctorId != null) {
+            targets.addAll(byDoctor.getOrDefault(doctorId, Set.of()));
+        }
+        return targets;
+    }
+
+    private void dispatch(Collection<Subscriber> targets, String name, Object data) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        published.increment();
+        String id = Long.toString(sequence.incrementAndGet());
+        for (Subscriber subscriber : targets) {
+            enqueue(subscriber, SseEmitter.event().id(id).name(name).data(data, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    private void sendHeartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            enqueue(subscriber, SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (!subscriber.outbox.offer(event)) {
+            // Too far behind to catch up event by event; the client reloads on "ready" after reconnecting
+            dropped.add(subscriber.outbox.size() + 1L);
+            unregister(subscriber);
+            subscriber.outbox.clear();
+            subscriber.emitter.complete();
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.outbox.poll()) != null) {
+                if (!send(subscriber, event)) {
+                    subscriber.outbox.clear();
+                    break;
+                }
+            }
+            subscriber.draining.set(false);
+            // An event offered after the last poll but before the flag was cleared found us still draining
+            if (subscriber.outbox.isEmpty() || !subscriber.draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private boolean send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            subscriber.emitter.send(event);
+            sent.increment();
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            unregister(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
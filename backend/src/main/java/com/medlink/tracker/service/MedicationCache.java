@@ -0,0 +1,255 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.CatalogStamp;
+import com.medlink.tracker.model.Medication;
+import com.medlink.tracker.repository.MedicationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of medication documents by id and of the active catalog list.
+ * Writes made here replace the cached copy and bump a shared stamp in
+ * catalog_stamps; an instance whose entries were loaded under another stamp drops
+ * them all, so writes through other instances are seen within
+ * {@code medications.cache.stamp-check-ms}. Cached documents are shared: callers
+ * that modify one must load it from the repository instead.
+ */
+@Service
+public class MedicationCache {
+
+    static final String STAMP_ID = "medications";
+    private static final long UNKNOWN = -1;
+
+    @Autowired private MedicationRepository medicationRepository;
+    @Autowired private MongoTemplate mongoTemplate;
+
+    @Value("${medications.cache.max-size:5000}")
+    private int maxSize;
+
+    @Value("${medications.cache.stamp-check-ms:5000}")
+    private long stampCheckMillis;
+
+    private final Map<String, Medication> byId = new ConcurrentHashMap<>();
+    private volatile List<Medication> active;
+
+    // Bumped before every invalidation; a load that started under an older generation is not kept
+    private final AtomicLong generation = new AtomicLong();
+    private long knownStamp = UNKNOWN;
+    private volatile long stampCheckedAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final AtomicLong maxLoadNanos = new AtomicLong();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder staleFlushes = new LongAdder();
+
+    public Optional<Medication> get(String id) {
+        checkStamp();
+        Medication cached = byId.get(id);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        long started = System.nanoTime();
+        Optional<Medication> loaded = medicationRepository.findById(id);
+        recordLoad(started);
+        loaded.ifPresent(medication -> store(medication, loadGeneration));
+        return loaded;
+    }
+
+    /** Medications found among {@code ids}; the ones not cached are loaded in one query. */
+    public Map<String, Medication> getAll(Collection<String> ids) {
+        checkStamp();
+        Map<String, Medication> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            Medication cached = byId.get(id);
+            if (cached != null) {
+                hits.increment();
+                found.put(id, cached);
+            } else {
+                misses.increment();
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long loadGeneration = generation.get();
+            long started = System.nanoTime();
+            for (Medication medication : medicationRepository.findAllById(missing)) {
+                found.put(medication.getId(), medication);
+                store(medication, loadGeneration);
+            }
+            recordLoad(started);
+        }
+        return found;
+    }
+
+    public List<Medication> getActive() {
+        checkStamp();
+        List<Medication> cached = active;
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        long started = System.nanoTime();
+        List<Medication> loaded = List.copyOf(medicationRepository.findByActiveTrue());
+        recordLoad(started);
+        if (maxSize > 0) {
+            active = loaded;
+            if (generation.get() != loadGeneration) {
+                active = null;
+            }
+            for (Medication medication : loaded) {
+                if (byId.size() >= maxSize) {
+                    break;
+                }
+                store(medication, loadGeneration);
+            }
+        }
+        return loaded;
+    }
+
+    /** Replaces the cached copy after a write through this instance and tells the others. */
+    public void refresh(Medication saved) {
+        generation.incrementAndGet();
+        byId.remove(saved.getId());
+        active = null;
+        invalidations.increment();
+
+        long stamp = bumpStamp();
+        synchronized (this) {
+            // Anything but our own increment means another instance wrote in between
+            if (knownStamp != UNKNOWN && stamp != knownStamp + 1) {
+                flush();
+            }
+            knownStamp = stamp;
+        }
+        store(saved, generation.get());
+    }
+
+    /** Drops everything after a bulk change, here and, through the stamp, on other instances. */
+    public void invalidateAll() {
+        flush();
+        invalidations.increment();
+        long stamp = bumpStamp();
+        synchronized (this) {
+            knownStamp = stamp;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long loadCount = loads.sum();
+        List<Medication> cachedActive = active;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", byId.size());
+        stats.put("maxSize", maxSize);
+        stats.put("activeListCached", cachedActive != null);
+        stats.put("activeListSize", cachedActive != null ? cachedActive.size() : 0);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0
+                : Math.round(hitCount * 1000.0 / (hitCount + missCount)) / 1000.0);
+        stats.put("loads", loadCount);
+        stats.put("avgLoadMicros", loadCount == 0 ? 0 : loadNanos.sum() / loadCount / 1000);
+        stats.put("maxLoadMicros", maxLoadNanos.get() / 1000);
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("staleFlushes", staleFlushes.sum());
+        synchronized (this) {
+            stats.put("stamp", knownStamp);
+        }
+        stats.put("stampCheckMs", stampCheckMillis);
+        return stats;
+    }
+
+    private void checkStamp() {
+        long now = System.currentTimeMillis();
+        if (now - stampCheckedAt < stampCheckMillis) {
+            return;
+        }
+        stampCheckedAt = now;
+        CatalogStamp current = mongoTemplate.findById(STAMP_ID, CatalogStamp.class);
+        long stamp = current != null ? current.getStamp() : 0;
+        synchronized (this) {
+            if (stamp != knownStamp) {
+                if (knownStamp != UNKNOWN) {
+                    staleFlushes.increment();
+                }
+                flush();
+                knownStamp = stamp;
+            }
+        }
+    }
+
+    private long bumpStamp() {
+        Query query = Query.query(Criteria.where("_id").is(STAMP_ID));
+        Update update = new Update().inc("stamp", 1).set("updatedAt", LocalDateTime.now());
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        try {
+            return mongoTemplate.findAndModify(query, update, options, CatalogStamp.class).getStamp();
+        } catch (DuplicateKeyException e) {
+            // Two instances created the stamp document at once; it exists now
+            return mongoTemplate.findAndModify(query, update, options, CatalogStamp.class).getStamp();
+        }
+    }
+
+    private void store(Medication medication, long loadGeneration) {
+        if (maxSize <= 0 || medication.getId() == null) {
+            return;
+        }
+        if (byId.size() >= maxSize) {
+            makeRoom();
+        }
+        byId.put(medication.getId(), medication);
+        if (generation.get() != loadGeneration) {
+            byId.remove(medication.getId(), medication);
+        }
+    }
+
+    private void flush() {
+        generation.incrementAndGet();
+        byId.clear();
+        active = null;
+    }
+
+    private void makeRoom() {
+        int excess = byId.size() - maxSize + Math.max(1, maxSize / 16);
+        Iterator<String> it = byId.keySet().iterator();
+        while (excess > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+            excess--;
+        }
+    }
+
+    private void recordLoad(long started) {
+        long elapsed = System.nanoTime() - started;
+        loads.increment();
+        loadNanos.add(elapsed);
+        maxLoadNanos.accumulateAndGet(elapsed, Math::max);
+    }
+}
@@ -0,0 +1,494 @@
+package com.medlink.tracker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medlink.tracker.exception.ServiceBusyException;
+import com.medlink.tracker.model.Medication;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Loads formulary dumps into the medication catalog. The body is read as a stream
+ * of CSV records (header row naming Medication properties) or JSON lines; chunks of
+ * {@code medications.import.batch-size} rows are parsed, validated and normalised on
+ * a worker pool while the request thread writes finished chunks, in file order, as
+ * one unordered bulk upsert each. At most parallelism + 1 chunks are held at once.
+ * <p>
+ * Rows are keyed by normalised name, generic name and strength (catalogKey): a
+ * repeated key within a chunk keeps the last row, and a key already in the catalog
+ * is updated in place rather than inserted again.
+ */
+@Service
+public class MedicationImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(MedicationImportService.class);
+
+    public static final String CSV = "csv";
+    public static final String JSON_LINES = "jsonl";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SPACE_BEFORE_UNIT = Pattern.compile("(?<=\\d)\\s+(?=[a-z%])");
+    private static final Pattern LIST_SEPARATOR = Pattern.compile("[;|]");
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private MedicationCache medicationCache;
+    @Autowired private MedicationSearchIndex medicationSearchIndex;
+    @Autowired private InteractionCheckService interactionCheckService;
+
+    @Value("${medications.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${medications.import.parallelism:2}")
+    private int parallelism;
+
+    @Value("${medications.import.max-errors:100}")
+    private int maxErrors;
+
+    private ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean();
+    // The running import while there is one, otherwise the last finished one
+    private volatile Map<String, Object> progress = Map.of("running", false);
+
+    private static final class Row {
+        final long line;
+        final String json;
+        final List<String> cells;
+        Medication medication;
+        String key;
+        String error;
+
+        Row(long line, String json, List<String> cells) {
+            this.line = line;
+            this.json = json;
+            this.cells = cells;
+        }
+    }
+
+    private interface RowSource {
+        Row next() throws IOException;
+    }
+
+    private static final class Counts {
+        final String format;
+        final long started = System.nanoTime();
+        long rows;
+        long inserted;
+        long updated;
+        long duplicates;
+        long invalid;
+        long failed;
+        long batches;
+        final List<Map<String, Object>> errors = new ArrayList<>();
+
+        Counts(String format) {
+            this.format = format;
+        }
+
+        void error(long line, String message, int maxErrors) {
+            if (errors.size() < maxErrors) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("line", line);
+                error.put("error", message);
+                errors.add(error);
+            }
+        }
+
+        Map<String, Object> snapshot(boolean running) {
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            Map<String, Object> result = new HashMap<>();
+            result.put("running", running);
+            result.put("format", format);
+            result.put("rows", rows);
+            result.put("inserted", inserted);
+            result.put("updated", updated);
+            result.put("duplicates", duplicates);
+            result.put("invalid", invalid);
+            result.put("failed", failed);
+            result.put("batches", batches);
+            result.put("errors", List.copyOf(errors));
+            result.put("elapsedMs", elapsedMs);
+            result.put("rowsPerSecond", elapsedMs == 0 ? rows : rows * 1000 / elapsedMs);
+            return result;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, "medication-import-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+
+    public Map<String, Object> importCatalog(InputStream body, String format) throws IOException {
+        String kind = format == null ? JSON_LINES : format.toLowerCase(Locale.ROOT);
+        if (!CSV.equals(kind) && !JSON_LINES.equals(kind)) {
+            throw new RuntimeException("Unsupported import format: " + format + " (use csv or jsonl)");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new ServiceBusyException("A medication import is already running", 30);
+        }
+        Counts counts = new Counts(kind);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            progress = counts.snapshot(true);
+            RowSource source = CSV.equals(kind) ? csvRows(reader) : jsonRows(reader);
+            Map<String, Integer> columns = CSV.equals(kind) ? header(source.next()) : Map.of();
+
+            Deque<Future<List<Row>>> inFlight = new ArrayDeque<>();
+            List<Row> chunk;
+            while (!(chunk = readChunk(source)).isEmpty()) {
+                counts.rows += chunk.size();
+                List<Row> rows = chunk;
+                inFlight.add(workers.submit(() -> {
+                    rows.forEach(row -> prepare(row, columns));
+                    return rows;
+                }));
+                if (inFlight.size() > parallelism) {
+                    write(await(inFlight.poll()), counts);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                write(await(inFlight.poll()), counts);
+            }
+        } finally {
+            if (counts.inserted + counts.updated > 0) {
+                medicationCache.invalidateAll();
+                medicationSearchIndex.rebuild();
+                interactionCheckService.rebuild();
+            }
+            progress = counts.snapshot(false);
+            running.set(false);
+        }
+        Map<String, Object> result = progress;
+        log.info("Medication import finished: {} rows, {} inserted, {} updated, {} invalid in {} ms",
+                result.get("rows"), result.get("inserted"), result.get("updated"),
+                result.get("invalid"), result.get("elapsedMs"));
+        return result;
+    }
+
+    public Map<String, Object> getProgress() {
+        return progress;
+    }
+
+    // Entries written before catalogKey existed would otherwise be imported a second time
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCatalogKeys() {
+        Query query = Query.query(Criteria.where("catalogKey").exists(false));
+        query.fields().include("_id").include("name").include("genericName").include("strength");
+        long updated = 0;
+        List<Medication> page = new ArrayList<>();
+        try (Stream<Medication> medications = mongoTemplate.stream(query, Medication.class)) {
+            Iterator<Medication> it = medications.iterator();
+            while (it.hasNext()) {
+                page.add(it.next());
+                if (page.size() == batchSize || !it.hasNext()) {
+                    BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Medication.class);
+                    for (Medication medication : page) {
+                        bulk.updateOne(Query.query(Criteria.where("_id").is(medication.getId())),
+                                new Update().set("catalogKey", catalogKey(medication)).inc("version", 1));
+                    }
+                    updated += bulk.execute().getModifiedCount();
+                    page.clear();
+                }
+            }
+        }
+        if (updated > 0) {
+            log.info("Set catalogKey on {} medications", updated);
+        }
+    }
+
+    public static String catalogKey(Medication medication) {
+        return MedicationSearchIndex.normalise(medication.getName())
+                + "|" + MedicationSearchIndex.normalise(medication.getGenericName())
+                + "|" + MedicationSearchIndex.normalise(medication.getStrength()).replace(" ", "");
+    }
+
+    private List<Row> readChunk(RowSource source) throws IOException {
+        List<Row> chunk = new ArrayList<>(batchSize);
+        Row row;
+        while (chunk.size() < batchSize && (row = source.next()) != null) {
+            chunk.add(row);
+        }
+        return chunk;
+    }
+
+    private static List<Row> await(Future<List<Row>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import worker failed", e.getCause());
+        }
+    }
+
+    private void prepare(Row row, Map<String, Integer> columns) {
+        try {
+            Medication medication = row.json != null
+                    ? objectMapper.readValue(row.json, Medication.class)
+                    : fromCells(row.cells, columns);
+            normalise(medication);
+            if (medication.getName() == null) {
+                row.error = "name is required";
+                return;
+            }
+            row.medication = medication;
+            row.key = catalogKey(medication);
+        } catch (IOException | RuntimeException e) {
+            row.error = e.getMessage();
+        }
+    }
+
+    private void write(List<Row> rows, Counts counts) {
+        Map<String, Row> unique = new LinkedHashMap<>();
+        for (Row row : rows) {
+            if (row.error != null) {
+                counts.invalid++;
+                counts.error(row.line, row.error, maxErrors);
+            } else if (unique.put(row.key, row) != null) {
+                counts.duplicates++;
+            }
+        }
+        if (!unique.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Medication.class);
+            LocalDateTime now = LocalDateTime.now();
+            for (Row row : unique.values()) {
+                bulk.upsert(Query.query(Criteria.where("catalogKey").is(row.key)), upsertFor(row.medication, row.key, now));
+            }
+            BulkWriteResult result;
+            try {
+                result = bulk.execute();
+            } catch (BulkOperationException e) {
+                result = e.getResult();
+                List<Row> written = new ArrayList<>(unique.values());
+                for (BulkWriteError error : e.getErrors()) {
+                    counts.failed++;
+                    counts.error(written.get(error.getIndex()).line, error.getMessage(), maxErrors);
+                }
+            }
+            counts.inserted += result.getUpserts().size();
+            counts.updated += result.getMatchedCount();
+        }
+        counts.batches++;
+        progress = counts.snapshot(true);
+    }
+
+    private static Update upsertFor(Medication medication, String key, LocalDateTime now) {
+        Update update = new Update()
+                .set("catalogKey", key)
+                .set("name", medication.getName())
+                .set("requiresPrescription", medication.isRequiresPrescription())
+                // A re-import must not re-activate a drug that was deactivated by hand
+                .setOnInsert("active", true)
+                .setOnInsert("createdAt", now)
+                .inc("version", 1);
+        setIfPresent(update, "genericName", medication.getGenericName());
+        setIfPresent(update, "brand", medication.getBrand());
+        setIfPresent(update, "category", medication.getCategory());
+        setIfPresent(update, "dosageForm", medication.getDosageForm());
+        setIfPresent(update, "strength", medication.getStrength());
+        setIfPresent(update, "manufacturer", medication.getManufacturer());
+        setIfPresent(update, "sideEffects", medication.getSideEffects());
+        setIfPresent(update, "contraindications", medication.getContraindications());
+        setIfPresent(update, "storageInstructions", medication.getStorageInstructions());
+        setIfPresent(update, "description", medication.getDescription());
+        return update;
+    }
+
+    private static void setIfPresent(Update update, String field, Object value) {
+        if (value != null) {
+            update.set(field, value);
+        }
+    }
+
+    private static Medication fromCells(List<String> cells, Map<String, Integer> columns) {
+        Medication medication = new Medication();
+        columns.forEach((column, index) -> {
+            String value = index < cells.size() ? cells.get(index) : null;
+            if (value == null || value.isBlank()) {
+                return;
+            }
+            switch (column) {
+                case "name" -> medication.setName(value);
+                case "genericname" -> medication.setGenericName(value);
+                case "brand" -> medication.setBrand(value);
+                case "category" -> medication.setCategory(value);
+                case "dosageform" -> medication.setDosageForm(value);
+                case "strength" -> medication.setStrength(value);
+                case "manufacturer" -> medication.setManufacturer(value);
+                case "sideeffects" -> medication.setSideEffects(splitList(value));
+                case "contraindications" -> medication.setContraindications(splitList(value));
+                case "storageinstructions" -> medication.setStorageInstructions(value);
+                case "description" -> medication.setDescription(value);
+                case "requiresprescription" -> medication.setRequiresPrescription(parseFlag(value));
+                default -> { }
+            }
+        });
+        return medication;
+    }
+
+    private static void normalise(Medication medication) {
+        medication.setName(clean(medication.getName()));
+        medication.setGenericName(clean(medication.getGenericName()));
+        medication.setBrand(clean(medication.getBrand()));
+        medication.setCategory(clean(medication.getCategory()));
+        medication.setDosageForm(clean(medication.getDosageForm()));
+        medication.setManufacturer(clean(medication.getManufacturer()));
+        medication.setStorageInstructions(clean(medication.getStorageInstructions()));
+        medication.setDescription(clean(medication.getDescription()));
+        medication.setSideEffects(cleanList(medication.getSideEffects()));
+        medication.setContraindications(cleanList(medication.getContraindications()));
+        // "500 MG" and "500mg" are the same strength
+        String strength = clean(medication.getStrength());
+        medication.setStrength(strength == null ? null
+                : SPACE_BEFORE_UNIT.matcher(strength.toLowerCase(Locale.ROOT)).replaceAll(""));
+    }
+
+    private static String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+        String cleaned = WHITESPACE.matcher(value).replaceAll(" ").trim();
+        return cleaned.isEmpty() ? null : cleaned;
+    }
+
+    private static List<String> cleanList(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        List<String> cleaned = values.stream().map(MedicationImportService::clean).filter(Objects::nonNull).toList();
+        return cleaned.isEmpty() ? null : cleaned;
+    }
+
+    private static List<String> splitList(String value) {
+        return Arrays.asList(LIST_SEPARATOR.split(value));
+    }
+
+    private static boolean parseFlag(String value) {
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "true", "yes", "y", "1", "rx" -> true;
+            case "false", "no", "n", "0", "otc" -> false;
+            default -> throw new IllegalArgumentException("requiresPrescription must be true or false: " + value);
+        };
+    }
+
+    // Header cells name Medication properties; case, spaces and underscores are ignored
+    private static Map<String, Integer> header(Row row) {
+        if (row == null) {
+            throw new RuntimeException("CSV import has no header row");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < row.cells.size(); i++) {
+            String column = row.cells.get(i).replace("\uFEFF", "").toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+            columns.putIfAbsent(column, i);
+        }
+        if (!columns.containsKey("name")) {
+            throw new RuntimeException("CSV header must include a name column");
+        }
+        return columns;
+    }
+
+    private static RowSource jsonRows(BufferedReader reader) {
+        long[] line = {0};
+        return () -> {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line[0]++;
+                if (!text.isBlank()) {
+                    return new Row(line[0], text, null);
+                }
+            }
+            return null;
+        };
+    }
+
+    // RFC 4180 records: quoted cells may hold commas, doubled quotes and line breaks
+    private static RowSource csvRows(BufferedReader reader) {
+        long[] line = {1};
+        return () -> {
+            while (true) {
+                long start = line[0];
+                List<String> cells = new ArrayList<>();
+                StringBuilder cell = new StringBuilder();
+                boolean quoted = false;
+                boolean read = false;
+                int c;
+                while ((c = reader.read()) != -1) {
+                    read = true;
+                    if (quoted) {
+                        if (c == '"') {
+                            reader.mark(1);
+                            int next = reader.read();
+                            if (next == '"') {
+                                cell.append('"');
+                            } else {
+                                quoted = false;
+                                if (next != -1) {
+                                    reader.reset();
+                                }
+                            }
+                        } else {
+                            if (c == '\n') {
+                                line[0]++;
+                            }
+                            cell.append((char) c);
+                        }
+                    } else if (c == '"') {
+                        quoted = true;
+                    } else if (c == ',') {
+                        cells.add(cell.toString());
+                        cell.setLength(0);
+                    } else if (c == '\n') {
+                        line[0]++;
+                        break;
+                    } else if (c != '\r') {
+                        cell.append((char) c);
+                    }
+                }
+                if (!read) {
+                    return null;
+                }
+                cells.add(cell.toString());
+                if (cells.size() > 1 || !cells.get(0).isBlank()) {
+                    return new Row(start, null, cells);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,623 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.Medication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Typeahead index over the name, generic name and brand of active medications.
+ * The base snapshot keeps every word-start suffix of those fields in sorted arrays,
+ * one per field for whole values and one for later words, so prefix and word-prefix
+ * matches are a binary search plus a short scan of each, and trigram postings for
+ * infix matches of three or more characters. Matches are
+ * ranked exact, prefix, word prefix, infix, then by field (name first) and length.
+ * <p>
+ * The same trigram postings drive the typo-tolerant lookup: entries sharing the
+ * most trigrams with the query are checked with a bounded Damerau-Levenshtein
+ * distance against each field and each word of it.
+ * <p>
+ * Creates and deactivations land in a small delta that is scanned linearly and
+ * folded into a new base once it grows past {@code medications.search.max-delta},
+ * or on the periodic rebuild that also picks up other instances' changes.
+ */
+@Service
+public class MedicationSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(MedicationSearchIndex.class);
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9]+");
+
+    static final int FIELDS = 3;
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int INFIX = 3;
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+    // Candidates examined per requested result before the scan stops
+    private static final int SCAN_FACTOR = 16;
+    // Key run holding suffixes that start at a later word; runs 0..FIELDS-1 hold whole field values
+    private static final int WORD_RUN = FIELDS;
+    private static final int MAX_BENCHMARK_CATALOG = 50_000;
+    private static final int MAX_BENCHMARK_ITERATIONS = 10_000;
+
+    @Autowired private MongoTemplate mongoTemplate;
+
+    @Value("${medications.search.max-delta:1024}")
+    private int maxDelta;
+
+    @Value("${medications.search.max-limit:50}")
+    private int maxLimit;
+
+    // fields: normalised name, generic name, brand; any may be null
+    record Entry(String id, String name, String[] fields) {}
+
+    static final class Snapshot {
+        static final Snapshot EMPTY = build(List.of());
+
+        final Entry[] entries;
+        // Indexed by run: one sorted key array per field, then WORD_RUN
+        final String[][] prefixKeys;
+        final int[][] prefixEntries;
+        final Map<String, int[]> trigrams;
+
+        private Snapshot(Entry[] entries, String[][] prefixKeys, int[][] prefixEntries, Map<String, int[]> trigrams) {
+            this.entries = entries;
+            this.prefixKeys = prefixKeys;
+            this.prefixEntries = prefixEntries;
+            this.trigrams = trigrams;
+        }
+
+        static Snapshot build(Collection<Entry> source) {
+            Entry[] entries = source.toArray(new Entry[0]);
+            List<List<Map.Entry<String, Integer>>> runs = new ArrayList<>();
+            for (int run = 0; run <= WORD_RUN; run++) {
+                runs.add(new ArrayList<>());
+            }
+            Map<String, List<Integer>> postings = new HashMap<>();
+            for (int i = 0; i < entries.length; i++) {
+                Set<String> grams = new HashSet<>();
+                for (int f = 0; f < FIELDS; f++) {
+                    String field = entries[i].fields()[f];
+                    if (field == null) {
+                        continue;
+                    }
+                    runs.get(f).add(Map.entry(field, i));
+                    for (int start = 1; start < field.length(); start++) {
+                        if (field.charAt(start - 1) == ' ') {
+                            runs.get(WORD_RUN).add(Map.entry(field.substring(start), i));
+                        }
+                    }
+                    grams.addAll(trigramsOf(field));
+                }
+                for (String gram : grams) {
+                    postings.computeIfAbsent(gram, g -> new ArrayList<>()).add(i);
+                }
+            }
+            String[][] prefixKeys = new String[runs.size()][];
+            int[][] prefixEntries = new int[runs.size()][];
+            for (int run = 0; run < runs.size(); run++) {
+                List<Map.Entry<String, Integer>> keys = runs.get(run);
+                keys.sort(Map.Entry.comparingByKey());
+                prefixKeys[run] = new String[keys.size()];
+                prefixEntries[run] = new int[keys.size()];
+                for (int i = 0; i < keys.size(); i++) {
+                    prefixKeys[run][i] = keys.get(i).getKey();
+                    prefixEntries[run][i] = keys.get(i).getValue();
+                }
+            }
+            Map<String, int[]> trigrams = new HashMap<>(postings.size() * 2);
+            postings.forEach((gram, list) -> trigrams.put(gram, list.stream().mapToInt(Integer::intValue).toArray()));
+            return new Snapshot(entries, prefixKeys, prefixEntries, trigrams);
+        }
+
+        int keyCount() {
+            int count = 0;
+            for (String[] keys : prefixKeys) {
+                count += keys.length;
+            }
+            return count;
+        }
+    }
+
+    /** Closest term of one medication to a fuzzy query; score is 1 - distance / longer length. */
+    public record FuzzyMatch(String id, String matched, int distance, double score) {}
+
+    // Ids in the base that the delta replaces or removes are listed in hidden
+    private record State(Snapshot base, Map<String, Entry> delta, Set<String> hidden) {}
+
+    private volatile State state = new State(Snapshot.EMPTY, Map.of(), Set.of());
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${medications.search.refresh-ms:600000}",
+            initialDelayString = "${medications.search.refresh-ms:600000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    public synchronized Map<String, Object> rebuild() {
+        long started = System.nanoTime();
+        List<Entry> entries = new ArrayList<>();
+        Query query = Query.query(Criteria.where("active").is(true));
+        query.fields().include("_id").include("name").include("genericName").include("brand");
+        try (Stream<Medication> medications = mongoTemplate.stream(query, Medication.class)) {
+            medications.forEach(medication -> entries.add(entryFor(medication)));
+        }
+        Snapshot base = Snapshot.build(entries);
+        state = new State(base, Map.of(), Set.of());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("medications", base.entries.length);
+        result.put("prefixKeys", base.keyCount());
+        result.put("trigrams", base.trigrams.size());
+        result.put("durationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        log.debug("Medication search index rebuilt: {}", result);
+        return result;
+    }
+
+    // Incremental update for one created, changed or deactivated medication
+    public synchronized void upsert(Medication medication) {
+        if (medication == null || medication.getId() == null) {
+            return;
+        }
+        State current = state;
+        Map<String, Entry> delta = new HashMap<>(current.delta());
+        Set<String> hidden = new HashSet<>(current.hidden());
+        hidden.add(medication.getId());
+        delta.remove(medication.getId());
+        if (medication.isActive()) {
+            delta.put(medication.getId(), entryFor(medication));
+        }
+        if (delta.size() + hidden.size() > maxDelta) {
+            List<Entry> merged = new ArrayList<>(current.base().entries.length + delta.size());
+            for (Entry entry : current.base().entries) {
+                if (!hidden.contains(entry.id())) {
+                    merged.add(entry);
+                }
+            }
+            merged.addAll(delta.values());
+            state = new State(Snapshot.build(merged), Map.of(), Set.of());
+        } else {
+            state = new State(current.base(), delta, hidden);
+        }
+    }
+
+    /** Ids of the best matches for a typeahead query, best first. */
+    public List<String> search(String query, int limit) {
+        String q = normalise(query);
+        if (q.isEmpty()) {
+            return List.of();
+        }
+        int max = Math.max(1, Math.min(limit, maxLimit));
+        State current = state;
+        Map<Entry, Integer> scores = new HashMap<>();
+        collect(current.base(), q, max, current.hidden(), scores);
+        for (Entry entry : current.delta().values()) {
+            int score = score(entry, q);
+            if (score != NO_MATCH) {
+                scores.put(entry, score);
+            }
+        }
+        return rank(scores, max);
+    }
+
+    /**
+     * Medications within a few edits of the query, nearest first. Queries shorter
+     * than three characters have no trigrams and return nothing; use search() there.
+     */
+    public List<FuzzyMatch> fuzzySearch(String query, int limit) {
+        String q = normalise(query);
+        if (q.length() < 3) {
+            return List.of();
+        }
+        int max = Math.max(1, Math.min(limit, maxLimit));
+        State current = state;
+        List<FuzzyMatch> matches = new ArrayList<>();
+        collectFuzzy(current.base(), q, max, current.hidden(), matches);
+        for (Entry entry : current.delta().values()) {
+            FuzzyMatch match = closest(entry, q, maxDistance(q));
+            if (match != null) {
+                matches.add(match);
+            }
+        }
+        return rankFuzzy(matches, max);
+    }
+
+    public Map<String, Object> getStats() {
+        State current = state;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("medications", current.base().entries.length - current.hidden().size() + current.delta().size());
+        stats.put("baseEntries", current.base().entries.length);
+        stats.put("deltaEntries", current.delta().size());
+        stats.put("hiddenEntries", current.hidden().size());
+        stats.put("prefixKeys", current.base().keyCount());
+        stats.put("trigrams", current.base().trigrams.size());
+        return stats;
+    }
+
+    /**
+     * Latency of this index on a synthetic catalog of {@code catalogSize} drugs,
+     * built aside so the live index is untouched, against the regex query the
+     * search endpoint used to run on the real medications collection.
+     */
+    public Map<String, Object> benchmark(int catalogSize, int iterations, List<String> queries,
+                                         List<String> fuzzyQueries) {
+        int size = Math.max(1, Math.min(catalogSize, MAX_BENCHMARK_CATALOG));
+        int runs = Math.max(1, Math.min(iterations, MAX_BENCHMARK_ITERATIONS));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long buildStarted = System.nanoTime();
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String name = syntheticName(random);
+            entries.add(new Entry("bench-" + i, name, new String[]{
+                    name, syntheticName(random), syntheticName(random)}));
+        }
+        Snapshot synthetic = Snapshot.build(entries);
+        long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStarted);
+
+        long[] indexTimes = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            String q = normalise(queries.get(i % queries.size()));
+            long t = System.nanoTime();
+            Map<Entry, Integer> scores = new HashMap<>();
+            collect(synthetic, q, 20, Set.of(), scores);
+            rank(scores, 20);
+            indexTimes[i] = System.nanoTime() - t;
+        }
+
+        long[] fuzzyTimes = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            String q = normalise(fuzzyQueries.get(i % fuzzyQueries.size()));
+            long t = System.nanoTime();
+            List<FuzzyMatch> matches = new ArrayList<>();
+            collectFuzzy(synthetic, q, 20, Set.of(), matches);
+            rankFuzzy(matches, 20);
+            fuzzyTimes[i] = System.nanoTime() - t;
+        }
+
+        int mongoRuns = Math.min(runs, 200);
+        long[] mongoTimes = new long[mongoRuns];
+        for (int i = 0; i < mongoRuns; i++) {
+            String q = queries.get(i % queries.size());
+            long t = System.nanoTime();
+            mongoTemplate.find(Query.query(Criteria.where("name").regex(Pattern.quote(q), "i")), Medication.class);
+            mongoTimes[i] = System.nanoTime() - t;
+        }
+
+        Map<String, Object> index = new HashMap<>();
+        index.put("catalogSize", size);
+        index.put("buildMs", buildMillis);
+        index.put("prefixKeys", synthetic.keyCount());
+        index.put("latencyMicros", Latencies.micros(indexTimes));
+        index.put("fuzzyLatencyMicros", Latencies.micros(fuzzyTimes));
+
+        Map<String, Object> mongo = new HashMap<>();
+        mongo.put("catalogSize", mongoTemplate.count(new Query(), Medication.class));
+        mongo.put("latencyMicros", Latencies.micros(mongoTimes));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("queries", queries);
+        result.put("fuzzyQueries", fuzzyQueries);
+        result.put("iterations", runs);
+        result.put("index", index);
+        result.put("mongoRegex", mongo);
+        return result;
+    }
+
+    private static void collect(Snapshot snapshot, String q, int limit, Set<String> hidden, Map<Entry, Integer> scores) {
+        // Exact and prefix matches: a contiguous stretch of each field's sorted keys, capped per field
+        int scanCap = limit * SCAN_FACTOR;
+        for (int f = 0; f < FIELDS; f++) {
+            scanRun(snapshot, f, q, scanCap, hidden, scores);
+        }
+        // Word-prefix matches rank below every prefix match, so they cannot push those out
+        if (scores.size() < limit) {
+            scanRun(snapshot, WORD_RUN, q, scanCap, hidden, scores);
+        }
+        // Infix matches always rank below these, so only look when they did not fill the page
+        if (q.length() < 3 || scores.size() >= limit) {
+            return;
+        }
+        // Infix matches: entries holding every trigram of the query, verified by score()
+        int[] candidates = null;
+        for (String gram : trigramsOf(q)) {
+            int[] posting = snapshot.trigrams.get(gram);
+            if (posting == null) {
+                return;
+            }
+            candidates = candidates == null ? posting : intersect(candidates, posting);
+            if (candidates.length == 0) {
+                return;
+            }
+        }
+        if (candidates != null) {
+            for (int i = 0; i < candidates.length && i < scanCap; i++) {
+                consider(snapshot.entries[candidates[i]], q, hidden, scores);
+            }
+        }
+    }
+
+    private static void scanRun(Snapshot snapshot, int run, String q, int scanCap,
+                                Set<String> hidden, Map<Entry, Integer> scores) {
+        String[] keys = snapshot.prefixKeys[run];
+        int[] entries = snapshot.prefixEntries[run];
+        for (int i = lowerBound(keys, q), scanned = 0;
+             i < keys.length && scanned < scanCap && keys[i].startsWith(q);
+             i++, scanned++) {
+            consider(snapshot.entries[entries[i]], q, hidden, scores);
+        }
+    }
+
+    private static void collectFuzzy(Snapshot snapshot, String q, int limit, Set<String> hidden, List<FuzzyMatch> matches) {
+        Set<String> grams = trigramsOf(q);
+        int maxDistance = maxDistance(q);
+        // One edit touches at most three trigrams, so closer entries must share at least this many
+        int required = Math.max(1, grams.size() - 3 * maxDistance);
+
+        int[] shared = new int[snapshot.entries.length];
+        int[] touched = new int[64];
+        int touchedCount = 0;
+        for (String gram : grams) {
+            int[] posting = snapshot.trigrams.get(gram);
+            if (posting == null) {
+                continue;
+            }
+            for (int index : posting) {
+                if (shared[index]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = index;
+                }
+            }
+        }
+
+        // Counting sort by shared trigrams so the likeliest candidates are verified first
+        int[] bucketStart = new int[grams.size() + 2];
+        for (int i = 0; i < touchedCount; i++) {
+            bucketStart[grams.size() - shared[touched[i]] + 1]++;
+        }
+        for (int b = 1; b < bucketStart.length; b++) {
+            bucketStart[b] += bucketStart[b - 1];
+        }
+        int[] ordered = new int[touchedCount];
+        for (int i = 0; i < touchedCount; i++) {
+            ordered[bucketStart[grams.size() - shared[touched[i]]]++] = touched[i];
+        }
+
+        int scanCap = limit * SCAN_FACTOR;
+        for (int i = 0; i < ordered.length && i < scanCap && shared[ordered[i]] >= required; i++) {
+            Entry entry = snapshot.entries[ordered[i]];
+            if (hidden.contains(entry.id())) {
+                continue;
+            }
+            FuzzyMatch match = closest(entry, q, maxDistance);
+            if (match != null) {
+                matches.add(match);
+            }
+        }
+    }
+
+    private static FuzzyMatch closest(Entry entry, String q, int maxDistance) {
+        String best = null;
+        int bestDistance = maxDistance + 1;
+        for (String field : entry.fields()) {
+            if (field == null) {
+                continue;
+            }
+            int distance = editDistance(q, field, bestDistance - 1);
+            if (distance < bestDistance) {
+                best = field;
+                bestDistance = distance;
+            }
+            if (field.indexOf(' ') >= 0) {
+                for (String word : field.split(" ")) {
+                    distance = editDistance(q, word, bestDistance - 1);
+                    if (distance < bestDistance) {
+                        best = word;
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        double score = 1.0 - (double) bestDistance / Math.max(q.length(), best.length());
+        return new FuzzyMatch(entry.id(), best, bestDistance, Math.round(score * 1000) / 1000.0);
+    }
+
+    private static List<FuzzyMatch> rankFuzzy(List<FuzzyMatch> matches, int limit) {
+        return matches.stream()
+                .sorted(Comparator.comparingInt(FuzzyMatch::distance)
+                        .thenComparing(Comparator.comparingDouble(FuzzyMatch::score).reversed())
+                        .thenComparing(FuzzyMatch::matched))
+                .limit(limit)
+                .toList();
+    }
+
+    // Typos allowed for a query of this length
+    static int maxDistance(String q) {
+        return q.length() <= 4 ? 1 : q.length() <= 8 ? 2 : 3;
+    }
+
+    /**
+     * Optimal string alignment distance (insert, delete, substitute, swap adjacent),
+     * giving up with {@code max + 1} as soon as every cell of a row is above max.
+     */
+    static int editDistance(String a, String b, int max) {
+        if (max < 0 || Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, beforePrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    private static void consider(Entry entry, String q, Set<String> hidden, Map<Entry, Integer> scores) {
+        if (hidden.contains(entry.id()) || scores.containsKey(entry)) {
+            return;
+        }
+        int score = score(entry, q);
+        if (score != NO_MATCH) {
+            scores.put(entry, score);
+        }
+    }
+
+    private static List<String> rank(Map<Entry, Integer> scores, int limit) {
+        return scores.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<Entry, Integer>>comparingInt(Map.Entry::getValue)
+                        .thenComparingInt(e -> e.getKey().name().length())
+                        .thenComparing(e -> e.getKey().name()))
+                .limit(limit)
+                .map(e -> e.getKey().id())
+                .toList();
+    }
+
+    // tier * FIELDS + field index, so an exact brand match still beats a name prefix
+    static int score(Entry entry, String q) {
+        int best = NO_MATCH;
+        for (int f = 0; f < FIELDS; f++) {
+            String value = entry.fields()[f];
+            if (value == null) {
+                continue;
+            }
+            int tier;
+            if (value.equals(q)) {
+                tier = EXACT;
+            } else if (value.startsWith(q)) {
+                tier = PREFIX;
+            } else if (startsWord(value, q)) {
+                tier = WORD_PREFIX;
+            } else if (q.length() >= 3 && value.contains(q)) {
+                tier = INFIX;
+            } else {
+                continue;
+            }
+            best = Math.min(best, tier * FIELDS + f);
+        }
+        return best;
+    }
+
+    private static boolean startsWord(String value, String q) {
+        for (int i = value.indexOf(' '); i >= 0; i = value.indexOf(' ', i + 1)) {
+            if (value.startsWith(q, i + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Entry entryFor(Medication medication) {
+        String name = medication.getName() != null ? medication.getName() : "";
+        return new Entry(medication.getId(), name, new String[]{
+                emptyToNull(normalise(medication.getName())),
+                emptyToNull(normalise(medication.getGenericName())),
+                emptyToNull(normalise(medication.getBrand()))});
+    }
+
+    static String normalise(String value) {
+        if (value == null) {
+            return "";
+        }
+        return NON_ALNUM.matcher(value.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    static Set<String> trigramsOf(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= value.length(); i++) {
+            grams.add(value.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static int lowerBound(String[] keys, String q) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(q) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static String syntheticName(ThreadLocalRandom random) {
+        String[] syllables = {"a", "mo", "xi", "cil", "lin", "ibu", "pro", "fen", "met", "for", "min",
+                "lo", "sar", "tan", "ator", "va", "sta", "ome", "pra", "zole", "ce", "ti", "ri", "zine"};
+        StringBuilder name = new StringBuilder();
+        int parts = 3 + random.nextInt(3);
+        for (int i = 0; i < parts; i++) {
+            name.append(syllables[random.nextInt(syllables.length)]);
+        }
+        return normalise(name.toString());
+    }
+}
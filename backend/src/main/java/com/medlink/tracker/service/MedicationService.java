@@ -1,85 +1,200 @@
 package com.medlink.tracker.service;
 
+import com.medlink.tracker.event.IntakeLogChangedEvent;
 import com.medlink.tracker.exception.ResourceNotFoundException;
+import com.medlink.tracker.exception.StatusConflictException;
 import com.medlink.tracker.model.IntakeLog;
 import com.medlink.tracker.model.Medication;
+import com.medlink.tracker.model.StatusTransitions;
 import com.medlink.tracker.repository.IntakeLogRepository;
 import com.medlink.tracker.repository.MedicationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class MedicationService {
 
     @Autowired private MedicationRepository medicationRepository;
     @Autowired private IntakeLogRepository intakeLogRepository;
+    @Autowired private AdherenceService adherenceService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+    @Autowired private IntakeWriteBehindBuffer writeBehind;
+    @Autowired private InteractionCheckService interactionCheckService;
+    @Autowired private MedicationSearchIndex medicationSearchIndex;
+    @Autowired private MedicationCache medicationCache;
 
     public Medication create(Medication medication) {
+        medication.setVersion(null);
+        medication.setCatalogKey(MedicationImportService.catalogKey(medication));
         medication.setCreatedAt(LocalDateTime.now());
-        return medicationRepository.save(medication);
+        Medication saved = medicationRepository.save(medication);
+        medicationCache.refresh(saved);
+        interactionCheckService.upsert(saved);
+        medicationSearchIndex.upsert(saved);
+        return saved;
+    }
+
+    // Kept in the catalog for existing prescriptions, but no longer offered or searchable
+    public Medication deactivate(String id) {
+        Medication medication = medicationRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Medication not found: " + id));
+        if (!medication.isActive()) {
+            return medication;
+        }
+        medication.setActive(false);
+        Medication saved = medicationRepository.save(medication);
+        medicationCache.refresh(saved);
+        interactionCheckService.upsert(saved);
+        medicationSearchIndex.upsert(saved);
+        return saved;
     }
 
     public List<Medication> getAll() {
-        return medicationRepository.findByActiveTrue();
+        return medicationCache.getActive();
+    }
+
+    // Ranked by the in-memory index, then loaded by id in that order
+    public List<Medication> search(String name, int limit) {
+        List<String> ids = medicationSearchIndex.search(name, limit);
+        Map<String, Medication> byId = medicationCache.getAll(ids);
+        List<Medication> results = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Medication medication = byId.get(id);
+            if (medication != null) {
+                results.add(medication);
+            }
+        }
+        return results;
     }
 
-    public List<Medication> search(String name) {
-        return medicationRepository.findByNameContainingIgnoreCase(name);
+    public List<Map<String, Object>> fuzzySearch(String name, int limit) {
+        List<MedicationSearchIndex.FuzzyMatch> matches = medicationSearchIndex.fuzzySearch(name, limit);
+        Map<String, Medication> byId = medicationCache.getAll(matches.stream().map(MedicationSearchIndex.FuzzyMatch::id).toList());
+        List<Map<String, Object>> results = new ArrayList<>(matches.size());
+        for (MedicationSearchIndex.FuzzyMatch match : matches) {
+            Medication medication = byId.get(match.id());
+            if (medication == null) {
+                continue;
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("medication", medication);
+            result.put("matched", match.matched());
+            result.put("distance", match.distance());
+            result.put("score", match.score());
+            results.add(result);
+        }
+        return results;
     }
 
     public Medication getById(String id) {
-        return medicationRepository.findById(id)
+        return medicationCache.get(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Medication not found: " + id));
     }
 
     // Intake log operations
     public IntakeLog logIntake(IntakeLog log) {
+        if (log.getIdempotencyKey() != null) {
+            Optional<IntakeLog> existing = writeBehind.findByIdempotencyKey(log.getIdempotencyKey())
+                    .or(() -> intakeLogRepository.findByIdempotencyKey(log.getIdempotencyKey()));
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
         log.setCreatedAt(LocalDateTime.now());
         if ("TAKEN".equals(log.getStatus())) {
             log.setTakenAt(LocalDateTime.now());
         }
-        return intakeLogRepository.save(log);
+        if (writeBehind.isActive()) {
+            // Counted into adherence when the buffer flushes it
+            IntakeLog accepted = writeBehind.acceptCreate(log).getLog();
+            eventPublisher.publishEvent(IntakeLogChangedEvent.created(accepted));
+            return accepted;
+        }
+        IntakeLog saved = intakeLogRepository.save(log);
+        adherenceService.recordTransition(saved, null, saved.getStatus());
+        eventPublisher.publishEvent(IntakeLogChangedEvent.created(saved));
+        return saved;
     }
 
     public List<IntakeLog> getTodayIntakes(String patientId) {
-        return intakeLogRepository.findByPatientIdAndScheduledDate(patientId, LocalDate.now());
+        return getIntakesByDate(patientId, LocalDate.now());
     }
 
     public List<IntakeLog> getIntakesByDate(String patientId, LocalDate date) {
-        return intakeLogRepository.findByPatientIdAndScheduledDate(patientId, date);
+        List<IntakeLog> stored = intakeLogRepository.findByPatientIdAndScheduledDate(patientId, date);
+        return writeBehind.merge(patientId, stored, log -> date.equals(log.getScheduledDate()));
     }
 
     public List<IntakeLog> getIntakeHistory(String patientId) {
-        return intakeLogRepository.findByPatientId(patientId);
+        return writeBehind.merge(patientId, intakeLogRepository.findByPatientId(patientId), log -> true);
     }
 
     public Map<String, Object> getAdherenceStats(String patientId) {
-        long taken = intakeLogRepository.countByPatientIdAndStatus(patientId, "TAKEN");
-        long missed = intakeLogRepository.countByPatientIdAndStatus(patientId, "MISSED");
-        long total = taken + missed;
-        double adherenceRate = total > 0 ? (double) taken / total * 100 : 0;
-
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("taken", taken);
-        stats.put("missed", missed);
-        stats.put("total", total);
-        stats.put("adherenceRate", Math.round(adherenceRate));
-        return stats;
+        return adherenceService.getStats(patientId);
+    }
+
+    public Map<String, Object> rebuildAdherence(String patientId) {
+        return adherenceService.rebuild(patientId);
     }
 
-    public IntakeLog updateIntakeStatus(String logId, String status) {
-        IntakeLog log = intakeLogRepository.findById(logId)
-                .orElseThrow(() -> new ResourceNotFoundException("Intake log not found: " + logId));
+    public Map<String, Object> rebuildAllAdherence() {
+        return adherenceService.rebuildAll();
+    }
+
+    /**
+     * Applies an allowed status change as one conditional findAndModify. When the
+     * dose is no longer in a state the change may start from (or not in
+     * {@code expectedStatus}, if given) a StatusConflictException is thrown; asking
+     * for the status the dose already has returns it unchanged.
+     */
+    public IntakeLog updateIntakeStatus(String logId, String status, String expectedStatus) {
+        Set<String> sources = StatusTransitions.sourcesFor(StatusTransitions.INTAKE, status, expectedStatus);
+        LocalDateTime takenAt = "TAKEN".equals(status) ? LocalDateTime.now() : null;
+
+        if (writeBehind.isActive()) {
+            IntakeLog current = writeBehind.find(logId)
+                    .or(() -> intakeLogRepository.findById(logId))
+                    .orElseThrow(() -> new ResourceNotFoundException("Intake log not found: " + logId));
+            if (!sources.contains(current.getStatus())) {
+                return unchangedOrConflict(current, status, expectedStatus);
+            }
+            IntakeWalRecord accepted = writeBehind.acceptTransition(current, status, takenAt);
+            eventPublisher.publishEvent(IntakeLogChangedEvent.statusChanged(accepted.getLog(), accepted.getPreviousStatus()));
+            return accepted.getLog();
+        }
+
+        IntakeLog log = intakeLogRepository.transitionStatus(logId, sources, status, takenAt).orElse(null);
+        if (log == null) {
+            IntakeLog current = intakeLogRepository.findById(logId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Intake log not found: " + logId));
+            return unchangedOrConflict(current, status, expectedStatus);
+        }
+
+        String previousStatus = log.getStatus();
         log.setStatus(status);
-        if ("TAKEN".equals(status)) {
-            log.setTakenAt(LocalDateTime.now());
+        if (takenAt != null) {
+            log.setTakenAt(takenAt);
+        }
+        adherenceService.recordTransition(log, previousStatus, status);
+        eventPublisher.publishEvent(IntakeLogChangedEvent.statusChanged(log, previousStatus));
+        return log;
+    }
+
+    private static IntakeLog unchangedOrConflict(IntakeLog current, String status, String expectedStatus) {
+        if (status.equals(current.getStatus()) && (expectedStatus == null || expectedStatus.equals(status))) {
+            return current;
         }
-        return intakeLogRepository.save(log);
+        throw new StatusConflictException("Cannot change intake log status from "
+                + current.getStatus() + " to " + status, current.getStatus());
     }
 }
@@ -0,0 +1,155 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.event.IntakeStatusBulkChangedEvent;
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.repository.IntakeLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Marks PENDING doses as MISSED once they are past the grace period. The patient
+ * hash space is split into partitions, each guarded by a lease, so every instance
+ * sweeps only the partitions it currently owns. Instances heartbeat into a member
+ * group and hold at most ceil(partitions / live instances) leases, handing back the
+ * rest, so partitions spread out as instances join. Each partition is a single ranged
+ * update per storage layout; the doses it touched are tagged with the sweep id and counted back
+ * into the adherence counters.
+ */
+@Service
+public class MissedDoseSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(MissedDoseSweeper.class);
+    private static final String LEASE_GROUP = "missed-dose-sweep";
+
+    @Autowired private IntakeLogRepository intakeLogRepository;
+    @Autowired private LeaseService leaseService;
+    @Autowired private AdherenceService adherenceService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+
+    @Value("${sweeper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sweeper.grace-minutes:60}")
+    private long graceMinutes;
+
+    @Value("${sweeper.partitions:8}")
+    private int partitions;
+
+    @Value("${sweeper.lease-seconds:600}")
+    private long leaseSeconds;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastSweep = Map.of();
+
+    @Scheduled(fixedDelayString = "${sweeper.interval-ms:300000}", initialDelayString = "${sweeper.initial-delay-ms:60000}")
+    public void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    public Map<String, Object> sweep() {
+        if (!running.compareAndSet(false, true)) {
+            return Map.of("skipped", true, "reason", "sweep already in progress");
+        }
+        long started = System.nanoTime();
+        try {
+            String sweepId = UUID.randomUUID().toString();
+            LocalDateTime cutoff = LocalDateTime.now().minusMinutes(graceMinutes);
+
+            Duration ttl = Duration.ofSeconds(leaseSeconds);
+            int instances = leaseService.heartbeat(LEASE_GROUP, ttl);
+            int share = (partitions + instances - 1) / instances;
+
+            // Keep the partitions already held, then try the rest from a random start so
+            // instances don't all contend for the same lease first
+            Set<String> held = leaseService.findOwned(LEASE_GROUP + ":");
+            int offset = new Random().nextInt(Math.max(1, partitions));
+            List<Integer> order = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                order.add((offset + i) % partitions);
+            }
+            order.sort(Comparator.comparing(p -> !held.contains(leaseId(p))));
+
+            List<Integer> owned = new ArrayList<>();
+            long updated = 0;
+            for (int partition : order) {
+                if (owned.size() >= share) {
+                    if (held.contains(leaseId(partition))) {
+                        leaseService.release(leaseId(partition));
+                    }
+                    continue;
+                }
+                if (!leaseService.tryAcquire(leaseId(partition), ttl)) {
+                    continue;
+                }
+                owned.add(partition);
+                updated += sweepPartition(partition, cutoff, sweepId);
+            }
+
+            long dosesMissed = 0;
+            if (updated > 0) {
+                // In the bucketed layout one updated document holds several doses
+                Map<String, Map<LocalDate, Long>> moved = intakeLogRepository.countBySweepId(sweepId);
+                for (Map<LocalDate, Long> days : moved.values()) {
+                    for (long count : days.values()) {
+                        dosesMissed += count;
+                    }
+                }
+                adherenceService.recordBulkTransition(moved, "PENDING", "MISSED");
+                eventPublisher.publishEvent(new IntakeStatusBulkChangedEvent(moved, "PENDING", "MISSED"));
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("sweepId", sweepId);
+            result.put("instance", leaseService.getInstanceId());
+            result.put("partitionsOwned", owned);
+            result.put("liveInstances", instances);
+            result.put("fairShare", share);
+            result.put("rowsUpdated", dosesMissed);
+            result.put("cutoff", cutoff.toString());
+            result.put("durationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            result.put("finishedAt", LocalDateTime.now().toString());
+            lastSweep = result;
+            if (dosesMissed > 0) {
+                log.info("Missed-dose sweep: {}", result);
+            }
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> getLastSweep() {
+        return lastSweep;
+    }
+
+    private static String leaseId(int partition) {
+        return LEASE_GROUP + ":" + partition;
+    }
+
+    private long sweepPartition(int partition, LocalDateTime cutoff, String sweepId) {
+        int width = IntakeLog.PATIENT_BUCKETS / partitions;
+        int from = partition * width;
+        int to = partition == partitions - 1 ? IntakeLog.PATIENT_BUCKETS : from + width;
+
+        long updated = intakeLogRepository.markMissed(from, to, cutoff, sweepId);
+        if (partition == 0) {
+            // Logs written before patientBucket existed
+            updated += intakeLogRepository.markMissed(null, null, cutoff, sweepId);
+        }
+        return updated;
+    }
+}
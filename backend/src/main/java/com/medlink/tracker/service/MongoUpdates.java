@@ -0,0 +1,21 @@
+package com.medlink.tracker.service;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Update;
+
+final class MongoUpdates {
+
+    private MongoUpdates() {}
+
+    // $setOnInsert of every mapped field, so an upsert inserts the entity once and never overwrites it
+    static Update insertOnly(MongoConverter converter, Object entity) {
+        Document doc = new Document();
+        converter.write(entity, doc);
+        doc.remove("_id");
+        doc.remove("_class");
+        Update update = new Update();
+        doc.forEach(update::setOnInsert);
+        return update;
+    }
+}
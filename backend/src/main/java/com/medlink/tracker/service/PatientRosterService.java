@@ -0,0 +1,266 @@
+package com.medlink.tracker.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medlink.tracker.model.DoctorPatient;
+import com.medlink.tracker.model.Patient;
+import com.medlink.tracker.model.PatientListItem;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Keyset-paged patient lists in a card-sized projection. A doctor's roster is paged
+ * over doctor_patients, which carries the patients' name and email keys, so the sort,
+ * the prefix filter and the cursor all run on one (doctorId, key, patientId) index;
+ * only the patients on the page are then read. The list of all patients pages the
+ * same way over the keys on the patient documents.
+ */
+@Service
+public class PatientRosterService {
+
+    public static final String BY_NAME = "name";
+    public static final String BY_EMAIL = "email";
+    public static final String BY_ASSIGNED = "assigned";
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private PatientService patientService;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Value("${patients.roster.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${patients.roster.max-page-size:200}")
+    private int maxPageSize;
+
+    /** {@code q} is a prefix of the sort key, so it needs sort=name or sort=email. */
+    public Map<String, Object> getRoster(String doctorId, String q, String sort, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        String by = sort == null ? BY_NAME : sort;
+        String prefix = PatientService.searchKey(q);
+        String field = switch (by) {
+            case BY_NAME -> "nameKey";
+            case BY_EMAIL -> "emailKey";
+            case BY_ASSIGNED -> "assignedAt";
+            default -> throw new RuntimeException("Unknown sort: " + sort + " (use name, email or assigned)");
+        };
+        if (!prefix.isEmpty() && BY_ASSIGNED.equals(by)) {
+            throw new RuntimeException("Search needs sort=name or sort=email");
+        }
+        boolean ascending = !BY_ASSIGNED.equals(by);
+
+        Criteria filter = Criteria.where("doctorId").is(doctorId);
+        if (!prefix.isEmpty()) {
+            filter = filter.and(field).gte(prefix).lt(prefix + Character.MAX_VALUE);
+        }
+        Criteria criteria = filter;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] last = decodeCursor(cursor);
+            Object value = BY_ASSIGNED.equals(by) ? parseTime(last[0]) : last[0];
+            criteria = new Criteria().andOperator(filter, after(field, value, "patientId", last[1], ascending));
+        }
+        Query query = new Query(criteria).with(sortBy(field, "patientId", ascending)).limit(pageSize + 1);
+        query.fields().include("patientId").include(field).include("assignedAt");
+        List<DoctorPatient> rows = mongoTemplate.find(query, DoctorPatient.class);
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            DoctorPatient last = rows.get(pageSize - 1);
+            String value = switch (by) {
+                case BY_NAME -> last.getNameKey();
+                case BY_EMAIL -> last.getEmailKey();
+                default -> last.getAssignedAt().toString();
+            };
+            nextCursor = encodeCursor(value, last.getPatientId());
+        }
+
+        Map<String, Patient> patients = new HashMap<>();
+        for (Patient patient : mongoTemplate.find(listQuery(Criteria.where("_id")
+                .in(rows.stream().map(DoctorPatient::getPatientId).toList())), Patient.class)) {
+            patients.put(patient.getId(), patient);
+        }
+        List<PatientListItem> items = new ArrayList<>(rows.size());
+        for (DoctorPatient row : rows) {
+            Patient patient = patients.get(row.getPatientId());
+            if (patient != null) {
+                PatientListItem item = toItem(patient);
+                item.setAssignedAt(row.getAssignedAt());
+                items.add(item);
+            }
+        }
+
+        Map<String, Object> page = page(items, nextCursor, pageSize, by);
+        if (cursor == null || cursor.isBlank()) {
+            page.put("total", mongoTemplate.count(new Query(filter), DoctorPatient.class));
+        }
+        return page;
+    }
+
+    public Map<String, Object> getAll(String q, String sort, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        String by = sort == null ? BY_NAME : sort;
+        String field = switch (by) {
+            case BY_NAME -> "nameKey";
+            case BY_EMAIL -> "emailKey";
+            default -> throw new RuntimeException("Unknown sort: " + sort + " (use name or email)");
+        };
+        String prefix = PatientService.searchKey(q);
+
+        Criteria filter = prefix.isEmpty() ? new Criteria()
+                : Criteria.where(field).gte(prefix).lt(prefix + Character.MAX_VALUE);
+        Criteria criteria = filter;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] last = decodeCursor(cursor);
+            Object lastId = ObjectId.isValid(last[1]) ? new ObjectId(last[1]) : last[1];
+            criteria = new Criteria().andOperator(filter, after(field, last[0], "_id", lastId, true));
+        }
+        Query query = listQuery(criteria).with(sortBy(field, "_id", true)).limit(pageSize + 1);
+        query.fields().include(field);
+        List<Patient> patients = mongoTemplate.find(query, Patient.class);
+
+        String nextCursor = null;
+        if (patients.size() > pageSize) {
+            patients = patients.subList(0, pageSize);
+            Patient last = patients.get(pageSize - 1);
+            nextCursor = encodeCursor(BY_EMAIL.equals(by) ? last.getEmailKey() : last.getNameKey(), last.getId());
+        }
+        Map<String, Object> page = page(patients.stream().map(PatientRosterService::toItem).toList(), nextCursor, pageSize, by);
+        if (cursor == null || cursor.isBlank()) {
+            page.put("total", mongoTemplate.count(new Query(filter), Patient.class));
+        }
+        return page;
+    }
+
+    /** Payload size and latency of the full patient list against the first roster page. */
+    public Map<String, Object> benchmark(String doctorId, int iterations) {
+        int runs = Math.max(1, Math.min(iterations, 1_000));
+
+        long[] listTimes = new long[runs];
+        int listBytes = 0;
+        int listCount = 0;
+        for (int i = 0; i < runs; i++) {
+            long t = System.nanoTime();
+            List<Patient> all = patientService.getByDoctorId(doctorId);
+            listBytes = serializedSize(all);
+            listTimes[i] = System.nanoTime() - t;
+            listCount = all.size();
+        }
+
+        long[] pageTimes = new long[runs];
+        int pageBytes = 0;
+        for (int i = 0; i < runs; i++) {
+            long t = System.nanoTime();
+            pageBytes = serializedSize(getRoster(doctorId, null, BY_NAME, null, null));
+            pageTimes[i] = System.nanoTime() - t;
+        }
+
+        Map<String, Object> list = new HashMap<>();
+        list.put("patients", listCount);
+        list.put("payloadBytes", listBytes);
+        list.put("latencyMicros", Latencies.micros(listTimes));
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("pageSize", defaultPageSize);
+        page.put("payloadBytes", pageBytes);
+        page.put("latencyMicros", Latencies.micros(pageTimes));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("iterations", runs);
+        result.put("list", list);
+        result.put("page", page);
+        return result;
+    }
+
+    private int pageSize(Integer limit) {
+        return limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+    }
+
+    private static Query listQuery(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include("_id").include("name").include("email").include("phoneNumber")
+                .include("gender").include("bloodGroup").include("dateOfBirth")
+                .include("chronicConditions").include("assignedDoctorId");
+        return query;
+    }
+
+    private static Sort sortBy(String field, String idField, boolean ascending) {
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(new Sort.Order(direction, field), new Sort.Order(direction, idField));
+    }
+
+    // Strictly after (value, id) in the page order
+    private static Criteria after(String field, Object value, String idField, Object id, boolean ascending) {
+        return new Criteria().orOperator(
+                ascending ? Criteria.where(field).gt(value) : Criteria.where(field).lt(value),
+                ascending ? Criteria.where(field).is(value).and(idField).gt(id)
+                        : Criteria.where(field).is(value).and(idField).lt(id));
+    }
+
+    private static PatientListItem toItem(Patient patient) {
+        PatientListItem item = new PatientListItem();
+        item.setId(patient.getId());
+        item.setName(patient.getName());
+        item.setEmail(patient.getEmail());
+        item.setPhoneNumber(patient.getPhoneNumber());
+        item.setGender(patient.getGender());
+        item.setBloodGroup(patient.getBloodGroup());
+        item.setDateOfBirth(patient.getDateOfBirth());
+        item.setChronicConditions(patient.getChronicConditions());
+        item.setAssignedDoctorId(patient.getAssignedDoctorId());
+        return item;
+    }
+
+    private static Map<String, Object> page(List<PatientListItem> items, String nextCursor, int pageSize, String sort) {
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", items);
+        page.put("nextCursor", nextCursor);
+        page.put("limit", pageSize);
+        page.put("sort", sort);
+        return page;
+    }
+
+    private static String encodeCursor(String value, String id) {
+        String raw = (value == null ? "" : value) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Split at the last separator: ids never contain one, names and emails might
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator < 0 || separator == raw.length() - 1) {
+                throw new IllegalArgumentException();
+            }
+            return new String[]{raw.substring(0, separator), raw.substring(separator + 1)};
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid roster cursor");
+        }
+    }
+
+    private static LocalDateTime parseTime(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid roster cursor");
+        }
+    }
+
+    private int serializedSize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value).length;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize benchmark payload", e);
+        }
+    }
+}
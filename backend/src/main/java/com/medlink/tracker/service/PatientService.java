@@ -1,13 +1,18 @@
 package com.medlink.tracker.service;
 
+import com.medlink.tracker.exception.PreconditionFailedException;
 import com.medlink.tracker.exception.ResourceNotFoundException;
+import com.medlink.tracker.model.DoctorPatient;
 import com.medlink.tracker.model.Patient;
+import com.medlink.tracker.repository.DoctorPatientRepository;
 import com.medlink.tracker.repository.PatientRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 
 @Service
 public class PatientService {
@@ -15,6 +20,9 @@ public class PatientService {
     @Autowired
     private PatientRepository patientRepository;
 
+    @Autowired
+    private DoctorPatientRepository doctorPatientRepository;
+
     public Patient getById(String id) {
         return patientRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Patient not found: " + id));
@@ -25,12 +33,20 @@ public class PatientService {
                 .orElseThrow(() -> new ResourceNotFoundException("Patient profile not found for user: " + userId));
     }
 
+    // Every patient on the doctor's roster, not only those whose primary doctor it is
     public List<Patient> getByDoctorId(String doctorId) {
-        return patientRepository.findByAssignedDoctorId(doctorId);
+        List<String> patientIds = doctorPatientRepository.findByDoctorId(doctorId).stream()
+                .map(DoctorPatient::getPatientId)
+                .toList();
+        return patientRepository.findAllById(patientIds);
     }
 
-    public Patient update(String id, Patient updatedPatient) {
+    // expectedVersion comes from If-Match; null skips the check
+    public Patient update(String id, Patient updatedPatient, Long expectedVersion) {
         Patient patient = getById(id);
+        if (expectedVersion != null && !expectedVersion.equals(patient.getVersion())) {
+            throw new PreconditionFailedException("Patient has changed since version " + expectedVersion, patient.getVersion());
+        }
         patient.setDateOfBirth(updatedPatient.getDateOfBirth());
         patient.setGender(updatedPatient.getGender());
         patient.setBloodGroup(updatedPatient.getBloodGroup());
@@ -41,10 +57,21 @@ public class PatientService {
         patient.setEmergencyContactPhone(updatedPatient.getEmergencyContactPhone());
         patient.setPhoneNumber(updatedPatient.getPhoneNumber());
         patient.setUpdatedAt(LocalDateTime.now());
-        return patientRepository.save(patient);
+        try {
+            return patientRepository.save(patient);
+        } catch (OptimisticLockingFailureException e) {
+            if (expectedVersion == null) {
+                throw e;
+            }
+            throw new PreconditionFailedException("Patient has changed since version " + expectedVersion, null);
+        }
     }
 
     public List<Patient> getAll() {
         return patientRepository.findAll();
     }
+
+    public static String searchKey(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
 }
@@ -0,0 +1,177 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.event.PrescriptionChangedEvent;
+import com.medlink.tracker.model.Prescription;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Completes ACTIVE prescriptions whose expiry date has passed. A pass is one ranged
+ * updateMany on the (status, expiryDate) index, so it only reads the prescriptions
+ * that are actually expiring. The rows it changed are tagged with the pass id and
+ * read back to publish their status changes. Only the instance holding the lease
+ * runs a pass.
+ * <p>
+ * Prescriptions saved before expiry dates were derived on create get one from their
+ * medication courses once; those with an open-ended course are marked and never expire.
+ */
+@Service
+public class PrescriptionExpiryService {
+
+    private static final Logger log = LoggerFactory.getLogger(PrescriptionExpiryService.class);
+    private static final String LEASE = "prescription-expiry";
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private LeaseService leaseService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+
+    @Value("${prescriptions.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${prescriptions.expiry.lease-seconds:600}")
+    private long leaseSeconds;
+
+    @Value("${prescriptions.expiry.batch-size:500}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastPass = Map.of();
+
+    @Scheduled(fixedDelayString = "${prescriptions.expiry.interval-ms:3600000}",
+            initialDelayString = "${prescriptions.expiry.initial-delay-ms:120000}")
+    public void scheduledPass() {
+        if (enabled) {
+            expire();
+        }
+    }
+
+    public Map<String, Object> expire() {
+        if (!running.compareAndSet(false, true)) {
+            return Map.of("skipped", true, "reason", "expiry pass already in progress");
+        }
+        long started = System.nanoTime();
+        try {
+            if (!leaseService.tryAcquire(LEASE, Duration.ofSeconds(leaseSeconds))) {
+                return Map.of("skipped", true, "reason", "lease held by another instance");
+            }
+            String sweepId = UUID.randomUUID().toString();
+            LocalDate today = LocalDate.now();
+            LocalDateTime now = LocalDateTime.now();
+
+            long t = System.nanoTime();
+            long backfilled = backfillExpiryDates();
+            long backfillMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - t);
+
+            t = System.nanoTime();
+            long completed = mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("status").is("ACTIVE").and("expiryDate").lt(today)),
+                    new Update().set("status", "COMPLETED").set("updatedAt", now).set("expirySweepId", sweepId),
+                    Prescription.class).getModifiedCount();
+            long updateMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - t);
+
+            t = System.nanoTime();
+            long published = completed > 0 ? publishCompleted(sweepId) : 0;
+            long publishMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - t);
+
+            Map<String, Object> timings = new HashMap<>();
+            timings.put("backfillMicros", backfillMicros);
+            timings.put("updateMicros", updateMicros);
+            timings.put("publishMicros", publishMicros);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("sweepId", sweepId);
+            result.put("instance", leaseService.getInstanceId());
+            result.put("expiredBefore", today.toString());
+            result.put("expiryDatesBackfilled", backfilled);
+            result.put("completed", completed);
+            result.put("published", published);
+            result.put("timings", timings);
+            result.put("durationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            result.put("finishedAt", LocalDateTime.now().toString());
+            lastPass = result;
+            if (completed > 0 || backfilled > 0) {
+                log.info("Prescription expiry pass: {}", result);
+            }
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> getLastPass() {
+        return lastPass;
+    }
+
+    // Marks every prescription it reads, so open-ended ones are not scanned again on the next pass
+    private long backfillExpiryDates() {
+        Query query = Query.query(Criteria.where("status").is("ACTIVE").and("expiryDate").is(null)
+                        .and("expiryDerived").ne(true))
+                .with(Sort.by("_id"))
+                .limit(batchSize);
+        query.fields().include("_id").include("medications").include("prescribedDate").include("createdAt");
+
+        long updated = 0;
+        String lastId = null;
+        while (true) {
+            Query page = lastId == null ? query
+                    : Query.of(query).addCriteria(Criteria.where("_id").gt(new ObjectId(lastId)));
+            List<Prescription> batch = mongoTemplate.find(page, Prescription.class);
+            if (batch.isEmpty()) {
+                return updated;
+            }
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Prescription.class);
+            for (Prescription prescription : batch) {
+                LocalDate end = DoseScheduleService.courseEnd(prescription);
+                Update update = new Update().set("expiryDerived", true);
+                if (end != null) {
+                    update.set("expiryDate", end).inc("version", 1);
+                    updated++;
+                }
+                bulk.updateOne(Query.query(Criteria.where("_id").is(prescription.getId()).and("expiryDate").is(null)), update);
+            }
+            bulk.execute();
+            if (batch.size() < batchSize) {
+                return updated;
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    private long publishCompleted(String sweepId) {
+        Query query = Query.query(Criteria.where("expirySweepId").is(sweepId)).with(Sort.by("_id")).limit(batchSize);
+        long published = 0;
+        String lastId = null;
+        while (true) {
+            Query page = lastId == null ? query
+                    : Query.of(query).addCriteria(Criteria.where("_id").gt(new ObjectId(lastId)));
+            List<Prescription> batch = mongoTemplate.find(page, Prescription.class);
+            for (Prescription prescription : batch) {
+                eventPublisher.publishEvent(PrescriptionChangedEvent.statusChanged(prescription, "ACTIVE"));
+            }
+            published += batch.size();
+            if (batch.size() < batchSize) {
+                return published;
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+}
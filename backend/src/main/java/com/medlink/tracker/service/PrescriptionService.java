@@ -1,14 +1,26 @@
 package com.medlink.tracker.service;
 
+import com.medlink.tracker.event.PrescriptionChangedEvent;
+import com.medlink.tracker.exception.PreconditionFailedException;
 import com.medlink.tracker.exception.ResourceNotFoundException;
+import com.medlink.tracker.exception.StatusConflictException;
+import com.medlink.tracker.model.InteractionWarning;
 import com.medlink.tracker.model.Prescription;
+import com.medlink.tracker.model.StatusTransitions;
 import com.medlink.tracker.repository.PrescriptionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class PrescriptionService {
@@ -16,12 +28,39 @@ public class PrescriptionService {
     @Autowired
     private PrescriptionRepository prescriptionRepository;
 
+    @Autowired
+    private DoseScheduleService doseScheduleService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private InteractionCheckService interactionCheckService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Saves even when the interaction check finds problems; the warnings go back with the response
     public Prescription create(Prescription prescription) {
+        List<InteractionWarning> warnings = interactionCheckService.check(prescription);
+        prescription.setVersion(null);
         prescription.setPrescribedDate(LocalDate.now());
+        if (prescription.getExpiryDate() == null) {
+            prescription.setExpiryDate(DoseScheduleService.courseEnd(prescription));
+        }
+        prescription.setExpiryDerived(true);
         prescription.setStatus("ACTIVE");
         prescription.setCreatedAt(LocalDateTime.now());
         prescription.setUpdatedAt(LocalDateTime.now());
-        return prescriptionRepository.save(prescription);
+        Prescription saved = prescriptionRepository.save(prescription);
+        doseScheduleService.materialise(saved);
+        eventPublisher.publishEvent(PrescriptionChangedEvent.created(saved));
+        saved.setWarnings(warnings);
+        return saved;
+    }
+
+    public List<InteractionWarning> checkInteractions(Prescription prescription) {
+        return interactionCheckService.check(prescription);
     }
 
     public List<Prescription> getByPatientId(String patientId) {
@@ -37,18 +76,58 @@ public class PrescriptionService {
                 .orElseThrow(() -> new ResourceNotFoundException("Prescription not found: " + id));
     }
 
-    public Prescription updateStatus(String id, String status) {
-        Prescription prescription = getById(id);
-        prescription.setStatus(status);
-        prescription.setUpdatedAt(LocalDateTime.now());
-        return prescriptionRepository.save(prescription);
+    // Conditional findAndModify guarded by StatusTransitions.PRESCRIPTION and, from If-Match, the version;
+    // see MedicationService.updateIntakeStatus
+    public Prescription updateStatus(String id, String status, String expectedStatus, Long expectedVersion) {
+        Set<String> sources = StatusTransitions.sourcesFor(StatusTransitions.PRESCRIPTION, status, expectedStatus);
+        LocalDateTime now = LocalDateTime.now();
+        Criteria guard = Criteria.where("_id").is(id).and("status").in(sources);
+        if (expectedVersion != null) {
+            guard = guard.and("version").is(expectedVersion);
+        }
+        Prescription saved = sources.isEmpty() ? null : mongoTemplate.findAndModify(
+                Query.query(guard), new Update().set("status", status).set("updatedAt", now), Prescription.class);
+        if (saved == null) {
+            Prescription current = getById(id);
+            if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+                throw new PreconditionFailedException("Prescription has changed since version " + expectedVersion,
+                        current.getVersion());
+            }
+            if (status.equals(current.getStatus()) && (expectedStatus == null || expectedStatus.equals(status))) {
+                return current;
+            }
+            throw new StatusConflictException("Cannot change prescription status from "
+                    + current.getStatus() + " to " + status, current.getStatus());
+        }
+
+        String previousStatus = saved.getStatus();
+        saved.setStatus(status);
+        saved.setUpdatedAt(now);
+        // findAndModify returned the pre-image; the update incremented the version (a missing one becomes 1)
+        saved.setVersion(saved.getVersion() == null ? 1 : saved.getVersion() + 1);
+        if ("ACTIVE".equals(status)) {
+            doseScheduleService.materialise(saved);
+        } else {
+            doseScheduleService.removeFutureSlots(id);
+        }
+        eventPublisher.publishEvent(PrescriptionChangedEvent.statusChanged(saved, previousStatus));
+        return saved;
     }
 
     public List<Prescription> getActiveByPatient(String patientId) {
         return prescriptionRepository.findByPatientIdAndStatus(patientId, "ACTIVE");
     }
 
+    public Map<String, Object> materialiseSchedules() {
+        return doseScheduleService.materialiseAll();
+    }
+
     public void delete(String id) {
+        Prescription prescription = prescriptionRepository.findById(id).orElse(null);
+        doseScheduleService.removeFutureSlots(id);
         prescriptionRepository.deleteById(id);
+        if (prescription != null) {
+            eventPublisher.publishEvent(PrescriptionChangedEvent.removed(prescription));
+        }
     }
 }
@@ -0,0 +1,147 @@
+package com.medlink.tracker.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medlink.tracker.model.Prescription;
+import com.medlink.tracker.model.PrescriptionListItem;
+import com.medlink.tracker.repository.PrescriptionRepository;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Doctor dashboard summary computed in one round trip: a single $facet over the
+ * doctor's prescriptions yields the status counts, distinct patients, active
+ * prescriptions expiring soon and the most recent prescriptions as list items.
+ */
+@Service
+public class PrescriptionSummaryService {
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private PrescriptionRepository prescriptionRepository;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Value("${prescriptions.summary.recent-limit:5}")
+    private int defaultRecentLimit;
+
+    @Value("${prescriptions.summary.max-recent-limit:50}")
+    private int maxRecentLimit;
+
+    @Value("${prescriptions.summary.expiring-within-days:7}")
+    private int defaultExpiringWithinDays;
+
+    public Map<String, Object> getDoctorSummary(String doctorId, Integer recent, Integer expiringWithinDays) {
+        int limit = Math.max(1, Math.min(recent == null ? defaultRecentLimit : recent, maxRecentLimit));
+        int days = Math.max(0, expiringWithinDays == null ? defaultExpiringWithinDays : expiringWithinDays);
+        LocalDate today = LocalDate.now();
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("doctorId").is(doctorId)),
+                Aggregation.facet(Aggregation.group("status").count().as("count")).as("byStatus")
+                        .and(Aggregation.group("patientId"), Aggregation.count().as("count")).as("patients")
+                        .and(Aggregation.match(Criteria.where("status").is("ACTIVE")
+                                        .and("expiryDate").gte(today).lte(today.plusDays(days))),
+                                Aggregation.count().as("count")).as("expiringSoon")
+                        .and(Aggregation.match(Criteria.where("status").is("ACTIVE").and("expiryDate").lt(today)),
+                                Aggregation.count().as("count")).as("pastExpiry")
+                        .and(Aggregation.sort(Sort.Direction.DESC, "createdAt"),
+                                Aggregation.limit(limit),
+                                Aggregation.project("patientId", "patientName", "doctorName", "diagnosis",
+                                                "status", "prescribedDate", "expiryDate", "createdAt")
+                                        .and(ArrayOperators.Size.lengthOfArray(
+                                                ConditionalOperators.ifNull("medications").then(List.of())))
+                                        .as("medicationCount")).as("recent"));
+
+        Document facets = mongoTemplate.aggregate(aggregation, Prescription.class, Document.class)
+                .getUniqueMappedResult();
+
+        Map<String, Long> byStatus = new TreeMap<>();
+        long total = 0;
+        for (Document group : facets.getList("byStatus", Document.class)) {
+            long count = ((Number) group.get("count")).longValue();
+            byStatus.put(String.valueOf(group.get("_id")), count);
+            total += count;
+        }
+
+        List<PrescriptionListItem> recentItems = new ArrayList<>();
+        for (Document doc : facets.getList("recent", Document.class)) {
+            recentItems.add(mongoTemplate.getConverter().read(PrescriptionListItem.class, doc));
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("doctorId", doctorId);
+        summary.put("total", total);
+        summary.put("byStatus", byStatus);
+        summary.put("patients", facetCount(facets, "patients"));
+        summary.put("expiringWithinDays", days);
+        summary.put("expiringSoon", facetCount(facets, "expiringSoon"));
+        summary.put("pastExpiry", facetCount(facets, "pastExpiry"));
+        summary.put("recent", recentItems);
+        return summary;
+    }
+
+    /**
+     * Compares this summary with the full prescription list the dashboard used to
+     * fetch for the same doctor, on serialized payload size and server-side latency.
+     */
+    public Map<String, Object> benchmark(String doctorId, int iterations) {
+        int runs = Math.max(1, Math.min(iterations, 1_000));
+
+        long[] listTimes = new long[runs];
+        int listBytes = 0;
+        int listCount = 0;
+        for (int i = 0; i < runs; i++) {
+            long t = System.nanoTime();
+            List<Prescription> all = prescriptionRepository.findByDoctorId(doctorId);
+            listBytes = serializedSize(all);
+            listTimes[i] = System.nanoTime() - t;
+            listCount = all.size();
+        }
+
+        long[] summaryTimes = new long[runs];
+        int summaryBytes = 0;
+        for (int i = 0; i < runs; i++) {
+            long t = System.nanoTime();
+            summaryBytes = serializedSize(getDoctorSummary(doctorId, null, null));
+            summaryTimes[i] = System.nanoTime() - t;
+        }
+
+        Map<String, Object> list = new HashMap<>();
+        list.put("prescriptions", listCount);
+        list.put("payloadBytes", listBytes);
+        list.put("latencyMicros", Latencies.micros(listTimes));
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("payloadBytes", summaryBytes);
+        summary.put("latencyMicros", Latencies.micros(summaryTimes));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("iterations", runs);
+        result.put("list", list);
+        result.put("summary", summary);
+        return result;
+    }
+
+    private static long facetCount(Document facets, String facet) {
+        List<Document> counts = facets.getList(facet, Document.class);
+        return counts.isEmpty() ? 0 : ((Number) counts.get(0).get("count")).longValue();
+    }
+
+    private int serializedSize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value).length;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize benchmark payload", e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.DoctorPatient;
+import com.medlink.tracker.model.Patient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Fills in the name and email keys that patient lists sort and search on, for
+ * patients registered and roster entries assigned before those keys existed.
+ */
+@Component
+public class RosterKeyBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterKeyBackfill.class);
+    private static final int PAGE_SIZE = 1000;
+
+    @Autowired private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        long patients = 0;
+        Query missing = Query.query(Criteria.where("nameKey").exists(false));
+        missing.fields().include("_id").include("name").include("email");
+        try (Stream<Patient> stream = mongoTemplate.stream(missing, Patient.class)) {
+            for (List<Patient> page : pages(stream.iterator())) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Patient.class);
+                for (Patient patient : page) {
+                    bulk.updateOne(Query.query(Criteria.where("_id").is(patient.getId())), keys(patient).inc("version", 1));
+                }
+                patients += bulk.execute().getModifiedCount();
+            }
+        }
+
+        long assignments = 0;
+        Query unkeyed = Query.query(Criteria.where("nameKey").exists(false));
+        unkeyed.fields().include("_id").include("patientId");
+        try (Stream<DoctorPatient> stream = mongoTemplate.stream(unkeyed, DoctorPatient.class)) {
+            for (List<DoctorPatient> page : pages(stream.iterator())) {
+                Query owners = Query.query(Criteria.where("_id").in(page.stream().map(DoctorPatient::getPatientId).toList()));
+                owners.fields().include("_id").include("name").include("email");
+                Map<String, Patient> byId = new HashMap<>();
+                for (Patient patient : mongoTemplate.find(owners, Patient.class)) {
+                    byId.put(patient.getId(), patient);
+                }
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DoctorPatient.class);
+                int queued = 0;
+                for (DoctorPatient assignment : page) {
+                    Patient patient = byId.get(assignment.getPatientId());
+                    if (patient != null) {
+                        bulk.updateOne(Query.query(Criteria.where("_id").is(assignment.getId())), keys(patient));
+                        queued++;
+                    }
+                }
+                if (queued > 0) {
+                    assignments += bulk.execute().getModifiedCount();
+                }
+            }
+        }
+        if (patients + assignments > 0) {
+            log.info("Set roster keys on {} patients and {} doctor-patient assignments", patients, assignments);
+        }
+    }
+
+    private static Update keys(Patient patient) {
+        return new Update()
+                .set("nameKey", PatientService.searchKey(patient.getName()))
+                .set("emailKey", PatientService.searchKey(patient.getEmail()));
+    }
+
+    private static <T> Iterable<List<T>> pages(Iterator<T> source) {
+        return () -> new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public List<T> next() {
+                List<T> page = new ArrayList<>(PAGE_SIZE);
+                while (page.size() < PAGE_SIZE && source.hasNext()) {
+                    page.add(source.next());
+                }
+                return page;
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package com.medlink.tracker.audit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditRingBufferTest {
+
+    @Test
+    void capacityRoundsUpToAPowerOfTwo() {
+        assertEquals(8, new AuditRingBuffer<Integer>(5).capacity());
+        assertEquals(8, new AuditRingBuffer<Integer>(8).capacity());
+        assertEquals(4, new AuditRingBuffer<Integer>(1).capacity());
+    }
+
+    @Test
+    void offerFailsWhenFullAndSucceedsAgainAfterDrain() {
+        AuditRingBuffer<Integer> ring = new AuditRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+
+        List<Integer> out = new ArrayList<>();
+        assertEquals(2, ring.drainTo(out, 2));
+        assertEquals(List.of(0, 1), out);
+
+        // The two freed slots are reused on the next lap
+        assertTrue(ring.offer(4));
+        assertTrue(ring.offer(5));
+        assertFalse(ring.offer(6));
+
+        out.clear();
+        assertEquals(4, ring.drainTo(out, 10));
+        assertEquals(List.of(2, 3, 4, 5), out);
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws Exception {
+        int producers = 8;
+        int perProducer = 5_000;
+        AuditRingBuffer<long[]> ring = new AuditRingBuffer<>(256);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            futures.add(pool.submit(() -> {
+                start.await();
+                int rejected = 0;
+                for (long i = 0; i < perProducer; i++) {
+                    // Retry on overflow so every element eventually goes in
+                    while (!ring.offer(new long[] {producer, i})) {
+                        rejected++;
+                        Thread.onSpinWait();
+                    }
+                }
+                return rejected;
+            }));
+        }
+
+        long[] next = new long[producers];
+        int received = 0;
+        List<long[]> out = new ArrayList<>();
+        start.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (received < producers * perProducer) {
+            assertTrue(System.nanoTime() < deadline, "consumer timed out");
+            out.clear();
+            ring.drainTo(out, 64);
+            for (long[] element : out) {
+                int producer = (int) element[0];
+                assertEquals(next[producer], element[1], "out of order for producer " + producer);
+                next[producer]++;
+                received++;
+            }
+        }
+
+        int rejected = 0;
+        for (Future<Integer> future : futures) {
+            rejected += future.get(5, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        for (int p = 0; p < producers; p++) {
+            assertEquals(perProducer, next[p]);
+        }
+        assertEquals(0, ring.size());
+        // A 256-slot ring cannot hold 40k elements, so producers must have hit overflow
+        assertTrue(rejected > 0);
+    }
+}
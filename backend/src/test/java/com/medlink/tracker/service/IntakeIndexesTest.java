@@ -0,0 +1,61 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.IntakeBucket;
+import com.medlink.tracker.model.IntakeLog;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntakeIndexesTest {
+
+    @Test
+    void bucketsDoNotInheritIntakeLogIndexes() {
+        List<IndexDefinition> resolved = resolve(IntakeBucket.class);
+        assertEquals(1, resolved.size());
+        assertEquals(new Document("patientId", 1).append("date", -1), resolved.get(0).getIndexKeys());
+        assertTrue(resolve(IntakeLog.class).isEmpty());
+    }
+
+    @Test
+    void noKeyPatternIsDeclaredTwice() {
+        assertDistinct(resolve(IntakeLog.class), IntakeIndexes.LOG_INDEXES);
+        assertDistinct(resolve(IntakeBucket.class), IntakeIndexes.BUCKET_INDEXES);
+    }
+
+    @Test
+    void embeddedDoseKeysAreNotUnique() {
+        for (Index index : IntakeIndexes.BUCKET_INDEXES) {
+            assertFalse(index.getIndexOptions().getBoolean("unique", false), index.getIndexKeys().toJson());
+        }
+    }
+
+    private static void assertDistinct(List<IndexDefinition> resolved, List<Index> explicit) {
+        List<IndexDefinition> all = new ArrayList<>(resolved);
+        all.addAll(explicit);
+        Set<String> keys = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        for (IndexDefinition index : all) {
+            assertTrue(keys.add(index.getIndexKeys().toJson()), "duplicate keys " + index.getIndexKeys().toJson());
+            assertTrue(names.add(index.getIndexOptions().getString("name")), "duplicate name " + index.getIndexOptions());
+        }
+    }
+
+    private static List<IndexDefinition> resolve(Class<?> type) {
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        List<IndexDefinition> indexes = new ArrayList<>();
+        new MongoPersistentEntityIndexResolver(context).resolveIndexFor(type).forEach(indexes::add);
+        return indexes;
+    }
+}
@@ -0,0 +1,126 @@
+package com.medlink.tracker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.medlink.tracker.model.IntakeLog;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonString;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IntakeWriteBehindBufferTest {
+
+    private static final String PATIENT = "patient-1";
+
+    @TempDir Path dir;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final List<IntakeWriteBehindBuffer> started = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (IntakeWriteBehindBuffer buffer : started) {
+            buffer.shutdown();
+        }
+    }
+
+    @Test
+    void replayAfterCrashRebuildsCountersInsteadOfCountingAgain() throws Exception {
+        // First instance accepts writes while MongoDB is down, then dies before flushing
+        MongoTemplate down = mock(MongoTemplate.class);
+        when(down.bulkOps(any(BulkOperations.BulkMode.class), eq(IntakeLog.class)))
+                .thenThrow(new RuntimeException("MongoDB unavailable"));
+        AdherenceService before = mock(AdherenceService.class);
+        IntakeWriteBehindBuffer crashed = start(down, before);
+
+        IntakeLog dose = crashed.acceptCreate(dose("PENDING")).getLog();
+        IntakeLog pending = crashed.find(dose.getId()).orElseThrow();
+        crashed.acceptTransition(pending, "TAKEN", null);
+        started.remove(crashed);
+        crashed.shutdown();
+        verify(before, never()).recordTransitions(any(), any());
+
+        // The restarted instance replays both records and writes the dose once
+        MongoTemplate up = mongoAcceptingUpserts();
+        AdherenceService after = mock(AdherenceService.class);
+        IntakeWriteBehindBuffer restarted = start(up, after);
+
+        verify(after, timeout(5000)).rebuild(PATIENT);
+        verify(after, never()).recordTransitions(argThat(logs -> !logs.isEmpty()), any());
+        assertEquals(2L, restarted.getStats().get("replayed"));
+        assertTrue(restarted.find(dose.getId()).isEmpty());
+    }
+
+    @Test
+    void retryAfterFailedCheckpointDoesNotCountTwice() throws Exception {
+        AdherenceService adherence = mock(AdherenceService.class);
+        IntakeWriteBehindBuffer buffer = start(mongoAcceptingUpserts(), adherence);
+
+        // Counting succeeds, then the checkpoint fails once and the batch is retried
+        IntakeWriteAheadLog wal = spy((IntakeWriteAheadLog) ReflectionTestUtils.getField(buffer, "wal"));
+        doThrow(new IOException("disk full")).doCallRealMethod().when(wal).checkpoint(anyLong());
+        ReflectionTestUtils.setField(buffer, "wal", wal);
+
+        buffer.acceptCreate(dose("TAKEN"));
+
+        verify(adherence, timeout(5000)).rebuild(PATIENT);
+        verify(wal, timeout(5000).times(2)).checkpoint(anyLong());
+        verify(adherence, times(1)).recordTransitions(argThat(logs -> logs.size() == 1), any());
+    }
+
+    private IntakeWriteBehindBuffer start(MongoTemplate mongoTemplate, AdherenceService adherenceService) {
+        IntakeWriteBehindBuffer buffer = new IntakeWriteBehindBuffer();
+        ReflectionTestUtils.setField(buffer, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(buffer, "adherenceService", adherenceService);
+        ReflectionTestUtils.setField(buffer, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(buffer, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "storageMode", "document");
+        ReflectionTestUtils.setField(buffer, "directory", dir.toString());
+        ReflectionTestUtils.setField(buffer, "segmentBytes", 1 << 20);
+        ReflectionTestUtils.setField(buffer, "flushIntervalMillis", 10L);
+        ReflectionTestUtils.setField(buffer, "batchSize", 500);
+        ReflectionTestUtils.setField(buffer, "maxPending", 1000);
+        buffer.init();
+        started.add(buffer);
+        return buffer;
+    }
+
+    // Every upsert in a flush is reported as inserted
+    private static MongoTemplate mongoAcceptingUpserts() {
+        BulkOperations bulk = mock(BulkOperations.class, RETURNS_SELF);
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0,
+                List.of(new BulkWriteUpsert(0, new BsonString("upserted"))), List.of()));
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(IntakeLog.class))).thenReturn(bulk);
+        when(mongoTemplate.getConverter()).thenReturn(mock(MongoConverter.class));
+        return mongoTemplate;
+    }
+
+    private static IntakeLog dose(String status) {
+        IntakeLog log = new IntakeLog();
+        log.setPatientId(PATIENT);
+        log.setMedicationName("Metformin");
+        log.setScheduledDate(LocalDate.now());
+        log.setScheduledTime("08:00 AM");
+        log.setStatus(status);
+        return log;
+    }
+}
@@ -0,0 +1,53 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.model.Medication;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MedicationSearchIndexTest {
+
+    private MedicationSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new MedicationSearchIndex();
+        // Every upsert folds straight into the base snapshot
+        ReflectionTestUtils.setField(index, "maxDelta", 0);
+        ReflectionTestUtils.setField(index, "maxLimit", 50);
+    }
+
+    @Test
+    void namePrefixMatchIsNotCrowdedOutByWordPrefixKeys() {
+        // Their second words sort before "amoxicillin" and outnumber the scan budget
+        for (int i = 0; i < 400; i++) {
+            index.upsert(medication("m" + i, String.format("Zinc Amaa%03d", i)));
+        }
+        index.upsert(medication("amox", "Amoxicillin"));
+
+        List<String> ids = index.search("am", 10);
+        assertEquals(10, ids.size());
+        assertEquals("amox", ids.get(0));
+    }
+
+    @Test
+    void exactMatchRanksFirst() {
+        index.upsert(medication("a", "Metformin Extended"));
+        index.upsert(medication("b", "Metformin"));
+        index.upsert(medication("c", "Glipizide Metformin"));
+
+        assertEquals(List.of("b", "a", "c"), index.search("metformin", 10));
+    }
+
+    private static Medication medication(String id, String name) {
+        Medication medication = new Medication();
+        medication.setId(id);
+        medication.setName(name);
+        medication.setActive(true);
+        return medication;
+    }
+}
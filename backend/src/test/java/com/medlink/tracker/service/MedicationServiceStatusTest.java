@@ -0,0 +1,135 @@
+package com.medlink.tracker.service;
+
+import com.medlink.tracker.exception.GlobalExceptionHandler;
+import com.medlink.tracker.exception.StatusConflictException;
+import com.medlink.tracker.model.IntakeLog;
+import com.medlink.tracker.repository.IntakeLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MedicationServiceStatusTest {
+
+    private static final String LOG_ID = "log-1";
+
+    @Mock private IntakeLogRepository intakeLogRepository;
+    @Mock private AdherenceService adherenceService;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private IntakeWriteBehindBuffer writeBehind;
+
+    @InjectMocks private MedicationService medicationService;
+
+    // Stands in for the stored document; transitionStatus is a compare-and-set on it like findAndModify
+    private IntakeLog stored;
+
+    @BeforeEach
+    void setUp() {
+        stored = new IntakeLog();
+        stored.setId(LOG_ID);
+        stored.setPatientId("patient-1");
+        stored.setStatus("PENDING");
+
+        lenient().when(writeBehind.isActive()).thenReturn(false);
+        lenient().when(intakeLogRepository.transitionStatus(eq(LOG_ID), anyCollection(), anyString(), any()))
+                .thenAnswer(inv -> transition(inv.getArgument(1), inv.getArgument(2), inv.getArgument(3)));
+        lenient().when(intakeLogRepository.findById(LOG_ID)).thenAnswer(inv -> Optional.of(copy()));
+    }
+
+    @Test
+    void concurrentConflictingTransitionsLetExactlyOneWin() throws Exception {
+        List<String> targets = List.of("TAKEN", "SKIPPED", "MISSED", "TAKEN", "SKIPPED", "MISSED", "TAKEN", "SKIPPED");
+        ExecutorService pool = Executors.newFixedThreadPool(targets.size());
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger conflicted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (String target : targets) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        // Every client last saw PENDING
+                        medicationService.updateIntakeStatus(LOG_ID, target, "PENDING");
+                        succeeded.incrementAndGet();
+                    } catch (StatusConflictException e) {
+                        conflicted.incrementAndGet();
+                        assertNotEquals("PENDING", e.getCurrentStatus());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, succeeded.get());
+        assertEquals(targets.size() - 1, conflicted.get());
+        verify(adherenceService, times(1)).recordTransition(any(), eq("PENDING"), anyString());
+    }
+
+    @Test
+    void repeatingTheCurrentStatusIsNotCountedTwice() {
+        medicationService.updateIntakeStatus(LOG_ID, "TAKEN", null);
+        IntakeLog again = medicationService.updateIntakeStatus(LOG_ID, "TAKEN", null);
+
+        assertEquals("TAKEN", again.getStatus());
+        verify(adherenceService, times(1)).recordTransition(any(), anyString(), anyString());
+    }
+
+    @Test
+    void illegalTransitionIsAConflict() {
+        medicationService.updateIntakeStatus(LOG_ID, "TAKEN", null);
+
+        StatusConflictException e = assertThrows(StatusConflictException.class,
+                () -> medicationService.updateIntakeStatus(LOG_ID, "SKIPPED", null));
+        assertEquals("TAKEN", e.getCurrentStatus());
+    }
+
+    @Test
+    void conflictMapsTo409WithTheCurrentStatus() {
+        var response = new GlobalExceptionHandler().handleConflict(new StatusConflictException("conflict", "TAKEN"));
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals("TAKEN", response.getBody().get("currentStatus"));
+    }
+
+    private synchronized Optional<IntakeLog> transition(Collection<String> from, String status, LocalDateTime takenAt) {
+        if (!from.contains(stored.getStatus())) {
+            return Optional.empty();
+        }
+        IntakeLog before = copy();
+        stored.setStatus(status);
+        if (takenAt != null) {
+            stored.setTakenAt(takenAt);
+        }
+        return Optional.of(before);
+    }
+
+    private synchronized IntakeLog copy() {
+        IntakeLog log = new IntakeLog();
+        log.setId(stored.getId());
+        log.setPatientId(stored.getPatientId());
+        log.setStatus(stored.getStatus());
+        log.setTakenAt(stored.getTakenAt());
+        return log;
+    }
+}
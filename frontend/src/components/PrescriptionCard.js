@@ -35,7 +35,7 @@ const PrescriptionCard = ({ prescription, onPress, role }) => {
           </Text>
         </View>
         <View style={styles.medCount}>
-          <Text style={styles.countNumber}>{prescription.medications?.length || 0}</Text>
+          <Text style={styles.countNumber}>{prescription.medicationCount ?? prescription.medications?.length ?? 0}</Text>
           <Text style={styles.countLabel}>Medications</Text>
         </View>
       </View>
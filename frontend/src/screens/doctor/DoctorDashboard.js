@@ -33,9 +33,9 @@ const C = {
 };
 
 const DoctorDashboard = ({ navigation }) => {
-  // ── ALL ORIGINAL LOGIC — UNTOUCHED ────────────────────────────────────
+  // ── STATE & DATA ──────────────────────────────────────────────────────
   const { user, logout } = useAuth();
-  const [prescriptions, setPrescriptions] = useState([]);
+  const [summary, setSummary] = useState(null);
   const [refreshing, setRefreshing] = useState(false);
 
   const doctorId = user?.profileId;
@@ -43,8 +43,8 @@ const DoctorDashboard = ({ navigation }) => {
   const loadData = async () => {
     if (!doctorId) return;
     try {
-      const data = await prescriptionService.getByDoctor(doctorId);
-      setPrescriptions(data);
+      const data = await prescriptionService.getDoctorSummary(doctorId);
+      setSummary(data);
     } catch (err) {
       console.error('Doctor dashboard error:', err);
     } finally {
@@ -54,9 +54,11 @@ const DoctorDashboard = ({ navigation }) => {
 
   useFocusEffect(useCallback(() => { loadData(); }, []));
 
-  const activeCount    = prescriptions.filter(p => p.status === 'ACTIVE').length;
-  const completedCount = prescriptions.filter(p => p.status === 'COMPLETED').length;
-  const uniquePatients = new Set(prescriptions.map(p => p.patientId)).size;
+  const prescriptions  = summary?.recent || [];
+  const totalCount     = summary?.total || 0;
+  const activeCount    = summary?.byStatus?.ACTIVE || 0;
+  const completedCount = summary?.byStatus?.COMPLETED || 0;
+  const uniquePatients = summary?.patients || 0;
   // ──────────────────────────────────────────────────────────────────────
 
   const firstName = user?.name?.split(' ')[0] || 'Doctor';
@@ -157,7 +159,7 @@ const DoctorDashboard = ({ navigation }) => {
         <View style={[s.section, { paddingBottom: 100 }]}>
           <View style={s.sectionHeader}>
             <Text style={s.sectionTitle}>📋  Recent Prescriptions</Text>
-            <Text style={s.sectionCount}>{prescriptions.length} total</Text>
+            <Text style={s.sectionCount}>{totalCount} total</Text>
           </View>
 
           {prescriptions.length === 0 ? (
@@ -173,7 +175,7 @@ const DoctorDashboard = ({ navigation }) => {
               </TouchableOpacity>
             </View>
           ) : (
-            prescriptions.slice(0, 5).map(p => (
+            prescriptions.map(p => (
               <PrescriptionCard
                 key={p.id}
                 prescription={p}
@@ -1,4 +1,4 @@
-import React, { useState, useCallback } from 'react';
+import React, { useState, useCallback, useRef } from 'react';
 import {
   View, Text, StyleSheet, FlatList, TouchableOpacity, TextInput, RefreshControl
 } from 'react-native';
@@ -34,18 +34,35 @@ const C = {
 const AVATAR_COLORS = [C.teal, C.purple, C.blue, C.amber, C.green, C.red];
 
 const PatientList = ({ navigation }) => {
-  // ── ALL ORIGINAL LOGIC — UNTOUCHED ────────────────────────────────────
+  // ── STATE & DATA ──────────────────────────────────────────────────────
   const { user } = useAuth();
   const [patients, setPatients]   = useState([]);
-  const [filtered, setFiltered]   = useState([]);
+  const [total, setTotal]         = useState(0);
+  const [rosterSize, setRosterSize] = useState(0);
+  const [cursor, setCursor]       = useState(null);
   const [search, setSearch]       = useState('');
   const [refreshing, setRefreshing] = useState(false);
+  const [loadingMore, setLoadingMore] = useState(false);
+  // Ignore responses to searches the user has already typed past
+  const latestRequest = useRef(0);
 
-  const loadPatients = async () => {
+  // Search runs on the server as a prefix of the sort key: email when it looks like one
+  const rosterUrl = (text, after) => {
+    const params = [`sort=${text.includes('@') ? 'email' : 'name'}`];
+    if (text) params.push(`q=${encodeURIComponent(text)}`);
+    if (after) params.push(`cursor=${encodeURIComponent(after)}`);
+    return `/doctor/${user.profileId}/patients?${params.join('&')}`;
+  };
+
+  const loadPatients = async (text = search) => {
+    const request = ++latestRequest.current;
     try {
-      const data = await api.get(`/patient/doctor/${user.profileId}`);
-      setPatients(data);
-      setFiltered(data);
+      const page = await api.get(rosterUrl(text.trim()));
+      if (request !== latestRequest.current) return;
+      setPatients(page.items);
+      setCursor(page.nextCursor);
+      setTotal(page.total ?? page.items.length);
+      if (!text.trim()) setRosterSize(page.total ?? page.items.length);
     } catch (err) {
       console.error('Load patients error:', err);
     } finally {
@@ -53,18 +70,27 @@ const PatientList = ({ navigation }) => {
     }
   };
 
+  const loadMore = async () => {
+    if (!cursor || loadingMore) return;
+    const request = latestRequest.current;
+    setLoadingMore(true);
+    try {
+      const page = await api.get(rosterUrl(search.trim(), cursor));
+      if (request !== latestRequest.current) return;
+      setPatients(prev => [...prev, ...page.items]);
+      setCursor(page.nextCursor);
+    } catch (err) {
+      console.error('Load more patients error:', err);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   useFocusEffect(useCallback(() => { loadPatients(); }, []));
 
   const handleSearch = (text) => {
     setSearch(text);
-    if (!text) {
-      setFiltered(patients);
-    } else {
-      setFiltered(patients.filter(p =>
-        p.name.toLowerCase().includes(text.toLowerCase()) ||
-        p.email.toLowerCase().includes(text.toLowerCase())
-      ));
-    }
+    loadPatients(text);
   };
 
   const renderPatient = ({ item, index }) => {
@@ -137,12 +163,12 @@ const PatientList = ({ navigation }) => {
         <View>
           <Text style={s.headerTitle}>My Patients</Text>
           <Text style={s.headerSub}>
-            {filtered.length} {filtered.length === 1 ? 'patient' : 'patients'} found
+            {total} {total === 1 ? 'patient' : 'patients'} found
           </Text>
         </View>
         <View style={s.headerRight}>
           <View style={[s.countBubble, { backgroundColor: C.tealDim }]}>
-            <Text style={[s.countTxt, { color: C.teal }]}>{patients.length}</Text>
+            <Text style={[s.countTxt, { color: C.teal }]}>{rosterSize}</Text>
           </View>
         </View>
       </View>
@@ -169,9 +195,11 @@ const PatientList = ({ navigation }) => {
 
       {/* ── PATIENT LIST ─────────────────────────────────── */}
       <FlatList
-        data={filtered}
+        data={patients}
         keyExtractor={item => item.id}
         renderItem={renderPatient}
+        onEndReached={loadMore}
+        onEndReachedThreshold={0.5}
         contentContainerStyle={s.list}
         showsVerticalScrollIndicator={false}
         refreshControl={
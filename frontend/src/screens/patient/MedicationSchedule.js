@@ -1,4 +1,4 @@
-import React, { useState, useCallback } from 'react';
+import React, { useState, useCallback, useRef } from 'react';
 import {
   View, Text, StyleSheet, ScrollView, TouchableOpacity, Alert
 } from 'react-native';
@@ -7,6 +7,7 @@ import { useAuth } from '../../context/AuthContext';
 import Header from '../../components/Header';
 import MedicationCard from '../../components/MedicationCard';
 import medicationService from '../../services/medicationService';
+import liveFeedService from '../../services/liveFeedService';
 import COLORS from '../../utils/colors';
 import { formatDate } from '../../utils/helpers';
 
@@ -26,7 +27,32 @@ const MedicationSchedule = ({ navigation }) => {
     }
   };
 
-  useFocusEffect(useCallback(() => { loadIntakes(selectedDate); }, [selectedDate]));
+  // Applies pushed intake changes for the selected day in place; "ready" (sent on every connect) reloads it
+  const applyLiveEvent = ({ event, data }) => {
+    const dateStr = selectedDate.toISOString().split('T')[0];
+    if (event === 'ready') {
+      loadIntakes(selectedDate);
+    } else if (event === 'intake' && data.action === 'bulkStatusChanged') {
+      if (data.dates && data.dates[dateStr]) loadIntakes(selectedDate);
+    } else if (event === 'intake' && data.log && data.log.scheduledDate === dateStr) {
+      const log = data.log;
+      setIntakes((current) => {
+        const others = current.filter(i => i.id !== log.id);
+        return data.action === 'removed' ? others : [...others, log];
+      });
+    }
+  };
+
+  // Without a feed the day is loaded once and reloaded after each action
+  const live = useRef(true);
+  useFocusEffect(useCallback(() => {
+    if (!user?.profileId) return undefined;
+    live.current = true;
+    return liveFeedService.subscribePatient(user.profileId, applyLiveEvent, () => {
+      live.current = false;
+      loadIntakes(selectedDate);
+    });
+  }, [selectedDate, user?.profileId]));
 
   const getDayDates = () => {
     const dates = [];
@@ -47,7 +73,7 @@ const MedicationSchedule = ({ navigation }) => {
   const handleTake = async (med) => {
     try {
       await medicationService.updateIntakeStatus(med.id, 'TAKEN');
-      loadIntakes(selectedDate);
+      if (!live.current) loadIntakes(selectedDate);
     } catch (err) {
       Alert.alert('Error', 'Could not update medication status');
     }
@@ -61,7 +87,7 @@ const MedicationSchedule = ({ navigation }) => {
         onPress: async () => {
           try {
             await medicationService.updateIntakeStatus(med.id, 'SKIPPED');
-            loadIntakes(selectedDate);
+            if (!live.current) loadIntakes(selectedDate);
           } catch (err) {
             Alert.alert('Error', 'Could not update status');
           }
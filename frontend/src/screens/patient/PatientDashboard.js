@@ -1,4 +1,4 @@
-import React, { useState, useCallback } from 'react';
+import React, { useState, useCallback, useRef } from 'react';
 import { View, Text, StyleSheet, ScrollView, RefreshControl, TouchableOpacity } from 'react-native';
 import { useFocusEffect } from '@react-navigation/native';
 import { useAuth } from '../../context/AuthContext';
@@ -7,6 +7,7 @@ import PrescriptionCard from '../../components/PrescriptionCard';
 import CustomButton from '../../components/CustomButton';
 import medicationService from '../../services/medicationService';
 import prescriptionService from '../../services/prescriptionService';
+import liveFeedService from '../../services/liveFeedService';
 
 // ── Palette ────────────────────────────────────────────────────────────────
 const C = {
@@ -75,7 +76,7 @@ const Ring = ({ percent, color, label }) => (
 // ══════════════════════════════════════════════════════════════════════════
 const PatientDashboard = ({ navigation }) => {
 
-  // ── ALL ORIGINAL LOGIC — UNTOUCHED ────────────────────────────────────
+  // ── STATE & DATA ──────────────────────────────────────────────────────
   const { user, logout } = useAuth();
   const [todayMeds, setTodayMeds]           = useState([]);
   const [prescriptions, setPrescriptions]   = useState([]);
@@ -102,10 +103,20 @@ const PatientDashboard = ({ navigation }) => {
     }
   };
 
-  useFocusEffect(useCallback(() => { loadData(); }, []));
-
-  const handleTake = async (med) => { await medicationService.updateIntakeStatus(med.id, 'TAKEN'); loadData(); };
-  const handleSkip = async (med) => { await medicationService.updateIntakeStatus(med.id, 'SKIPPED'); loadData(); };
+  // The live feed sends "ready" on connect and an event per change, so the screen reloads on push.
+  // Without a feed it loads once and goes back to reloading after each action.
+  const live = useRef(true);
+  useFocusEffect(useCallback(() => {
+    if (!patientId) return undefined;
+    live.current = true;
+    return liveFeedService.subscribePatient(patientId, () => loadData(), () => {
+      live.current = false;
+      loadData();
+    });
+  }, [patientId]));
+
+  const handleTake = async (med) => { await medicationService.updateIntakeStatus(med.id, 'TAKEN'); if (!live.current) loadData(); };
+  const handleSkip = async (med) => { await medicationService.updateIntakeStatus(med.id, 'SKIPPED'); if (!live.current) loadData(); };
 
   const pendingCount = todayMeds.filter(m => m.status === 'PENDING').length;
   const takenToday   = todayMeds.filter(m => m.status === 'TAKEN').length;
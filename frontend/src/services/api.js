@@ -29,11 +29,21 @@ const handleResponse = async (response) => {
   return data;
 };
 
+// Last ETag and body per GET endpoint, so unchanged documents come back as a bodiless 304
+const etagCache = new Map();
+
 export const api = {
   get: async (endpoint) => {
     const headers = await getHeaders();
+    const cached = etagCache.get(endpoint);
+    if (cached) headers['If-None-Match'] = cached.etag;
     const response = await fetch(`${API_BASE_URL}${endpoint}`, { headers });
-    return handleResponse(response);
+    if (response.status === 304 && cached) return cached.data;
+    const data = await handleResponse(response);
+    const etag = response.headers.get('ETag');
+    if (etag) etagCache.set(endpoint, { etag, data });
+    else etagCache.delete(endpoint);
+    return data;
   },
 
   post: async (endpoint, body, auth = true) => {
@@ -67,6 +77,35 @@ export const api = {
     return handleResponse(response);
   },
 
+  // Opens a long-lived GET (e.g. Server-Sent Events) over XMLHttpRequest, which streams on
+  // iOS/Android where fetch has no readable body. onChunk gets each newly received piece of
+  // text, onClose the final status (0 on network errors). Returns the request for abort().
+  stream: async (endpoint, { onChunk, onClose }) => {
+    const headers = await getHeaders();
+    headers['Accept'] = 'text/event-stream';
+    const xhr = new XMLHttpRequest();
+    let seen = 0;
+    const flush = () => {
+      const text = xhr.responseText || '';
+      if (text.length > seen) {
+        onChunk(text.slice(seen), text.length);
+        seen = text.length;
+      }
+    };
+    xhr.open('GET', `${API_BASE_URL}${endpoint}`);
+    Object.entries(headers).forEach(([name, value]) => xhr.setRequestHeader(name, value));
+    xhr.onprogress = () => { if (xhr.status === 200) flush(); };
+    xhr.onreadystatechange = () => {
+      if (xhr.readyState === 3 && xhr.status === 200) flush();
+      if (xhr.readyState === 4) {
+        if (xhr.status === 200) flush();
+        onClose(xhr.status);
+      }
+    };
+    xhr.send();
+    return xhr;
+  },
+
   delete: async (endpoint) => {
     const headers = await getHeaders();
     const response = await fetch(`${API_BASE_URL}${endpoint}`, {
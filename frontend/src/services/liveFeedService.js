@@ -0,0 +1,119 @@
+import { api } from './api';
+
+const RETRY_MS = 5000;
+const MAX_RETRY_MS = 60000;
+// Consecutive failed reconnects before the feed is given up
+const MAX_FAILURES = 5;
+// responseText keeps every byte of the stream, so long-lived connections are renewed
+const MAX_RESPONSE_CHARS = 1 << 20;
+
+// Hands each complete Server-Sent Event in buffer to onEvent as { event, data }; returns the unfinished tail
+const parseEvents = (buffer, onEvent) => {
+  let rest = buffer;
+  let cut;
+  while ((cut = rest.indexOf('\n\n')) >= 0) {
+    const block = rest.slice(0, cut);
+    rest = rest.slice(cut + 2);
+    let event = 'message';
+    const data = [];
+    block.split('\n').forEach((line) => {
+      if (line.startsWith('event:')) event = line.slice(6).trim();
+      else if (line.startsWith('data:')) data.push(line.slice(5).trimStart());
+    });
+    if (data.length === 0) continue; // heartbeat comment
+    try {
+      onEvent({ event, data: JSON.parse(data.join('\n')) });
+    } catch (err) {
+      console.error('Live feed event error:', err);
+    }
+  }
+  return rest;
+};
+
+// Keeps a feed open and returns a function that closes it. The server sends "ready" on every
+// (re)connect, so reloading on it covers missed events. Failed connects are retried with backoff
+// and never reload anything; onUnavailable is called at most once, when the feed cannot be
+// opened at all or keeps failing, and the caller then falls back to plain fetching.
+const subscribe = (endpoint, onEvent, onUnavailable) => {
+  let closed = false;
+  let xhr = null;
+  let retry = null;
+  let connection = 0;
+  let everOpened = false;
+  let failures = 0;
+
+  const stop = () => {
+    clearTimeout(retry);
+    if (xhr) {
+      const current = xhr;
+      xhr = null;
+      current.abort();
+    }
+  };
+
+  const giveUp = (reason) => {
+    if (closed) return;
+    closed = true;
+    stop();
+    console.warn('Live feed unavailable, falling back to fetching:', reason);
+    if (onUnavailable) onUnavailable(reason);
+  };
+
+  const connect = async () => {
+    const id = ++connection;
+    let buffer = '';
+    let opened = false;
+
+    const reconnect = (delay) => {
+      stop();
+      if (!closed) retry = setTimeout(connect, delay);
+    };
+
+    try {
+      xhr = await api.stream(endpoint, {
+        onChunk: (text, total) => {
+          if (closed || id !== connection) return;
+          opened = true;
+          everOpened = true;
+          failures = 0;
+          buffer = parseEvents(buffer + text, onEvent);
+          if (total > MAX_RESPONSE_CHARS) {
+            connection++;
+            reconnect(0);
+          }
+        },
+        onClose: (status) => {
+          if (closed || id !== connection) return;
+          if (status === 401 || status === 403 || status === 404) {
+            giveUp(`HTTP ${status}`);
+          } else if (opened) {
+            reconnect(RETRY_MS); // server ended a healthy stream
+          } else if (!everOpened || ++failures >= MAX_FAILURES) {
+            giveUp(`HTTP ${status}`);
+          } else {
+            reconnect(Math.min(RETRY_MS * 2 ** (failures - 1), MAX_RETRY_MS));
+          }
+        },
+      });
+      if (closed) stop();
+    } catch (err) {
+      giveUp(err.message);
+    }
+  };
+  connect();
+
+  return () => {
+    closed = true;
+    stop();
+  };
+};
+
+export const liveFeedService = {
+  subscribePatient: (patientId, onEvent, onUnavailable) =>
+    subscribe(`/live/patient/${patientId}`, onEvent, onUnavailable),
+
+  subscribeDoctor: (doctorId, onEvent, onUnavailable) =>
+    subscribe(`/live/doctor/${doctorId}`, onEvent, onUnavailable),
+};
+
+export default liveFeedService;
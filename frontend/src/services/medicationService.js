@@ -5,6 +5,8 @@ export const medicationService = {
 
   search: (name) => api.get(`/medications/search?name=${encodeURIComponent(name)}`),
 
+  fuzzySearch: (name) => api.get(`/medications/search/fuzzy?name=${encodeURIComponent(name)}`),
+
   getById: (id) => api.get(`/medications/${id}`),
 
   logIntake: (log) => api.post('/medications/intake', log),
@@ -9,6 +9,8 @@ export const prescriptionService = {
 
   getByDoctor: (doctorId) => api.get(`/prescriptions/doctor/${doctorId}`),
 
+  getDoctorSummary: (doctorId) => api.get(`/prescriptions/doctor/${doctorId}/summary`),
+
   getById: (id) => api.get(`/prescriptions/${id}`),
 
   updateStatus: (id, status) => api.patch(`/prescriptions/${id}/status`, { status }),